@@ -40,6 +40,7 @@ import org.cirqwizard.fx.traces.ZOffset;
 import org.cirqwizard.fx.traces.bottom.BottomTraceMilling;
 import org.cirqwizard.fx.traces.top.PCBPlacement;
 import org.cirqwizard.fx.traces.top.TopTraceMilling;
+import org.cirqwizard.generation.toolpath.ToolpathsCacheStore;
 import org.cirqwizard.layers.Board;
 import org.cirqwizard.logging.LoggerFactory;
 import org.cirqwizard.serial.*;
@@ -58,6 +59,7 @@ public class MainApplication extends Application
     private Context context = new Context();
     private SerialInterface serialInterface;
     private CNCController cncController;
+    private ToolpathsCacheStore toolpathsCacheStore = new ToolpathsCacheStore();
 
     private MainViewController mainView = (MainViewController) new MainViewController().setMainApplication(this);
 
@@ -273,6 +275,7 @@ public class MainApplication extends Application
     {
         if (serialInterface != null)
             serialInterface.close();
+        toolpathsCacheStore.flush();
         super.stop();
     }
 
@@ -281,6 +284,11 @@ public class MainApplication extends Application
         return context;
     }
 
+    public ToolpathsCacheStore getToolpathsCacheStore()
+    {
+        return toolpathsCacheStore;
+    }
+
     public SerialInterface getSerialInterface()
     {
         return serialInterface;
@@ -23,6 +23,8 @@ import org.cirqwizard.fx.machining.Machining;
 import org.cirqwizard.fx.settings.SettingsEditor;
 import org.cirqwizard.generation.DispensingToolpathGenerator;
 import org.cirqwizard.generation.gcode.PasteGCodeGenerator;
+import org.cirqwizard.generation.optimizer.Chain;
+import org.cirqwizard.generation.optimizer.DispensingPathOptimizer;
 import org.cirqwizard.generation.toolpath.Toolpath;
 import org.cirqwizard.gerber.GerberPrimitive;
 import org.cirqwizard.layers.Board;
@@ -30,7 +32,9 @@ import org.cirqwizard.post.RTPostprocessor;
 import org.cirqwizard.settings.DispensingSettings;
 import org.cirqwizard.settings.SettingsFactory;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Collectors;
 
 public class Dispensing extends Machining
 {
@@ -66,9 +70,13 @@ public class Dispensing extends Machining
     @Override
     protected void generateToolpaths()
     {
-        List<Toolpath> toolpaths = new DispensingToolpathGenerator((List<GerberPrimitive>)
+        List<Chain> pads = new DispensingToolpathGenerator((List<GerberPrimitive>)
                 getMainApplication().getContext().getPanel().getCombinedElements(Board.LayerType.SOLDER_PASTE)).
                 generate(SettingsFactory.getDispensingSettings().getNeedleDiameter().getValue());
+        List<Toolpath> toolpaths = new DispensingPathOptimizer(pads).optimize().stream().
+                map(Chain::getSegments).
+                flatMap(Collection::stream).
+                collect(Collectors.toList());
         pcbPane.toolpathsProperty().setValue(FXCollections.observableArrayList(toolpaths));
     }
 
@@ -22,20 +22,25 @@ import org.cirqwizard.fx.SettingsDependentScreenController;
 import org.cirqwizard.fx.machining.Machining;
 import org.cirqwizard.fx.settings.SettingsEditor;
 import org.cirqwizard.generation.gcode.DrillGCodeGenerator;
+import org.cirqwizard.generation.optimizer.DrillJob;
 import org.cirqwizard.generation.toolpath.DrillPoint;
 import org.cirqwizard.generation.toolpath.Toolpath;
 import org.cirqwizard.layers.Board;
-import org.cirqwizard.layers.LayerElement;
 import org.cirqwizard.post.RTPostprocessor;
 import org.cirqwizard.settings.DrillingSettings;
 import org.cirqwizard.settings.SettingsFactory;
 
-import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class Drilling extends Machining
 {
+    private DrillJob job;
+
+    public Drilling(DrillJob job)
+    {
+        this.job = job;
+    }
+
     @Override
     protected String getName()
     {
@@ -70,10 +75,8 @@ public class Drilling extends Machining
     @Override
     protected void generateToolpaths()
     {
-        List<? extends LayerElement> drillPoints = getMainApplication().getContext().getPanel().getCombinedElements(getCurrentLayer()).stream().
-                filter(e -> ((DrillPoint) e).getToolDiameter() == getMainApplication().getContext().getCurrentDrill()).
-                collect(Collectors.toList());
-        pcbPane.toolpathsProperty().setValue(FXCollections.observableArrayList((Collection<? extends Toolpath>) drillPoints));
+        List<DrillPoint> drillPoints = (List<DrillPoint>) getMainApplication().getContext().getPanel().getCombinedElements(getCurrentLayer());
+        pcbPane.toolpathsProperty().setValue(FXCollections.observableArrayList(job.getDrillPoints(drillPoints)));
     }
 
     @Override
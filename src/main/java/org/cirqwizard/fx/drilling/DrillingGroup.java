@@ -14,22 +14,82 @@ This program is free software: you can redistribute it and/or modify
 
 package org.cirqwizard.fx.drilling;
 
+import javafx.concurrent.Service;
+import javafx.concurrent.Task;
 import org.cirqwizard.fx.OperationsScreenGroup;
 import org.cirqwizard.fx.ScreenController;
 import org.cirqwizard.fx.ScreenGroup;
+import org.cirqwizard.generation.optimizer.DrillJob;
+import org.cirqwizard.generation.optimizer.DrillJobPlanner;
+import org.cirqwizard.generation.optimizer.TimeEstimator;
 import org.cirqwizard.generation.toolpath.DrillPoint;
 import org.cirqwizard.layers.Board;
+import org.cirqwizard.layers.PanelBoard;
+import org.cirqwizard.logging.LoggerFactory;
 import org.cirqwizard.settings.ApplicationConstants;
+import org.cirqwizard.settings.DrillingSettings;
+import org.cirqwizard.settings.SettingsFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.logging.Level;
 
 public class DrillingGroup extends OperationsScreenGroup
 {
+    private List<Object> plannedLayout;
+    private List<DrillJob> drillJobs;
+    private List<Object> planningLayout;
+    private boolean selectWhenPlanned;
+
+    private Service<List<DrillJob>> planningService = new Service<List<DrillJob>>()
+    {
+        @Override
+        protected Task<List<DrillJob>> createTask()
+        {
+            List<DrillPoint> drillPoints = (List<DrillPoint>) getMainApplication().getContext().getPanel().getCombinedElements(Board.LayerType.DRILLING);
+            DrillingSettings settings = SettingsFactory.getDrillingSettings();
+            int tolerance = settings.getDiameterTolerance().getValue();
+            double feed = (double) settings.getFeed().getValue() / ApplicationConstants.RESOLUTION / 60;
+            double clearance = (double) settings.getClearance().getValue() / ApplicationConstants.RESOLUTION;
+            double safetyHeight = (double) settings.getSafetyHeight().getValue() / ApplicationConstants.RESOLUTION;
+            double workingHeight = (double) settings.getWorkingHeight().getValue() / ApplicationConstants.RESOLUTION;
+            return new Task<List<DrillJob>>()
+            {
+                @Override
+                protected List<DrillJob> call() throws Exception
+                {
+                    List<DrillJob> jobs = new DrillJobPlanner(drillPoints, tolerance).plan();
+
+                    List<DrillPoint> plannedPoints = new ArrayList<>();
+                    jobs.forEach(job -> plannedPoints.addAll(job.getDrillPoints(drillPoints)));
+                    long duration = (long) TimeEstimator.calculateDrillingDuration(plannedPoints, feed, clearance, safetyHeight, workingHeight);
+                    LoggerFactory.getApplicationLogger().log(Level.INFO, String.format("Drilling plan: %d hits with %d tools, estimated time %02d:%02d:%02d",
+                            plannedPoints.size(), jobs.size(), duration / 3600, duration % 3600 / 60, duration % 60));
+                    return jobs;
+                }
+            };
+        }
+    };
+
     public DrillingGroup(String name)
     {
         super(name);
+        planningService.setOnSucceeded(event ->
+        {
+            drillJobs = planningService.getValue();
+            plannedLayout = planningLayout;
+            if (selectWhenPlanned)
+            {
+                selectWhenPlanned = false;
+                super.select();
+            }
+        });
+        planningService.setOnFailed(event ->
+        {
+            selectWhenPlanned = false;
+            LoggerFactory.logException("Drilling planning failed", planningService.getException());
+        });
     }
 
     @Override
@@ -38,21 +98,34 @@ public class DrillingGroup extends OperationsScreenGroup
         return super.isEnabled() && !getMainApplication().getContext().getPanel().getCombinedElements(Board.LayerType.DRILLING).isEmpty();
     }
 
+    // Tool screens come from the plan, so the group is only entered once planning is over
+    @Override
+    public void select()
+    {
+        if (isPlanned())
+            super.select();
+        else
+        {
+            selectWhenPlanned = true;
+            plan();
+        }
+    }
+
     @Override
     public List<ScreenController> getChildren()
     {
         List<ScreenController> children = new ArrayList<>(super.getChildren());
         if (!isEnabled())
             return children;
+        if (!isPlanned())
+        {
+            plan();
+            return children;
+        }
 
-        List<DrillPoint> drillPoints = (List<DrillPoint>) getMainApplication().getContext().getPanel().getCombinedElements(Board.LayerType.DRILLING);
-        List<Integer> drillDiameters = drillPoints.stream().
-                map(DrillPoint::getToolDiameter).
-                distinct().
-                sorted().
-                collect(Collectors.toList());
-        for (int d : drillDiameters)
+        for (DrillJob job : drillJobs)
         {
+            int d = job.getToolDiameter();
             ScreenGroup group = new ScreenGroup("Drilling " + ApplicationConstants.formatToolDiameter(d) + "mm")
             {
                 @Override
@@ -65,10 +138,35 @@ public class DrillingGroup extends OperationsScreenGroup
             group.setParent(this);
             children.add(group.setMainApplication(getMainApplication()).
                     addChild(new InsertDrill().setMainApplication(getMainApplication())).
-                    addChild(new Drilling().setMainApplication(getMainApplication())));
+                    addChild(new Drilling(job).setMainApplication(getMainApplication())));
         }
 
         return children;
     }
 
+    private boolean isPlanned()
+    {
+        return getPanelLayout().equals(plannedLayout);
+    }
+
+    private void plan()
+    {
+        List<Object> layout = getPanelLayout();
+        if (planningService.isRunning() && layout.equals(planningLayout))
+            return;
+        planningLayout = layout;
+        planningService.restart();
+    }
+
+    // Drill hits of the panel only change with boards' files and placement
+    private List<Object> getPanelLayout()
+    {
+        List<Object> layout = new ArrayList<>();
+        layout.add(SettingsFactory.getDrillingSettings().getDiameterTolerance().getValue());
+        for (PanelBoard board : getMainApplication().getContext().getPanel().getBoards())
+            layout.addAll(Arrays.asList(board.getFilename(), board.getX(), board.getY(), board.getAngle(), board.isGenerateOutline(),
+                    board.getLayerHash(Board.LayerType.DRILLING)));
+        return layout;
+    }
+
 }
@@ -27,6 +27,7 @@ import org.cirqwizard.generation.ProcessingService;
 import org.cirqwizard.generation.optimizer.Chain;
 import org.cirqwizard.generation.optimizer.OptimizationService;
 import org.cirqwizard.generation.toolpath.*;
+import org.cirqwizard.layers.Panel;
 import org.cirqwizard.logging.LoggerFactory;
 
 import java.io.File;
@@ -62,6 +63,7 @@ public abstract class LongProcessingMachining extends Machining
 
                         cacheKey = getCacheKey();
                         GenerationService generationService = getGenerationService();
+                        generationService.setCache(getCache(), cacheKey);
                         bindToService(generationService);
                         List<Chain> chains = generationService.generate();
                         if (generationCancelled)
@@ -118,59 +120,47 @@ public abstract class LongProcessingMachining extends Machining
     }
 
 
-    private boolean loadFromCache()
+    private String getCacheFilename()
     {
-        try
-        {
-            String filename = getMainApplication().getContext().getPanelFile().getAbsolutePath();
-            filename = filename.substring(0, filename.lastIndexOf('.'));
-            ToolpathsCache cache = ToolpathsPersistor.loadFromFile(filename + ".tmp");
-            if (!getMainApplication().getContext().getPanel().isCacheValid())
-            {
-                File cacheFile = new File(filename + ".tmp");
-                if (cacheFile.exists())
-                    cacheFile.delete();
-                return false;
-            }
+        String filename = getMainApplication().getContext().getPanelFile().getAbsolutePath();
+        return filename.substring(0, filename.lastIndexOf('.')) + ".tmp";
+    }
 
-            if (cache == null)
-                return false;
+    private ToolpathsCache getCache()
+    {
+        return getMainApplication().getToolpathsCacheStore().getCache(getCacheFilename());
+    }
 
-            List<Toolpath> toolpaths = cache.getToolpaths(getCacheKey());
-            if (toolpaths != null)
-            {
-                cacheKey = getCacheKey();
-                getMainApplication().getContext().getPanel().setToolpaths(getCurrentLayer(), toolpaths);
-                pcbPane.toolpathsProperty().setValue(FXCollections.observableArrayList(toolpaths));
-                return true;
-            }
-        }
-        catch (ToolpathPersistingException e)
+    private boolean loadFromCache()
+    {
+        ToolpathsCache cache = getCache();
+        if (!getMainApplication().getContext().getPanel().isCacheValid())
         {
-            LoggerFactory.getApplicationLogger().log(Level.INFO, e.getMessage(), e);
+            // Tool paths of individual boards are validated by their keys and survive panel changes
+            cache.clearPanelToolpaths();
+            return false;
         }
-        return false;
+
+        List<Toolpath> toolpaths = cache.getToolpaths(getCacheKey());
+        if (toolpaths == null)
+            return false;
+        cacheKey = getCacheKey();
+        getMainApplication().getContext().getPanel().setToolpaths(getCurrentLayer(), toolpaths);
+        pcbPane.toolpathsProperty().setValue(FXCollections.observableArrayList(toolpaths));
+        return true;
     }
 
+    // Cache and panel files are written in background, generated tool paths are shown without waiting for them.
+    // Panel is serialized right away, so that the writer does not read it later while it may be edited
     private void updateCache(List<Toolpath> toolpaths)
     {
-        try
-        {
-            String filename = getMainApplication().getContext().getPanelFile().getAbsolutePath();
-            filename = filename.substring(0, filename.lastIndexOf('.'));
-            ToolpathsCache cache = ToolpathsPersistor.loadFromFile(filename + ".tmp");
-            if (cache == null)
-                cache = new ToolpathsCache();
-            cache.setToolpaths(getCacheKey(), toolpaths);
-            getMainApplication().getContext().getPanel().updateCacheTimestamps();
-            getMainApplication().getContext().getPanel().save(getMainApplication().getContext().getPanelFile());
-            ToolpathsPersistor.saveToFile(cache, filename  + ".tmp");
-        }
-        catch (ToolpathPersistingException e)
-        {
-            LoggerFactory.getApplicationLogger().log(Level.INFO, e.getMessage(), e);
-        }
-
+        getCache().setToolpaths(getCacheKey(), toolpaths);
+        Panel panel = getMainApplication().getContext().getPanel();
+        File panelFile = getMainApplication().getContext().getPanelFile();
+        panel.updateCacheTimestamps();
+        getCache().retainBoardToolpaths(panel.getBoards());
+        byte[] panelXml = panel.serialize();
+        getMainApplication().getToolpathsCacheStore().save(getCacheFilename(), () -> Panel.save(panelXml, panelFile));
     }
 
     protected void bindToService(ProcessingService service)
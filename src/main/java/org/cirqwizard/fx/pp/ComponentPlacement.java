@@ -30,14 +30,19 @@ import org.cirqwizard.fx.Context;
 import org.cirqwizard.fx.ScreenController;
 import org.cirqwizard.fx.controls.RealNumberTextField;
 import org.cirqwizard.generation.toolpath.PPPoint;
+import org.cirqwizard.geom.Point;
 import org.cirqwizard.layers.Board;
+import org.cirqwizard.logging.LoggerFactory;
 import org.cirqwizard.pp.ComponentId;
+import org.cirqwizard.pp.PlacementPlanner;
 import org.cirqwizard.settings.*;
 
 import java.net.URL;
 import java.text.DecimalFormat;
 import java.util.HashMap;
+import java.util.List;
 import java.util.ResourceBundle;
+import java.util.logging.Level;
 import java.util.stream.Collectors;
 
 
@@ -133,14 +138,6 @@ public class ComponentPlacement extends ScreenController implements Initializabl
         ComponentId id =  context.getCurrentComponent();
         header.setText(id.getPackaging() + " " + id.getValue());
 
-        components.setAll(context.getPanel().getCombinedElements(Board.LayerType.PLACEMENT).stream().
-                map(c -> (PPPoint)c).
-                filter(p -> p.getId().equals(id)).collect(Collectors.toList()));
-        componentName.getSelectionModel().select(0);
-        pickupNGoButton.setDisable(true);
-        placementPane.setDisable(true);
-        manualZ.setDisable(true);
-
         MachineSettings machineSettings = SettingsFactory.getMachineSettings();
 
         boolean referencePinsDefined = machineSettings.getReferencePinX().getValue() != null &&
@@ -153,6 +150,17 @@ public class ComponentPlacement extends ScreenController implements Initializabl
                     feederOffsetY, context.getFeederRow()));
         }
 
+        List<PPPoint> points = context.getPanel().getCombinedElements(Board.LayerType.PLACEMENT).stream().
+                map(c -> (PPPoint)c).
+                filter(p -> p.getId().equals(id)).collect(Collectors.toList());
+        if (referencePinsDefined && context.getG54X() != null && context.getG54Y() != null)
+            points = planPlacement(points);
+        components.setAll(points);
+        componentName.getSelectionModel().select(0);
+        pickupNGoButton.setDisable(true);
+        placementPane.setDisable(true);
+        manualZ.setDisable(true);
+
         gotoTargetButton.setDisable(true);
 
         boolean disableOperation = getMainApplication().getCNCController() == null || !referencePinsDefined;
@@ -162,6 +170,21 @@ public class ComponentPlacement extends ScreenController implements Initializabl
         vacuumOffButton.setDisable(disableOperation);
     }
 
+    private List<PPPoint> planPlacement(List<PPPoint> points)
+    {
+        Context context = getMainApplication().getContext();
+        PPSettings settings = SettingsFactory.getPpSettings();
+        Point pickup = new Point(pickupX.getIntegerValue() - context.getG54X(), pickupY.getIntegerValue() - context.getG54Y());
+        PlacementPlanner planner = new PlacementPlanner(points, pickup, context.getComponentPitch(), getAngleOffset(),
+                settings.getRotationFeed().getValue(), settings.getPickupHeight().getValue(), settings.getMoveHeight().getValue());
+        List<PPPoint> sequence = planner.plan();
+        long duration = (long) planner.estimateDuration(sequence);
+        LoggerFactory.getApplicationLogger().log(Level.INFO, String.format("Placement plan for %s %s: %d components, estimated time %02d:%02d (%.0f s in file order)",
+                context.getCurrentComponent().getPackaging(), context.getCurrentComponent().getValue(), sequence.size(),
+                duration / 60, duration % 60, planner.estimateDuration(points)));
+        return sequence;
+    }
+
     private void updateComponent()
     {
         PPPoint p = componentName.getSelectionModel().getSelectedItem();
@@ -239,9 +262,12 @@ public class ComponentPlacement extends ScreenController implements Initializabl
         int angle = targetAngle.getIntegerValue();
         if (placementAngle.getIntegerValue() != null)
             angle += placementAngle.getIntegerValue();
-        angle -= 90 * ApplicationConstants.RESOLUTION;
-        angle += SettingsFactory.getImportSettings().getCentroidAngularOffset().getValue() * ApplicationConstants.RESOLUTION;
-        return angle;
+        return angle + getAngleOffset();
+    }
+
+    private int getAngleOffset()
+    {
+        return (SettingsFactory.getImportSettings().getCentroidAngularOffset().getValue() - 90) * ApplicationConstants.RESOLUTION;
     }
 
     public void gotoTarget()
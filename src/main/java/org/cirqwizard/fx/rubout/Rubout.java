@@ -80,7 +80,7 @@ public abstract class Rubout extends LongProcessingMachining
     {
         RubOutSettings settings = SettingsFactory.getRubOutSettings();
         return new ToolpathsCacheKey(getCacheId(), settings.getToolDiameter().getValue(), 0,
-                0, false, settings.getInitialOffset().getValue(), settings.getOverlap().getValue());
+                0, false, false, settings.getInitialOffset().getValue(), settings.getOverlap().getValue());
     }
 
     @Override
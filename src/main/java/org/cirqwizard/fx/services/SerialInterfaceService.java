@@ -24,6 +24,8 @@ import org.cirqwizard.fx.util.ExceptionAlert;
 import org.cirqwizard.logging.LoggerFactory;
 import org.cirqwizard.serial.ExecutionException;
 import org.cirqwizard.serial.SerialException;
+import org.cirqwizard.serial.SerialInterface;
+import org.cirqwizard.settings.SettingsFactory;
 
 import java.io.IOException;
 import java.io.LineNumberReader;
@@ -34,6 +36,8 @@ import java.util.List;
 
 public class SerialInterfaceService extends Service
 {
+    private static final long COMMAND_TIMEOUT = 20000000;
+
     private MainApplication mainApplication;
     private List<String> programLines;
     private Property<String> executionTime = new SimpleStringProperty("");
@@ -95,12 +99,14 @@ public class SerialInterfaceService extends Service
         @Override
         protected Object call() throws Exception
         {
+            SerialInterface serial = mainApplication.getSerialInterface();
             try
             {
                 final StringBuilder responseBuilder = new StringBuilder();
                 if (readResponses)
                     Platform.runLater(() -> responses.setValue(""));
 
+                int bufferSize = SettingsFactory.getApplicationSettings().getControllerBufferSize().getValue();
                 long executionStartTime = System.currentTimeMillis();
                 for (int i = 0; i < programLines.size(); i++)
                 {
@@ -109,7 +115,10 @@ public class SerialInterfaceService extends Service
 
                     try
                     {
-                        mainApplication.getSerialInterface().send(programLines.get(i), 20000000, responseBuilder, false);
+                        if (bufferSize > 0)
+                            serial.stream(programLines.get(i), bufferSize, COMMAND_TIMEOUT, responseBuilder, false);
+                        else
+                            serial.send(programLines.get(i), COMMAND_TIMEOUT, responseBuilder, false);
                     }
                     catch (SerialException | ExecutionException e)
                     {
@@ -122,10 +131,26 @@ public class SerialInterfaceService extends Service
                     final String s = formatTime((System.currentTimeMillis() - executionStartTime) / 1000);
                     Platform.runLater(() -> executionTime.setValue(s));
                 }
+                while (bufferSize > 0)
+                {
+                    try
+                    {
+                        serial.flush(COMMAND_TIMEOUT);
+                        break;
+                    }
+                    catch (SerialException | ExecutionException e)
+                    {
+                        if (!suppressExceptions)
+                            throw e;
+                    }
+                }
+                if (readResponses)
+                    Platform.runLater(() -> responses.setValue(responseBuilder.toString()));
             }
             catch (SerialException | ExecutionException e)
             {
                 LoggerFactory.logException("Error communicating with the controller", e);
+                serial.resetStreaming();
                 mainApplication.getCNCController().interruptProgram();
                 ExceptionAlert alert = new ExceptionAlert("Oops! That's embarrassing!", "Communication error",
                         "Something went wrong while communicating with the controller. " +
@@ -134,6 +159,7 @@ public class SerialInterfaceService extends Service
             }
             catch (InterruptedException e)
             {
+                serial.resetStreaming();
                 mainApplication.getCNCController().interruptProgram();
             }
             return null;
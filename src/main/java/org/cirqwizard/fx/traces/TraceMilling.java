@@ -82,7 +82,8 @@ public abstract class TraceMilling extends LongProcessingMachining
     {
         ToolSettings currentTool = getMainApplication().getContext().getCurrentMillingTool();
         return new ToolpathsCacheKey(getCacheId(), currentTool.getDiameter(),
-                currentTool.getAdditionalPasses(), currentTool.getAdditionalPassesOverlap(), currentTool.isAdditionalPassesPadsOnly(), 0, 0);
+                currentTool.getAdditionalPasses(), currentTool.getAdditionalPassesOverlap(), currentTool.isAdditionalPassesPadsOnly(),
+                SettingsFactory.getInsulationMillingSettings().getAnalyticContours().getValue(), 0, 0);
     }
 
     @Override
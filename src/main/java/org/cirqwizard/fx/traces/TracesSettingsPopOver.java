@@ -55,6 +55,8 @@ public class TracesSettingsPopOver implements Initializable
     @FXML private TextField additonalPassesOverlapTextField;
     @FXML private CheckBox additionalPassesPadsOnlyCheckBox;
 
+    @FXML private CheckBox analyticContoursCheckBox;
+
     private Context context;
     private SettingsDependentScreenController listener;
     private boolean supressInvalidation = false;
@@ -164,6 +166,14 @@ public class TracesSettingsPopOver implements Initializable
             saveLibrary();
             listener.settingsInvalidated();
         });
+        analyticContoursCheckBox.selectedProperty().addListener((v, oldV, newV) ->
+        {
+            InsulationMillingSettings settings = SettingsFactory.getInsulationMillingSettings();
+            settings.getAnalyticContours().setValue(newV);
+            settings.save();
+            if (!supressInvalidation)
+                listener.settingsInvalidated();
+        });
     }
 
     public Node getView()
@@ -217,6 +227,7 @@ public class TracesSettingsPopOver implements Initializable
         additionalPassesCountTextField.setText(String.valueOf(currentTool.getAdditionalPasses()));
         additonalPassesOverlapTextField.setText(String.valueOf(currentTool.getAdditionalPassesOverlap()));
         additionalPassesPadsOnlyCheckBox.setSelected(currentTool.isAdditionalPassesPadsOnly());
+        analyticContoursCheckBox.setSelected(settings.getAnalyticContours().getValue());
     }
 
     private void addInvalidationListenerToTextField(TextField textField)
@@ -14,6 +14,7 @@ This program is free software: you can redistribute it and/or modify
 
 package org.cirqwizard.generation;
 
+import javafx.application.Platform;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 import org.cirqwizard.gerber.appertures.CircularAperture;
@@ -34,13 +35,34 @@ import org.cirqwizard.generation.toolpath.Toolpath;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class AbstractToolpathGenerator
 {
     protected int inflation;
     protected List<GerberPrimitive> primitives;
+    protected PrimitiveIndex primitiveIndex;
 
     protected DoubleProperty progressProperty = new SimpleDoubleProperty();
+    private Map<Integer, CircleIndex> knownCircleIndices = new ConcurrentHashMap<>();
+
+    protected void setPrimitiveIndex(PrimitiveIndex primitiveIndex)
+    {
+        // Known circles are taken from primitives, indices built for other primitives are of no use
+        if (primitiveIndex != this.primitiveIndex)
+            knownCircleIndices.clear();
+        this.primitiveIndex = primitiveIndex;
+        this.primitives = primitiveIndex.getPrimitives();
+    }
+
+    /**
+     * Index of known circles in panel coordinates, built once per inflation and shared by all windows
+     */
+    protected CircleIndex getKnownCircleIndex(int inflation)
+    {
+        return knownCircleIndices.computeIfAbsent(inflation, i -> new CircleIndex(getKnownCircles(i)));
+    }
 
     protected List<Circle> getKnownCircles(int inflation)
     {
@@ -83,19 +105,12 @@ public class AbstractToolpathGenerator
         return progressProperty;
     }
 
-
-    protected List<Circle> translateKnownCircles(Point offset, double scale, List<Circle> knownCircles)
+    protected void setProgress(double progress)
     {
-        ArrayList<Circle> translatedCircles = new ArrayList<>();
-        for (Circle circle : knownCircles)
-        {
-            Point p  = translateToWindowCoordinates(circle.getCenter(), offset, scale);
-            translatedCircles.add(new Circle(p, (int)(scale * circle.getRadius())));
-        }
-
-        return translatedCircles;
+        Platform.runLater(() -> progressProperty.set(progress));
     }
 
+
     protected Point translateWindowCoordiantes(Point point, Point windowOffset, double scale)
     {
         return new Point((int)((double)point.getX() / scale), (int)((double)point.getY() / scale)).add(windowOffset);
@@ -15,7 +15,6 @@ This program is free software: you can redistribute it and/or modify
 package org.cirqwizard.generation;
 
 import javafx.application.Platform;
-import org.cirqwizard.geom.Circle;
 import org.cirqwizard.geom.Point;
 import org.cirqwizard.gerber.Flash;
 import org.cirqwizard.gerber.GerberPrimitive;
@@ -25,7 +24,6 @@ import org.cirqwizard.generation.toolpath.CuttingToolpath;
 import org.cirqwizard.generation.toolpath.LinearToolpath;
 import org.cirqwizard.generation.toolpath.Toolpath;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Vector;
@@ -43,14 +41,14 @@ public class AdditionalToolpathGenerator extends AbstractToolpathGenerator
     private int overlap;
     private int toolDiameter;
 
-    public AdditionalToolpathGenerator(int width, int height, int passes, int overlap, int toolDiameter, List<GerberPrimitive> primitives)
+    public AdditionalToolpathGenerator(int width, int height, int passes, int overlap, int toolDiameter, PrimitiveIndex primitiveIndex)
     {
         this.width = width;
         this.height = height;
         this.passes = passes;
         this.overlap = overlap;
         this.toolDiameter = toolDiameter;
-        this.primitives = primitives;
+        setPrimitiveIndex(primitiveIndex);
     }
 
     public List<Toolpath> generate()
@@ -73,8 +71,6 @@ public class AdditionalToolpathGenerator extends AbstractToolpathGenerator
                         return null;
 
                     Flash flash = (Flash) primitive;
-                    ArrayList<GerberPrimitive> primitivesCopy = new ArrayList<>(primitives);
-                    primitivesCopy.remove(flash);
                     int windowSize = (flash.getAperture().getCircumRadius() + (inflation * (passes + 1) * overlap / 100)) * 2;
                     int x = flash.getX() - windowSize;
                     int y = flash.getY() - windowSize;
@@ -83,10 +79,12 @@ public class AdditionalToolpathGenerator extends AbstractToolpathGenerator
                     Point windowOffset = new Point(x, y);
                     int windowWidth = Math.min(windowSize * 2, width - x);
                     int windowHeight = Math.min(windowSize * 2, height - y);
+                    List<GerberPrimitive> neighbours = primitiveIndex.query(x, y, windowWidth, windowHeight, toolDiameter / 2);
+                    neighbours.remove(flash);
                     for (int i = 0; i < passes; i++)
                     {
                         RasterWindow window = new RasterWindow(new Point(x, y), windowWidth, windowHeight);
-                        window.render(primitivesCopy, toolDiameter / 2);
+                        window.render(neighbours, toolDiameter / 2);
                         int inflation = toolDiameter / 2 + toolDiameter * (100 - overlap) / 100 * (1 + i);
                         window.render(Arrays.asList((GerberPrimitive) flash), inflation);
                         SimpleEdgeDetector detector = new SimpleEdgeDetector(window.getBufferedImage());
@@ -94,9 +92,9 @@ public class AdditionalToolpathGenerator extends AbstractToolpathGenerator
                         detector.process();
                         if (detector.getOutput() != null)
                         {
-                            List<Circle> knownCircles = translateKnownCircles(windowOffset, 1, getKnownCircles(inflation));
+                            CircleIndex knownCircles = getKnownCircleIndex(inflation).getWindow(x, y, windowWidth, windowHeight);
                             List<Toolpath> toolpaths =
-                                    new Tracer(detector.getOutput(), windowWidth, windowHeight, toolDiameter, knownCircles).process();
+                                    new Tracer(detector.getOutput(), toolDiameter, knownCircles).process();
                             detector = null;  // Helping GC to reclaim memory consumed by processed image
                             for (Toolpath t : toolpaths)
                             {
@@ -0,0 +1,200 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cirqwizard.generation;
+
+import org.cirqwizard.generation.toolpath.CircularToolpath;
+import org.cirqwizard.generation.toolpath.LinearToolpath;
+import org.cirqwizard.generation.toolpath.Toolpath;
+import org.cirqwizard.geom.Point;
+import org.cirqwizard.gerber.GerberPrimitive;
+import org.cirqwizard.gerber.Region;
+import org.cirqwizard.settings.SettingsFactory;
+
+import java.awt.Rectangle;
+import java.awt.geom.Area;
+import java.awt.geom.PathIterator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Computes insulation contours directly from primitives' geometry instead of tracing rendered raster windows.
+ * Primitives are inflated by tool radius and united, outline of the union is converted to lines and arcs.
+ */
+public class AnalyticToolpathGenerator extends ToolpathGenerator
+{
+    private static final int UNION_BATCH_SIZE = 16;
+    private static final double MIN_ARC_SAGITTA = 0.5;     // Flatter curves are converted to lines
+
+    @Override
+    public List<Toolpath> generate()
+    {
+        ForkJoinPool pool = new ForkJoinPool(SettingsFactory.getApplicationSettings().getProcessingThreads().getValue());
+        try
+        {
+            Area copper = new Area();
+            int i = 0;
+            while (i < primitives.size())
+            {
+                if (cancelledProperty.get())
+                    return new ArrayList<>();
+
+                GerberPrimitive.Polarity polarity = primitives.get(i).getPolarity();
+                int j = i;
+                while (j < primitives.size() && primitives.get(j).getPolarity() == polarity)
+                    j++;
+                Area area = pool.invoke(new UnionTask(primitives.subList(i, j), polarity == GerberPrimitive.Polarity.DARK ? inflation : -inflation));
+                if (polarity == GerberPrimitive.Polarity.DARK)
+                    copper.add(area);
+                else
+                    copper.subtract(area);
+                i = j;
+                setProgress((double) i / primitives.size());
+            }
+
+            copper.intersect(new Area(new Rectangle(0, 0, width, height)));
+            return new ToolpathMerger(traceOutline(copper), mergeTolerance).merge();
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    private List<Toolpath> traceOutline(Area area)
+    {
+        List<Toolpath> result = new ArrayList<>();
+        double[] coords = new double[6];
+        double startX = 0, startY = 0;
+        double x = 0, y = 0;
+        for (PathIterator iterator = area.getPathIterator(null); !iterator.isDone(); iterator.next())
+        {
+            switch (iterator.currentSegment(coords))
+            {
+                case PathIterator.SEG_MOVETO:
+                    startX = x = coords[0];
+                    startY = y = coords[1];
+                    break;
+                case PathIterator.SEG_LINETO:
+                    addLine(result, x, y, coords[0], coords[1]);
+                    x = coords[0];
+                    y = coords[1];
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    addCurve(result, x, y, (x + 2 * coords[0] + coords[2]) / 4, (y + 2 * coords[1] + coords[3]) / 4, coords[2], coords[3]);
+                    x = coords[2];
+                    y = coords[3];
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    addCurve(result, x, y, (x + 3 * coords[0] + 3 * coords[2] + coords[4]) / 8, (y + 3 * coords[1] + 3 * coords[3] + coords[5]) / 8,
+                            coords[4], coords[5]);
+                    x = coords[4];
+                    y = coords[5];
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    addLine(result, x, y, startX, startY);
+                    x = startX;
+                    y = startY;
+                    break;
+            }
+        }
+        return result;
+    }
+
+    // Copper is clipped to the panel, the clipping rectangle itself is not a contour to mill
+    private boolean isOnPanelBorder(Point from, Point to)
+    {
+        if (from.getX() == to.getX() && (from.getX() == 0 || from.getX() == width))
+            return true;
+        return from.getY() == to.getY() && (from.getY() == 0 || from.getY() == height);
+    }
+
+    private void addLine(List<Toolpath> result, double x1, double y1, double x2, double y2)
+    {
+        Point from = new Point((int) Math.round(x1), (int) Math.round(y1));
+        Point to = new Point((int) Math.round(x2), (int) Math.round(y2));
+        if (from.equals(to) || isOnPanelBorder(from, to))
+            return;
+        result.add(new LinearToolpath(toolDiameter, from, to));
+    }
+
+    // Bezier curves produced by Area are approximations of circular arcs, so the arc is restored from its end points and its midpoint
+    private void addCurve(List<Toolpath> result, double x1, double y1, double xm, double ym, double x2, double y2)
+    {
+        double chordX = x2 - x1;
+        double chordY = y2 - y1;
+        double chordLength = Math.hypot(chordX, chordY);
+        double cross = (xm - x1) * chordY - (ym - y1) * chordX;
+        if (chordLength == 0 || Math.abs(cross) / chordLength < MIN_ARC_SAGITTA)
+        {
+            addLine(result, x1, y1, x2, y2);
+            return;
+        }
+
+        double d = 2 * (x1 * (ym - y2) + xm * (y2 - y1) + x2 * (y1 - ym));
+        double s1 = x1 * x1 + y1 * y1;
+        double sm = xm * xm + ym * ym;
+        double s2 = x2 * x2 + y2 * y2;
+        double centerX = (s1 * (ym - y2) + sm * (y2 - y1) + s2 * (y1 - ym)) / d;
+        double centerY = (s1 * (x2 - xm) + sm * (x1 - x2) + s2 * (xm - x1)) / d;
+
+        Point from = new Point((int) Math.round(x1), (int) Math.round(y1));
+        Point to = new Point((int) Math.round(x2), (int) Math.round(y2));
+        if (from.equals(to))
+            return;
+        Point center = new Point((int) Math.round(centerX), (int) Math.round(centerY));
+        int radius = (int) Math.round(Math.hypot(x1 - centerX, y1 - centerY));
+        result.add(new CircularToolpath(toolDiameter, from, to, center, radius, cross < 0));
+    }
+
+    private static Area getArea(GerberPrimitive primitive, int inflation)
+    {
+        if (!(primitive instanceof Region) && !primitive.getAperture().isVisible())
+            return new Area();
+        return primitive.getArea(inflation);
+    }
+
+    private static class UnionTask extends RecursiveTask<Area>
+    {
+        private List<GerberPrimitive> primitives;
+        private int inflation;
+
+        public UnionTask(List<GerberPrimitive> primitives, int inflation)
+        {
+            this.primitives = primitives;
+            this.inflation = inflation;
+        }
+
+        @Override
+        protected Area compute()
+        {
+            if (primitives.size() <= UNION_BATCH_SIZE)
+            {
+                Area area = new Area();
+                for (GerberPrimitive primitive : primitives)
+                    area.add(getArea(primitive, inflation));
+                return area;
+            }
+
+            int middle = primitives.size() / 2;
+            UnionTask left = new UnionTask(primitives.subList(0, middle), inflation);
+            left.fork();
+            Area area = new UnionTask(primitives.subList(middle, primitives.size()), inflation).compute();
+            area.add(left.join());
+            return area;
+        }
+    }
+}
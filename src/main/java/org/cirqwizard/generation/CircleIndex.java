@@ -0,0 +1,198 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.cirqwizard.generation;
+
+import org.cirqwizard.geom.Circle;
+import org.cirqwizard.geom.Point;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Uniform grid over circles' bounding boxes. Queries return circles in their original order.
+ * Index is immutable once built and can be shared between threads, windows are views of it in their own coordinates.
+ */
+public class CircleIndex
+{
+    private static final int MIN_CELL_SIZE = 100;
+    private static final int CIRCLES_PER_CELL = 4;
+
+    private List<Circle> circles;
+    private int[] minX;
+    private int[] minY;
+    private int[] maxX;
+    private int[] maxY;
+
+    private int originX;
+    private int originY;
+    private int cellSize;
+    private int columns;
+    private int rows;
+    private int[] cellStart;
+    private int[] cellItems;
+
+    private int windowX;
+    private int windowY;
+    private long windowWidth = Integer.MAX_VALUE;
+    private long windowHeight = Integer.MAX_VALUE;
+
+    private CircleIndex()
+    {
+    }
+
+    public CircleIndex(List<Circle> circles)
+    {
+        this.circles = circles;
+        int n = circles.size();
+        minX = new int[n];
+        minY = new int[n];
+        maxX = new int[n];
+        maxY = new int[n];
+
+        int boundsMinX = Integer.MAX_VALUE, boundsMinY = Integer.MAX_VALUE;
+        int boundsMaxX = Integer.MIN_VALUE, boundsMaxY = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++)
+        {
+            Circle circle = circles.get(i);
+            minX[i] = circle.getCenter().getX() - circle.getRadius();
+            minY[i] = circle.getCenter().getY() - circle.getRadius();
+            maxX[i] = circle.getCenter().getX() + circle.getRadius();
+            maxY[i] = circle.getCenter().getY() + circle.getRadius();
+            boundsMinX = Math.min(boundsMinX, minX[i]);
+            boundsMinY = Math.min(boundsMinY, minY[i]);
+            boundsMaxX = Math.max(boundsMaxX, maxX[i]);
+            boundsMaxY = Math.max(boundsMaxY, maxY[i]);
+        }
+
+        if (n == 0)
+        {
+            cellSize = MIN_CELL_SIZE;
+            columns = rows = 1;
+            cellStart = new int[2];
+            cellItems = new int[0];
+            return;
+        }
+
+        originX = boundsMinX;
+        originY = boundsMinY;
+        double extentX = (double) boundsMaxX - boundsMinX + 1;
+        double extentY = (double) boundsMaxY - boundsMinY + 1;
+        cellSize = Math.max(MIN_CELL_SIZE, (int) Math.sqrt(extentX * extentY * CIRCLES_PER_CELL / n));
+        columns = (int) (extentX / cellSize) + 1;
+        rows = (int) (extentY / cellSize) + 1;
+
+        cellStart = new int[columns * rows + 1];
+        for (int i = 0; i < n; i++)
+            for (int row = row(minY[i]); row <= row(maxY[i]); row++)
+                for (int column = column(minX[i]); column <= column(maxX[i]); column++)
+                    cellStart[row * columns + column + 1]++;
+        for (int i = 0; i < columns * rows; i++)
+            cellStart[i + 1] += cellStart[i];
+        cellItems = new int[cellStart[columns * rows]];
+        int[] fill = new int[columns * rows];
+        for (int i = 0; i < n; i++)
+        {
+            for (int row = row(minY[i]); row <= row(maxY[i]); row++)
+            {
+                for (int column = column(minX[i]); column <= column(maxX[i]); column++)
+                {
+                    int cell = row * columns + column;
+                    cellItems[cellStart[cell] + fill[cell]++] = i;
+                }
+            }
+        }
+    }
+
+    private int column(long x)
+    {
+        return (int) Math.max(0, Math.min(columns - 1, (x - originX) / cellSize));
+    }
+
+    private int row(long y)
+    {
+        return (int) Math.max(0, Math.min(rows - 1, (y - originY) / cellSize));
+    }
+
+    /**
+     * Creates view of the index for a window. View is queried and returns circles in window's coordinates,
+     * circles not reaching into the window are left out.
+     */
+    public CircleIndex getWindow(int x, int y, int width, int height)
+    {
+        CircleIndex window = new CircleIndex();
+        window.circles = circles;
+        window.minX = minX;
+        window.minY = minY;
+        window.maxX = maxX;
+        window.maxY = maxY;
+        window.originX = originX;
+        window.originY = originY;
+        window.cellSize = cellSize;
+        window.columns = columns;
+        window.rows = rows;
+        window.cellStart = cellStart;
+        window.cellItems = cellItems;
+        window.windowX = windowX + x;
+        window.windowY = windowY + y;
+        window.windowWidth = width;
+        window.windowHeight = height;
+        return window;
+    }
+
+    /**
+     * Finds circles whose bounding boxes come closer than tolerance to the given point
+     * @return candidate circles in their original order
+     */
+    public List<Circle> query(int x, int y, int tolerance)
+    {
+        long x1 = (long) windowX + x - tolerance, y1 = (long) windowY + y - tolerance;
+        long x2 = (long) windowX + x + tolerance, y2 = (long) windowY + y + tolerance;
+        long windowX2 = windowX + windowWidth, windowY2 = windowY + windowHeight;
+        int[] candidates = new int[8];
+        int count = 0;
+        for (int row = row(y1); row <= row(y2); row++)
+        {
+            for (int column = column(x1); column <= column(x2); column++)
+            {
+                int cell = row * columns + column;
+                for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++)
+                {
+                    int item = cellItems[i];
+                    if (minX[item] > x2 || maxX[item] < x1 || minY[item] > y2 || maxY[item] < y1)
+                        continue;
+                    if (minX[item] > windowX2 + tolerance || maxX[item] < windowX - tolerance || minY[item] > windowY2 + tolerance || maxY[item] < windowY - tolerance)
+                        continue;
+                    // An item spanning several queried cells is reported only from the first of them
+                    if (row != row(Math.max(minY[item], y1)) || column != column(Math.max(minX[item], x1)))
+                        continue;
+                    if (count == candidates.length)
+                        candidates = Arrays.copyOf(candidates, count * 2);
+                    candidates[count++] = item;
+                }
+            }
+        }
+
+        Arrays.sort(candidates, 0, count);
+        List<Circle> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            Circle circle = circles.get(candidates[i]);
+            if (windowX != 0 || windowY != 0)
+                circle = new Circle(circle.getCenter().subtract(new Point(windowX, windowY)), circle.getRadius());
+            result.add(circle);
+        }
+        return result;
+    }
+}
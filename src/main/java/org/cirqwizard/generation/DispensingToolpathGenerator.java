@@ -13,6 +13,7 @@ This program is free software: you can redistribute it and/or modify
 */
 package org.cirqwizard.generation;
 
+import org.cirqwizard.generation.optimizer.Chain;
 import org.cirqwizard.generation.toolpath.LinearToolpath;
 import org.cirqwizard.generation.toolpath.Toolpath;
 import org.cirqwizard.geom.Line;
@@ -39,11 +40,15 @@ public class DispensingToolpathGenerator
         this.elements = primitives;
     }
 
-    public List<Toolpath> generate(int needleDiameter)
+    /**
+     * @return a chain per pad, consecutive passes on a pad going in opposite directions
+     */
+    public List<Chain> generate(int needleDiameter)
     {
-        List<Toolpath> toolpaths = new ArrayList<>();
+        List<Chain> chains = new ArrayList<>();
         for (GerberPrimitive element : elements)
         {
+            List<Toolpath> toolpaths = new ArrayList<>();
             if (element instanceof Flash)
             {
                 Flash flash = (Flash)element;
@@ -149,8 +154,21 @@ public class DispensingToolpathGenerator
             {
                 LoggerFactory.getApplicationLogger().log(Level.WARNING, "Unexpected element on solder paste level: " + element);
             }
+
+            if (!toolpaths.isEmpty())
+                chains.add(new Chain(alternateDirections(toolpaths)));
+        }
+        return chains;
+    }
+
+    private List<Toolpath> alternateDirections(List<Toolpath> passes)
+    {
+        for (int i = 1; i < passes.size(); i += 2)
+        {
+            LinearToolpath pass = (LinearToolpath) passes.get(i);
+            passes.set(i, new LinearToolpath(pass.getToolDiameter(), pass.getCurve().getTo(), pass.getCurve().getFrom()));
         }
-        return toolpaths;
+        return passes;
     }
 
     private void fillRectangle(List<Toolpath> toolpaths, Point from, Point to, int width, int needleDiameter)
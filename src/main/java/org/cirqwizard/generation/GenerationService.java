@@ -15,6 +15,8 @@ package org.cirqwizard.generation;
 
 import org.cirqwizard.fx.Context;
 import org.cirqwizard.generation.optimizer.Chain;
+import org.cirqwizard.generation.toolpath.ToolpathsCache;
+import org.cirqwizard.generation.toolpath.ToolpathsCacheKey;
 import org.cirqwizard.layers.Board;
 
 import java.util.List;
@@ -22,6 +24,8 @@ import java.util.List;
 public abstract class GenerationService extends ProcessingService
 {
     private Board.LayerType layer;
+    private ToolpathsCache cache;
+    private ToolpathsCacheKey cacheKey;
 
     public GenerationService(Context context, Board.LayerType layer)
     {
@@ -34,5 +38,26 @@ public abstract class GenerationService extends ProcessingService
         return layer;
     }
 
+    public ToolpathsCache getCache()
+    {
+        return cache;
+    }
+
+    public ToolpathsCacheKey getCacheKey()
+    {
+        return cacheKey;
+    }
+
+    /**
+     * Sets the cache services may keep intermediate results in
+     * @param cache cache to use, null disables caching
+     * @param cacheKey parameters tool paths are generated with
+     */
+    public void setCache(ToolpathsCache cache, ToolpathsCacheKey cacheKey)
+    {
+        this.cache = cache;
+        this.cacheKey = cacheKey;
+    }
+
     public abstract List<Chain> generate();
 }
@@ -0,0 +1,104 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cirqwizard.generation;
+
+/**
+ * One bit per pixel bitmap, packed into 64 bit words row by row.
+ * Pixels are stored most significant bit first, same as in TYPE_BYTE_BINARY images.
+ */
+public class PackedBitmap
+{
+    private long[] words;
+    private int width;
+    private int height;
+    private int wordsPerRow;
+
+    public PackedBitmap(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+        this.wordsPerRow = getWordsPerRow(width);
+        this.words = new long[wordsPerRow * height];
+    }
+
+    public static int getWordsPerRow(int width)
+    {
+        return (width + 63) >>> 6;
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    public int getHeight()
+    {
+        return height;
+    }
+
+    public int getWordsPerRow()
+    {
+        return wordsPerRow;
+    }
+
+    public long[] getWords()
+    {
+        return words;
+    }
+
+    public boolean get(int x, int y)
+    {
+        return (words[y * wordsPerRow + (x >>> 6)] & (Long.MIN_VALUE >>> (x & 63))) != 0;
+    }
+
+    public void set(int x, int y)
+    {
+        words[y * wordsPerRow + (x >>> 6)] |= Long.MIN_VALUE >>> (x & 63);
+    }
+
+    public void clear(int x, int y)
+    {
+        words[y * wordsPerRow + (x >>> 6)] &= ~(Long.MIN_VALUE >>> (x & 63));
+    }
+
+    public boolean isEmpty()
+    {
+        for (long word : words)
+            if (word != 0)
+                return false;
+        return true;
+    }
+
+    /**
+     * Finds the rightmost set pixel in a row which is not to the right of the given one
+     * @return x coordinate of the pixel or -1 if there is none
+     */
+    public int previousSetBit(int x, int y)
+    {
+        if (x < 0)
+            return -1;
+        int rowStart = y * wordsPerRow;
+        int i = x >>> 6;
+        long word = words[rowStart + i] & (-1L << (63 - (x & 63)));
+        while (true)
+        {
+            if (word != 0)
+                return (i << 6) + 63 - Long.numberOfTrailingZeros(word);
+            if (--i < 0)
+                return -1;
+            word = words[rowStart + i];
+        }
+    }
+}
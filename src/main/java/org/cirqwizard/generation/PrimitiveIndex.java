@@ -0,0 +1,177 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cirqwizard.generation;
+
+import org.cirqwizard.geom.Point;
+import org.cirqwizard.gerber.GerberPrimitive;
+import org.cirqwizard.gerber.Region;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Uniform grid over primitives' bounding boxes. Queries return primitives in their original order,
+ * so that rendering of candidates produces the same image as rendering of the whole list.
+ * Index is immutable once built and can be shared between threads.
+ */
+public class PrimitiveIndex
+{
+    private static final int MIN_CELL_SIZE = 100;
+    private static final int PRIMITIVES_PER_CELL = 4;
+    private static final int MITER_LIMIT = 10;      // Default miter limit of BasicStroke, used for regions
+
+    private List<GerberPrimitive> primitives;
+    private int[] minX;
+    private int[] minY;
+    private int[] maxX;
+    private int[] maxY;
+    private int[] reach;        // How far a primitive grows per unit of inflation
+
+    private int originX;
+    private int originY;
+    private int cellSize;
+    private int columns;
+    private int rows;
+    private int[] cellStart;
+    private int[] cellItems;
+    private int maxReach;
+
+    public PrimitiveIndex(List<GerberPrimitive> primitives)
+    {
+        this.primitives = primitives;
+        int n = primitives.size();
+        minX = new int[n];
+        minY = new int[n];
+        maxX = new int[n];
+        maxY = new int[n];
+        reach = new int[n];
+
+        int boundsMinX = Integer.MAX_VALUE, boundsMinY = Integer.MAX_VALUE;
+        int boundsMaxX = Integer.MIN_VALUE, boundsMaxY = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++)
+        {
+            GerberPrimitive primitive = primitives.get(i);
+            int padding = primitive.getAperture() == null ? 0 : primitive.getAperture().getCircumRadius();
+            Point min = primitive.getMin();
+            Point max = primitive.getMax();
+            minX[i] = min.getX() - padding;
+            minY[i] = min.getY() - padding;
+            maxX[i] = max.getX() + padding;
+            maxY[i] = max.getY() + padding;
+            reach[i] = primitive instanceof Region ? MITER_LIMIT : 2;
+            maxReach = Math.max(maxReach, reach[i]);
+            boundsMinX = Math.min(boundsMinX, minX[i]);
+            boundsMinY = Math.min(boundsMinY, minY[i]);
+            boundsMaxX = Math.max(boundsMaxX, maxX[i]);
+            boundsMaxY = Math.max(boundsMaxY, maxY[i]);
+        }
+
+        if (n == 0)
+        {
+            cellSize = MIN_CELL_SIZE;
+            columns = rows = 1;
+            cellStart = new int[2];
+            cellItems = new int[0];
+            return;
+        }
+
+        originX = boundsMinX;
+        originY = boundsMinY;
+        double extentX = (double) boundsMaxX - boundsMinX + 1;
+        double extentY = (double) boundsMaxY - boundsMinY + 1;
+        cellSize = Math.max(MIN_CELL_SIZE, (int) Math.sqrt(extentX * extentY * PRIMITIVES_PER_CELL / n));
+        columns = (int) (extentX / cellSize) + 1;
+        rows = (int) (extentY / cellSize) + 1;
+
+        cellStart = new int[columns * rows + 1];
+        for (int i = 0; i < n; i++)
+            forEachCell(i, cell -> cellStart[cell + 1]++);
+        for (int i = 0; i < columns * rows; i++)
+            cellStart[i + 1] += cellStart[i];
+        cellItems = new int[cellStart[columns * rows]];
+        int[] fill = new int[columns * rows];
+        for (int i = 0; i < n; i++)
+        {
+            final int item = i;
+            forEachCell(i, cell -> cellItems[cellStart[cell] + fill[cell]++] = item);
+        }
+    }
+
+    private interface CellConsumer
+    {
+        void accept(int cell);
+    }
+
+    private void forEachCell(int item, CellConsumer consumer)
+    {
+        int fromColumn = column(minX[item]), toColumn = column(maxX[item]);
+        int fromRow = row(minY[item]), toRow = row(maxY[item]);
+        for (int row = fromRow; row <= toRow; row++)
+            for (int column = fromColumn; column <= toColumn; column++)
+                consumer.accept(row * columns + column);
+    }
+
+    private int column(long x)
+    {
+        return (int) Math.max(0, Math.min(columns - 1, (x - originX) / cellSize));
+    }
+
+    private int row(long y)
+    {
+        return (int) Math.max(0, Math.min(rows - 1, (y - originY) / cellSize));
+    }
+
+    public List<GerberPrimitive> getPrimitives()
+    {
+        return primitives;
+    }
+
+    /**
+     * Finds primitives which may affect given rectangle once inflated
+     * @param x lower left corner of the rectangle
+     * @param y lower left corner of the rectangle
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     * @param inflation inflation primitives are going to be rendered with
+     * @return candidate primitives in their original order
+     */
+    public List<GerberPrimitive> query(int x, int y, int width, int height, int inflation)
+    {
+        long margin = Math.abs((long) inflation);
+        long x1 = x, y1 = y, x2 = (long) x + width, y2 = (long) y + height;
+        BitSet candidates = new BitSet(primitives.size());
+        for (int row = row(y1 - margin * maxReach); row <= row(y2 + margin * maxReach); row++)
+        {
+            for (int column = column(x1 - margin * maxReach); column <= column(x2 + margin * maxReach); column++)
+            {
+                int cell = row * columns + column;
+                for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++)
+                {
+                    int item = cellItems[i];
+                    long itemMargin = margin * reach[item];
+                    if (minX[item] - itemMargin <= x2 && maxX[item] + itemMargin >= x1 &&
+                            minY[item] - itemMargin <= y2 && maxY[item] + itemMargin >= y1)
+                        candidates.set(item);
+                }
+            }
+        }
+
+        List<GerberPrimitive> result = new ArrayList<>(candidates.cardinality());
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1))
+            result.add(primitives.get(i));
+        return result;
+    }
+}
@@ -30,6 +30,8 @@ public class RasterWindow
 {
     private BufferedImage window;
     private Point windowLowerLeftCorner;
+    private int width;
+    private int height;
     private Graphics2D g;
 
     public RasterWindow(Point windowLowerLeftCorner, int width, int height)
@@ -47,6 +49,8 @@ public class RasterWindow
     public RasterWindow(Point windowLowerLeftCorner, int width, int height, double scale)
     {
         this.windowLowerLeftCorner = windowLowerLeftCorner;
+        this.width = width;
+        this.height = height;
         this.window = new BufferedImage((int)(scale * width), (int)(scale * height), BufferedImage.TYPE_BYTE_BINARY);
         g = window.createGraphics();
         g.setBackground(Color.BLACK);
@@ -62,6 +66,11 @@ public class RasterWindow
             renderPrimitive(primitive, primitive.getPolarity() == GerberPrimitive.Polarity.DARK ? inflation : -inflation);
     }
 
+    public void render(PrimitiveIndex index, int inflation)
+    {
+        render(index.query(windowLowerLeftCorner.getX(), windowLowerLeftCorner.getY(), width, height, inflation), inflation);
+    }
+
     private void renderPrimitive(GerberPrimitive primitive, double inflation)
     {
         if (!(primitive instanceof Region) && !primitive.getAperture().isVisible())
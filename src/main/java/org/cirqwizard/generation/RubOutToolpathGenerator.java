@@ -14,7 +14,6 @@ This program is free software: you can redistribute it and/or modify
 
 package org.cirqwizard.generation;
 
-import javafx.application.Platform;
 import javafx.beans.property.BooleanProperty;
 import org.cirqwizard.geom.Point;
 import org.cirqwizard.gerber.GerberPrimitive;
@@ -23,17 +22,12 @@ import org.cirqwizard.generation.toolpath.Toolpath;
 
 import java.util.List;
 import java.util.Vector;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-import java.util.logging.Level;
 
 public class RubOutToolpathGenerator extends AbstractToolpathGenerator
 {
     private final static int WINDOW_SIZE = 5000;
     private final static int WINDOWS_HORIZONTAL_OVERLAP = 5;
     private final static int WINDOWS_VERTICAL_OVERLAP = 500;
-    private final static int OOM_RETRY_DELAY = 1000;
 
     private int width;
     private int height;
@@ -45,13 +39,19 @@ public class RubOutToolpathGenerator extends AbstractToolpathGenerator
 
     public void init(int width, int height, int inflation, int toolDiameter, int overlap, List<GerberPrimitive> primitives, int threadCount,
                      BooleanProperty cancelledProperty)
+    {
+        init(width, height, inflation, toolDiameter, overlap, new PrimitiveIndex(primitives), threadCount, cancelledProperty);
+    }
+
+    public void init(int width, int height, int inflation, int toolDiameter, int overlap, PrimitiveIndex primitiveIndex, int threadCount,
+                     BooleanProperty cancelledProperty)
     {
         this.width = width;
         this.height = height;
         this.inflation = inflation;
         this.toolDiameter = toolDiameter;
         this.overlap = overlap;
-        this.primitives = primitives;
+        setPrimitiveIndex(primitiveIndex);
         this.threadCount = threadCount;
         this.cancelledProperty = cancelledProperty;
     }
@@ -60,19 +60,17 @@ public class RubOutToolpathGenerator extends AbstractToolpathGenerator
     {
         final Vector<Toolpath> segments = new Vector<>();
 
-        ExecutorService pool = Executors.newFixedThreadPool(threadCount);
+        WindowScheduler scheduler = new WindowScheduler(threadCount, cancelledProperty);
         for (int x = 0; x < width; x += WINDOW_SIZE)
-            for (int y = 0; y < height; y += WINDOW_SIZE)
-                pool.submit(new WindowGeneratorThread(x > WINDOWS_HORIZONTAL_OVERLAP ? x - WINDOWS_HORIZONTAL_OVERLAP : x, y > WINDOWS_VERTICAL_OVERLAP ? y - WINDOWS_VERTICAL_OVERLAP : y, segments));
-
-        try
-        {
-            pool.shutdown();
-            pool.awaitTermination(10, TimeUnit.DAYS);
-        }
-        catch (InterruptedException e)
         {
+            for (int y = 0; y < height; y += WINDOW_SIZE)
+            {
+                WindowGeneratorThread window = new WindowGeneratorThread(x > WINDOWS_HORIZONTAL_OVERLAP ? x - WINDOWS_HORIZONTAL_OVERLAP : x,
+                        y > WINDOWS_VERTICAL_OVERLAP ? y - WINDOWS_VERTICAL_OVERLAP : y, segments);
+                scheduler.submit(WindowScheduler.estimateBytePerPixelWindow((int)(scale * window.windowWidth), (int)(scale * window.windowHeight)), window);
+            }
         }
+        scheduler.await();
 
         return segments;
     }
@@ -81,12 +79,16 @@ public class RubOutToolpathGenerator extends AbstractToolpathGenerator
     {
         private int x;
         private int y;
+        private int windowWidth;
+        private int windowHeight;
         private Vector<Toolpath> segments;
 
         private WindowGeneratorThread(int x, int y, Vector<Toolpath> segments)
         {
             this.x = x;
             this.y = y;
+            this.windowWidth = Math.min(WINDOW_SIZE + 2 * WINDOWS_HORIZONTAL_OVERLAP, width - x);
+            this.windowHeight = Math.min(WINDOW_SIZE + 2 * WINDOWS_VERTICAL_OVERLAP, height - y);
             this.segments = segments;
         }
 
@@ -98,14 +100,12 @@ public class RubOutToolpathGenerator extends AbstractToolpathGenerator
 
             try
             {
-                Platform.runLater(() -> progressProperty.set(((double) y * WINDOW_SIZE + (double) x * height) / ((double) width * height)));
+                setProgress(((double) y * WINDOW_SIZE + (double) x * height) / ((double) width * height));
 
                 Point offset = new Point(x, y);
 
-                int windowWidth = Math.min(WINDOW_SIZE + 2 * WINDOWS_HORIZONTAL_OVERLAP, width - x);
-                int windowHeight = Math.min(WINDOW_SIZE + 2 * WINDOWS_VERTICAL_OVERLAP, height - y);
                 RasterWindow window = new RasterWindow(new Point(x, y), windowWidth, windowHeight, scale);
-                window.render(primitives, inflation + toolDiameter / 2);
+                window.render(primitiveIndex, inflation + toolDiameter / 2);
 
                 RubOutGenerator g = new RubOutGenerator(window.getBufferedImage(), toolDiameter, overlap);
                 window = null;
@@ -113,14 +113,7 @@ public class RubOutToolpathGenerator extends AbstractToolpathGenerator
             }
             catch (OutOfMemoryError e)
             {
-                LoggerFactory.getApplicationLogger().log(Level.WARNING, "Out of memory caught while generating tool paths. Retrying", e);
-                try
-                {
-                    Thread.sleep((int)((1.0 + Math.random()) * OOM_RETRY_DELAY));
-                }
-                catch (InterruptedException e1)  {}
-
-                run();
+                throw e;    // WindowScheduler reduces memory budget and retries
             }
             catch (Throwable e)
             {
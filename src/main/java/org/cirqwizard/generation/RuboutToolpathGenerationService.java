@@ -38,6 +38,7 @@ public class RuboutToolpathGenerationService extends GenerationService
         RubOutSettings settings = SettingsFactory.getRubOutSettings();
         int diameter = settings.getToolDiameter().getValue();
         List<GerberPrimitive> elements = (List<GerberPrimitive>) getContext().getPanel().getCombinedElements(getLayer());
+        PrimitiveIndex index = new PrimitiveIndex(elements);
 
         List<Toolpath> toolpaths = new ArrayList<>();
         for (int pass = 0; pass < 2; pass++)
@@ -46,7 +47,7 @@ public class RuboutToolpathGenerationService extends GenerationService
                 return null;
             ToolpathGenerator g = new ToolpathGenerator();
             g.init(getContext().getPanel().getSize().getWidth() + 1, getContext().getPanel().getSize().getHeight() + 1,
-                    pass * (diameter - settings.getOverlap().getValue()) + settings.getInitialOffset().getValue() + diameter / 2, diameter, elements,
+                    pass * (diameter - settings.getOverlap().getValue()) + settings.getInitialOffset().getValue() + diameter / 2, diameter, index,
                     cancelledProperty());
             setCurrentStage("Generating tool paths...");
             progressProperty().bind(g.progressProperty());
@@ -54,7 +55,7 @@ public class RuboutToolpathGenerationService extends GenerationService
             List<Toolpath> t = g.generate();
             if (t == null || t.size() == 0)
                 continue;
-            toolpaths.addAll(new ToolpathMerger(t, diameter / 4).merge());
+            toolpaths.addAll(t);
         }
         if (cancelledProperty().get())
             return null;
@@ -62,7 +63,7 @@ public class RuboutToolpathGenerationService extends GenerationService
         final RubOutToolpathGenerator generator = new RubOutToolpathGenerator();
         generator.init(getContext().getPanel().getSize().getWidth() + 1, getContext().getPanel().getSize().getHeight() + 1,
                 settings.getInitialOffset().getValue(),
-                diameter, settings.getOverlap().getValue(), elements,
+                diameter, settings.getOverlap().getValue(), index,
                 SettingsFactory.getApplicationSettings().getProcessingThreads().getValue(), cancelledProperty());
         progressProperty().unbind();
         progressProperty().bind(generator.progressProperty());
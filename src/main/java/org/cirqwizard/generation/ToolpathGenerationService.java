@@ -14,16 +14,19 @@ This program is free software: you can redistribute it and/or modify
 package org.cirqwizard.generation;
 
 import org.cirqwizard.fx.Context;
+import org.cirqwizard.fx.PCBSize;
 import org.cirqwizard.generation.optimizer.Chain;
 import org.cirqwizard.generation.optimizer.ChainDetector;
+import org.cirqwizard.generation.toolpath.*;
+import org.cirqwizard.geom.Arc;
+import org.cirqwizard.geom.Point;
 import org.cirqwizard.gerber.GerberPrimitive;
 import org.cirqwizard.layers.*;
+import org.cirqwizard.settings.SettingsFactory;
 import org.cirqwizard.settings.ToolSettings;
-import org.cirqwizard.generation.toolpath.Toolpath;
 
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class ToolpathGenerationService extends GenerationService
 {
@@ -34,15 +37,41 @@ public class ToolpathGenerationService extends GenerationService
 
     @Override
     public List<Chain> generate()
+    {
+        Panel panel = getContext().getPanel();
+        int margin = getInteractionMargin();
+        List<Toolpath> toolpaths = new ArrayList<>();
+
+        for (List<PanelBoard> cluster : getBoardClusters(margin))
+        {
+            List<Toolpath> clusterToolpaths;
+            PanelBoard board = cluster.get(0);
+            if (cluster.size() == 1 && isCacheable(board, margin))
+                clusterToolpaths = getBoardToolpaths(board, margin);
+            else
+                clusterToolpaths = generateToolpaths(getElements(cluster), panel.getSize().getWidth() + 1, panel.getSize().getHeight() + 1);
+            if (isCancelled())
+                return null;
+            if (clusterToolpaths != null)
+                toolpaths.addAll(clusterToolpaths);
+        }
+
+        if (toolpaths.size() == 0)
+            return null;
+        return new ChainDetector(toolpaths).detect();
+    }
+
+    private List<Toolpath> generateToolpaths(List<GerberPrimitive> elements, int width, int height)
     {
         ToolSettings currentTool = getContext().getCurrentMillingTool();
         int diameter = currentTool.getDiameter();
 
-        final ToolpathGenerator generator = new ToolpathGenerator();
-        List<GerberPrimitive> elements = (List<GerberPrimitive>) getContext().getPanel().getCombinedElements(getLayer());
-        generator.init(getContext().getPanel().getSize().getWidth() + 1, getContext().getPanel().getSize().getHeight() + 1,
-                diameter / 2, diameter, elements, cancelledProperty());
+        final ToolpathGenerator generator = SettingsFactory.getInsulationMillingSettings().getAnalyticContours().getValue() ?
+                new AnalyticToolpathGenerator() : new ToolpathGenerator();
+        PrimitiveIndex index = new PrimitiveIndex(elements);
+        generator.init(width, height, diameter / 2, diameter, index, cancelledProperty());
         setCurrentStage("Generating tool paths...");
+        progressProperty().unbind();
         progressProperty().bind(generator.progressProperty());
 
         List<Toolpath> toolpaths = generator.generate();
@@ -51,7 +80,6 @@ public class ToolpathGenerationService extends GenerationService
             return null;
         if (toolpaths == null || toolpaths.size() == 0)
             return null;
-        toolpaths = new ToolpathMerger(toolpaths, getMergeTolerance()).merge();
 
         if (currentTool.getAdditionalPasses() > 0)
         {
@@ -62,43 +90,174 @@ public class ToolpathGenerationService extends GenerationService
                 for (int i = 0 ; i < currentTool.getAdditionalPasses(); i++)
                 {
                     int offset = diameter * (100 - currentTool.getAdditionalPassesOverlap()) / 100;
-                    generator.init(getContext().getPanel().getSize().getWidth() + 1, getContext().getPanel().getSize().getHeight() + 1,
-                            diameter / 2 + offset * (i + 1), diameter, elements,
-                            cancelledProperty());
+                    generator.init(width, height, diameter / 2 + offset * (i + 1), diameter, index, cancelledProperty());
                     List<Toolpath> additionalToolpaths = generator.generate();
                     if (additionalToolpaths == null || additionalToolpaths.size() == 0)
                         continue;
                     if (isCancelled())
                         return null;
-                    toolpaths.addAll(new ToolpathMerger(additionalToolpaths, getMergeTolerance()).merge());
+                    toolpaths.addAll(additionalToolpaths);
                 }
             }
             else
             {
                 progressProperty().unbind();
-                generatePadsOnlyAdditionalPasses();
+                generatePadsOnlyAdditionalPasses(index, width, height);
             }
         }
 
-        return new ChainDetector(toolpaths).detect();
+        return toolpaths;
     }
 
-    private List<Toolpath> generatePadsOnlyAdditionalPasses()
+    private List<Toolpath> generatePadsOnlyAdditionalPasses(PrimitiveIndex index, int width, int height)
     {
         ToolSettings currentTool = getContext().getCurrentMillingTool();
-        List<? extends LayerElement> elements = getContext().getPanel().getBoards().stream().
-                map(b -> b.getBoard().getLayer(Board.LayerType.TOP)).
-                filter(l -> l != null).
-                map(Layer::getElements).
-                flatMap(Collection::stream).collect(Collectors.toList());
-        AdditionalToolpathGenerator additionalGenerator = new AdditionalToolpathGenerator(getContext().getPanel().getSize().getWidth() + 1,
-                getContext().getPanel().getSize().getHeight() + 1, currentTool.getAdditionalPasses(),
-                currentTool.getAdditionalPassesOverlap(), currentTool.getDiameter(), (List<GerberPrimitive>) elements);
+        AdditionalToolpathGenerator additionalGenerator = new AdditionalToolpathGenerator(width, height, currentTool.getAdditionalPasses(),
+                currentTool.getAdditionalPassesOverlap(), currentTool.getDiameter(), index);
         progressProperty().unbind();
         progressProperty().bind(additionalGenerator.progressProperty());
         return new ToolpathMerger(additionalGenerator.generate(), getMergeTolerance()).merge();
     }
 
+    // Tool paths of a board are generated in board's coordinates, shifted by margin so that contours around board's edges fit
+    private List<Toolpath> getBoardToolpaths(PanelBoard board, int margin)
+    {
+        BoardToolpathsCacheKey key = new BoardToolpathsCacheKey(board.getLayerHash(getLayer()),
+                BoardToolpathsCacheKey.normalizeAngle(board.getAngle()), getCacheKey());
+        List<Toolpath> toolpaths = getCache().getBoardToolpaths(key);
+        if (toolpaths == null)
+        {
+            List<GerberPrimitive> elements = new ArrayList<>();
+            for (LayerElement e : board.getBoard().getLayer(getLayer()).getElements())
+                elements.add(cloneAndMove((GerberPrimitive) e, new Point(margin, margin)));
+            toolpaths = generateToolpaths(elements, board.getBoard().getWidth() + margin * 2 + 1, board.getBoard().getHeight() + margin * 2 + 1);
+            if (toolpaths == null)
+                return null;
+            toolpaths = translate(toolpaths, new Point(-margin, -margin));
+            getCache().setBoardToolpaths(key, toolpaths);
+        }
+        return translate(toolpaths, new Point(board.getX(), board.getY()));
+    }
+
+    private boolean isCacheable(PanelBoard board, int margin)
+    {
+        if (getCache() == null || getCacheKey() == null || board.getLayerHash(getLayer()) == null)
+            return false;
+        PCBSize size = getContext().getPanel().getSize();
+        return board.getX() - margin >= 0 && board.getY() - margin >= 0 &&
+                board.getX() + board.getBoard().getWidth() + margin <= size.getWidth() &&
+                board.getY() + board.getBoard().getHeight() + margin <= size.getHeight();
+    }
+
+    /**
+     * Groups boards whose tool paths may interact, i.e. boards closer to each other than twice the margin.
+     * Without cache all the boards form a single group and the panel is processed as a whole
+     */
+    private List<List<PanelBoard>> getBoardClusters(int margin)
+    {
+        List<PanelBoard> boards = new ArrayList<>();
+        for (PanelBoard board : getContext().getPanel().getBoards())
+            if (board.getBoard() != null && board.getBoard().getLayer(getLayer()) != null)
+                boards.add(board);
+
+        List<List<PanelBoard>> clusters = new ArrayList<>();
+        if (getCache() == null)
+        {
+            if (!boards.isEmpty())
+                clusters.add(boards);
+            return clusters;
+        }
+
+        int[] parent = new int[boards.size()];
+        for (int i = 0; i < parent.length; i++)
+            parent[i] = i;
+        for (int i = 0; i < boards.size(); i++)
+            for (int j = i + 1; j < boards.size(); j++)
+                if (interact(boards.get(i), boards.get(j), margin))
+                    parent[find(parent, i)] = find(parent, j);
+
+        for (int i = 0; i < boards.size(); i++)
+        {
+            if (find(parent, i) != i)
+                continue;
+            List<PanelBoard> cluster = new ArrayList<>();
+            for (int j = 0; j < boards.size(); j++)
+                if (find(parent, j) == i)
+                    cluster.add(boards.get(j));
+            clusters.add(cluster);
+        }
+        return clusters;
+    }
+
+    private static int find(int[] parent, int i)
+    {
+        while (parent[i] != i)
+            i = parent[i] = parent[parent[i]];
+        return i;
+    }
+
+    private static boolean interact(PanelBoard b1, PanelBoard b2, int margin)
+    {
+        return b1.getX() - margin < b2.getX() + b2.getBoard().getWidth() + margin &&
+                b2.getX() - margin < b1.getX() + b1.getBoard().getWidth() + margin &&
+                b1.getY() - margin < b2.getY() + b2.getBoard().getHeight() + margin &&
+                b2.getY() - margin < b1.getY() + b1.getBoard().getHeight() + margin;
+    }
+
+    private List<GerberPrimitive> getElements(List<PanelBoard> boards)
+    {
+        List<GerberPrimitive> elements = new ArrayList<>();
+        for (PanelBoard board : boards)
+        {
+            Point offset = new Point(board.getX(), board.getY());
+            for (LayerElement e : board.getBoard().getLayer(getLayer()).getElements())
+                elements.add(cloneAndMove((GerberPrimitive) e, offset));
+        }
+        return elements;
+    }
+
+    private static GerberPrimitive cloneAndMove(GerberPrimitive primitive, Point offset)
+    {
+        try
+        {
+            GerberPrimitive clone = (GerberPrimitive) primitive.clone();
+            clone.move(offset);
+            return clone;
+        }
+        catch (CloneNotSupportedException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static List<Toolpath> translate(List<Toolpath> toolpaths, Point offset)
+    {
+        List<Toolpath> result = new ArrayList<>();
+        for (Toolpath toolpath : toolpaths)
+        {
+            if (toolpath instanceof CircularToolpath)
+            {
+                CircularToolpath ct = (CircularToolpath) toolpath;
+                Arc arc = (Arc) ct.getCurve();
+                result.add(new CircularToolpath(ct.getToolDiameter(), arc.getFrom().add(offset), arc.getTo().add(offset),
+                        arc.getCenter().add(offset), arc.getRadius(), arc.isClockwise()));
+            }
+            else if (toolpath instanceof LinearToolpath)
+            {
+                LinearToolpath lt = (LinearToolpath) toolpath;
+                result.add(new LinearToolpath(lt.getToolDiameter(), lt.getCurve().getFrom().add(offset), lt.getCurve().getTo().add(offset)));
+            }
+        }
+        return result;
+    }
+
+    // Contours of a board do not extend further than this from its copper
+    private int getInteractionMargin()
+    {
+        ToolSettings currentTool = getContext().getCurrentMillingTool();
+        return currentTool.getDiameter() * (currentTool.getAdditionalPasses() + 2);
+    }
+
     private int getMergeTolerance()
     {
         return  getContext().getCurrentMillingTool().getDiameter() / 4;
@@ -14,79 +14,117 @@ This program is free software: you can redistribute it and/or modify
 
 package org.cirqwizard.generation;
 
-import javafx.application.Platform;
 import javafx.beans.property.BooleanProperty;
-import org.cirqwizard.geom.Circle;
 import org.cirqwizard.geom.Point;
 import org.cirqwizard.gerber.GerberPrimitive;
 import org.cirqwizard.logging.LoggerFactory;
 import org.cirqwizard.settings.SettingsFactory;
+import org.cirqwizard.generation.toolpath.CuttingToolpath;
 import org.cirqwizard.generation.toolpath.Toolpath;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Vector;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-import java.util.logging.Level;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ToolpathGenerator extends AbstractToolpathGenerator
 {
     private final static int WINDOW_SIZE = 5000;
+    private final static int MIN_WINDOW_SIZE = 1250;
     private final static int WINDOWS_OVERLAP = 5;
-    private final static int OOM_RETRY_DELAY = 1000;
-
-    private int width;
-    private int height;
-    private int toolDiameter;
-    private List<Circle> knownCircles;
-    private BooleanProperty cancelledProperty;
+    private final static int MAX_PRIMITIVES_PER_WINDOW = 400;
+
+    protected int width;
+    protected int height;
+    protected int toolDiameter;
+    protected int mergeTolerance;
+    protected CircleIndex knownCircles;
+    protected BooleanProperty cancelledProperty;
     private double scale = 1;   // It has to go
 
     public void init(int width, int height, int inflation, int toolDiameter, List<GerberPrimitive> primitives,
                      BooleanProperty cancelledProperty)
+    {
+        init(width, height, inflation, toolDiameter, new PrimitiveIndex(primitives), cancelledProperty);
+    }
+
+    public void init(int width, int height, int inflation, int toolDiameter, PrimitiveIndex primitiveIndex,
+                     BooleanProperty cancelledProperty)
     {
         this.width = width;
         this.height = height;
         this.inflation = inflation;
         this.toolDiameter = toolDiameter;
-        this.primitives = primitives;
+        this.mergeTolerance = toolDiameter / 4;
+        setPrimitiveIndex(primitiveIndex);
         this.cancelledProperty = cancelledProperty;
-        knownCircles = getKnownCircles(inflation);
+        knownCircles = getKnownCircleIndex(inflation);
     }
 
+    /**
+     * Toolpaths are merged by window workers, only those reaching into overlaps of neighbouring windows are merged afterwards
+     */
     public List<Toolpath> generate()
     {
-        final Vector<Toolpath> segments = new Vector<>();
-
-        ExecutorService pool = Executors.newFixedThreadPool(SettingsFactory.getApplicationSettings().getProcessingThreads().getValue());
-        for (int x = 0; x < width; x += WINDOW_SIZE)
-            for (int y = 0; y < height; y += WINDOW_SIZE)
-                pool.submit(new WindowGeneratorThread(x > WINDOWS_OVERLAP ? x - WINDOWS_OVERLAP : x, y > WINDOWS_OVERLAP ? y - WINDOWS_OVERLAP : y, segments));
-
-        try
+        List<WindowPlanner.Window> windows = planWindows(new WindowPlanner(width, height, WINDOW_SIZE, MIN_WINDOW_SIZE, WINDOWS_OVERLAP,
+                MAX_PRIMITIVES_PER_WINDOW));
+        AtomicInteger processedWindows = new AtomicInteger();
+
+        WindowScheduler scheduler = new WindowScheduler(SettingsFactory.getApplicationSettings().getProcessingThreads().getValue(),
+                cancelledProperty);
+        List<WindowGeneratorThread> threads = new ArrayList<>();
+        for (WindowPlanner.Window w : windows)
         {
-            pool.shutdown();
-            pool.awaitTermination(10, TimeUnit.DAYS);
+            WindowGeneratorThread window = new WindowGeneratorThread(w.getX(), w.getY(), w.getWidth(), w.getHeight(),
+                    () -> setProgress((double) processedWindows.incrementAndGet() / windows.size()));
+            threads.add(window);
+            scheduler.submit(WindowScheduler.estimatePackedWindow((int)(scale * w.getWidth()), (int)(scale * w.getHeight())), window);
         }
-        catch (InterruptedException e)
+        scheduler.await();
+
+        List<Toolpath> segments = new ArrayList<>();
+        List<Toolpath> seamSegments = new ArrayList<>();
+        for (WindowGeneratorThread thread : threads)
         {
+            segments.addAll(thread.getSegments());
+            seamSegments.addAll(thread.getSeamSegments());
         }
+        segments.addAll(new ToolpathMerger(seamSegments, mergeTolerance).merge());
 
         return segments;
     }
 
+    protected List<WindowPlanner.Window> planWindows(WindowPlanner planner)
+    {
+        return planner.plan(primitiveIndex, inflation);
+    }
+
     private class WindowGeneratorThread implements Runnable
     {
         private int x;
         private int y;
-        private Vector<Toolpath> segments;
+        private int windowWidth;
+        private int windowHeight;
+        private List<Toolpath> segments = new ArrayList<>();
+        private List<Toolpath> seamSegments = new ArrayList<>();
+        private Runnable completionCallback;
 
-        private WindowGeneratorThread(int x, int y, Vector<Toolpath> segments)
+        private WindowGeneratorThread(int x, int y, int windowWidth, int windowHeight, Runnable completionCallback)
         {
             this.x = x;
             this.y = y;
-            this.segments = segments;
+            this.windowWidth = windowWidth;
+            this.windowHeight = windowHeight;
+            this.completionCallback = completionCallback;
+        }
+
+        public List<Toolpath> getSegments()
+        {
+            return segments;
+        }
+
+        public List<Toolpath> getSeamSegments()
+        {
+            return seamSegments;
         }
 
         @Override
@@ -97,44 +135,50 @@ public class ToolpathGenerator extends AbstractToolpathGenerator
 
             try
             {
-                Platform.runLater(() -> progressProperty.set(((double) y * WINDOW_SIZE + (double) x * height) / ((double) width * height)));
-
                 Point offset = new Point(x, y);
-                List<Circle> translatedCircles = translateKnownCircles(offset, scale, knownCircles);
 
-                int windowWidth = Math.min(WINDOW_SIZE + 2 * WINDOWS_OVERLAP, width - x);
-                int windowHeight = Math.min(WINDOW_SIZE + 2 * WINDOWS_OVERLAP, height - y);
                 RasterWindow window = new RasterWindow(new Point(x, y), windowWidth, windowHeight, scale);
-                window.render(primitives, inflation);
+                window.render(primitiveIndex, inflation);
                 SimpleEdgeDetector detector = new SimpleEdgeDetector(window.getBufferedImage());
                 window = null; // Helping GC to reclaim memory consumed by rendered image
                 detector.process();
                 if (detector.getOutput() != null)
                 {
                     java.util.List<Toolpath> toolpaths =
-                            new Tracer(detector.getOutput(), (int)(scale * windowWidth), (int)(scale * windowHeight), toolDiameter, translatedCircles).process();
+                            new Tracer(detector.getOutput(), toolDiameter, knownCircles.getWindow(x, y, windowWidth, windowHeight)).process();
                     detector = null;  // Helping GC to reclaim memory consumed by processed image
-                    segments.addAll(translateToolpaths(toolpaths, offset, scale));
+                    toolpaths = new ToolpathMerger(translateToolpaths(toolpaths, offset, scale), mergeTolerance).merge();
+                    List<Toolpath> interior = new ArrayList<>();
+                    List<Toolpath> seam = new ArrayList<>();
+                    for (Toolpath t : toolpaths)
+                    {
+                        CuttingToolpath toolpath = (CuttingToolpath) t;
+                        if (isNearSeam(toolpath.getCurve().getFrom()) || isNearSeam(toolpath.getCurve().getTo()))
+                            seam.add(t);
+                        else
+                            interior.add(t);
+                    }
+                    segments = interior;
+                    seamSegments = seam;
                 }
+                completionCallback.run();
             }
             catch (OutOfMemoryError e)
             {
-                LoggerFactory.getApplicationLogger().log(Level.WARNING, "Out of memory caught while generating tool paths. Retrying", e);
-                try
-                {
-                    Thread.sleep((int)((1.0 + Math.random()) * OOM_RETRY_DELAY));
-                }
-                catch (InterruptedException e1)  {}
-
-                run();
+                throw e;    // WindowScheduler reduces memory budget and retries
             }
             catch (Throwable e)
             {
                 LoggerFactory.logException("Error while generating tool paths", e);
             }
         }
-    }
-
-
 
+        // Neighbouring windows overlap by twice the overlap, their toolpaths can join ours that far from our border
+        private boolean isNearSeam(Point p)
+        {
+            int margin = WINDOWS_OVERLAP * 2 + mergeTolerance;
+            return (x > 0 && p.getX() < x + margin) || (x + windowWidth < width && p.getX() >= x + windowWidth - margin) ||
+                    (y > 0 && p.getY() < y + margin) || (y + windowHeight < height && p.getY() >= y + windowHeight - margin);
+        }
+    }
 }
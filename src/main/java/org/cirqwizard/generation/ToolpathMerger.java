@@ -11,245 +11,362 @@ This program is free software: you can redistribute it and/or modify
     You should have received a copy of the GNU General Public License
     along with this program.  If not, see <http://www.gnu.org/licenses/>.
 */
-
 package org.cirqwizard.generation;
 
 import org.cirqwizard.geom.Arc;
 import org.cirqwizard.geom.Curve;
-import org.cirqwizard.geom.Line;
 import org.cirqwizard.geom.Point;
-import org.cirqwizard.generation.toolpath.CircularToolpath;
 import org.cirqwizard.generation.toolpath.CuttingToolpath;
 import org.cirqwizard.generation.toolpath.LinearToolpath;
 import org.cirqwizard.generation.toolpath.Toolpath;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.BitSet;
 import java.util.List;
 
+/**
+ * Merges toolpaths whose ends meet within tolerance: drops dots, duplicate and folded back segments,
+ * then joins collinear segments and arcs of the same circle.
+ * Endpoints are indexed as 2 * i for start and 2 * i + 1 for end of i-th toolpath.
+ */
 public class ToolpathMerger
 {
+    private static final double COMPARISON_THRESHOLD = Math.PI / 60;  // 3 degrees
+    private static final double COS_THRESHOLD = Math.cos(COMPARISON_THRESHOLD);
+
     private List<Toolpath> toolpaths;
-    private HashMap<Point, ArrayList<Toolpath>> verticesMap = new HashMap<>();
     private int tolerance;
-    private int roundingFactor;
+    private int cellSize;
+
+    private Curve[] curves;
+    private int[] xs;
+    private int[] ys;
+    private BitSet removed;
+    private int[] links;
+    private int[] parents;
+
+    private long[] cellKeys;
+    private int[] cellHeads;
+    private int[] nextInCell;
+    private int[] candidates = new int[16];
+    private int candidatesCount;
 
     public ToolpathMerger(List<Toolpath> toolpaths, int tolerance)
     {
         this.toolpaths = toolpaths;
         this.tolerance = tolerance;
-        this.roundingFactor = tolerance * 2;
+        this.cellSize = Math.max(1, tolerance * 2);
     }
 
     public List<Toolpath> merge()
     {
-        double comparisonThreshold = Math.PI / 60;  // 3 degrees
+        init();
+        removeDots();
+        removeOverlaps();
+        linkRuns();
+        collapseRuns();
 
-        initVerticesMap(toolpaths);
+        ArrayList<Toolpath> result = new ArrayList<>();
+        for (int i = 0; i < toolpaths.size(); i++)
+        {
+            if (!removed.get(i))
+                result.add(toolpaths.get(i));
+        }
 
-        ArrayList<Toolpath> toBeRemoved = new ArrayList<>();
-        filterDots(toBeRemoved);
+        return result;
+    }
 
-        for (Point p : verticesMap.keySet())
+    private void init()
+    {
+        int n = toolpaths.size();
+        curves = new Curve[n];
+        xs = new int[n * 2];
+        ys = new int[n * 2];
+        for (int i = 0; i < n; i++)
         {
+            curves[i] = ((CuttingToolpath) toolpaths.get(i)).getCurve();
+            xs[i * 2] = curves[i].getFrom().getX();
+            ys[i * 2] = curves[i].getFrom().getY();
+            xs[i * 2 + 1] = curves[i].getTo().getX();
+            ys[i * 2 + 1] = curves[i].getTo().getY();
+        }
+        removed = new BitSet(n);
+        links = new int[n * 2];
+        Arrays.fill(links, -1);
+        parents = new int[n];
+        for (int i = 0; i < n; i++)
+            parents[i] = i;
+
+        int capacity = Integer.highestOneBit(Math.max(n * 4, 2) - 1) << 1;
+        cellKeys = new long[capacity];
+        cellHeads = new int[capacity];
+        Arrays.fill(cellHeads, -1);
+        nextInCell = new int[n * 2];
+        // Inserted backwards so that every cell lists its endpoints in ascending order
+        for (int e = n * 2 - 1; e >= 0; e--)
+        {
+            int slot = findSlot(getCellKey(Math.floorDiv(xs[e], cellSize), Math.floorDiv(ys[e], cellSize)));
+            nextInCell[e] = cellHeads[slot];
+            cellHeads[slot] = e;
+        }
+    }
 
-            ArrayList<Toolpath> toMerge = verticesMap.get(p);
-            for (int i = 0; i < toMerge.size(); i++)
-            {
-                boolean merge = false;
+    private static long getCellKey(int cellX, int cellY)
+    {
+        return ((long) cellX << 32) | (cellY & 0xffffffffL);
+    }
 
-                for (int j = i + 1; j < toMerge.size(); j++)
-                {
-                    Toolpath t1 = toMerge.get(i);
-                    Toolpath t2 = toMerge.get(j);
+    private int findSlot(long key)
+    {
+        int mask = cellKeys.length - 1;
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+        while (cellHeads[slot] >= 0 && cellKeys[slot] != key)
+            slot = (slot + 1) & mask;
+        cellKeys[slot] = key;
+        return slot;
+    }
 
-                    if (!t1.getClass().equals(t2.getClass()))
+    /**
+     * Collects endpoints of other toolpaths closer than tolerance to the given endpoint, in ascending order
+     */
+    private void findCandidates(int endpoint)
+    {
+        candidatesCount = 0;
+        int x = xs[endpoint];
+        int y = ys[endpoint];
+        for (int cellX = Math.floorDiv(x - tolerance, cellSize); cellX <= Math.floorDiv(x + tolerance, cellSize); cellX++)
+        {
+            for (int cellY = Math.floorDiv(y - tolerance, cellSize); cellY <= Math.floorDiv(y + tolerance, cellSize); cellY++)
+            {
+                int slot = findSlot(getCellKey(cellX, cellY));
+                for (int e = cellHeads[slot]; e >= 0; e = nextInCell[e])
+                {
+                    if (e / 2 == endpoint / 2 || removed.get(e / 2))
                         continue;
-
-                    Curve c1 = ((CuttingToolpath)t1).getCurve();
-                    Curve c2 = ((CuttingToolpath)t2).getCurve();
-
-                    if (t1 == t2 || toBeRemoved.contains(t1) || toBeRemoved.contains(t2))
+                    double dx = xs[e] - x;
+                    double dy = ys[e] - y;
+                    if (Math.sqrt(dx * dx + dy * dy) >= tolerance)
                         continue;
-
-                    boolean l1Inversed = false;
-                    if (!c1.getTo().equals(p, roundingFactor))
-                    {
-                        c1 = c1.reverse();
-                        l1Inversed = true;
-                    }
-                    if (!c2.getFrom().equals(p, roundingFactor))
-                        c2 = c2.reverse();
-
-                    if (t1 instanceof LinearToolpath && t2 instanceof LinearToolpath)
-                    {
-                        Line l1 = (Line) c1;
-                        Line l2 = (Line) c2;
-                        if (l2.getFrom().equals(l1.getTo(), tolerance))
-                        {
-                            if (l1.getFrom().equals(l2.getTo())) // Removing duplicate segments
-                            {
-                                toBeRemoved.add(t2);
-                                removeVertices(c2.getTo(), t2);
-                                continue;
-                            }
-                            else if (Math.abs(Math.abs(l1.angleToX() - l2.angleToX()) - Math.PI) < comparisonThreshold) // Removing overlapping segments
-                            {
-                                if (l1.length() > l2.length())
-                                {
-                                    toBeRemoved.add(t2);
-                                    removeVertices(c2.getTo(), t2);
-                                    continue;
-                                }
-                                else
-                                {
-                                    toBeRemoved.add(t1);
-                                    removeVertices(c1.getFrom(), t1);
-                                    break;
-                                }
-                            }
-
-                            double angleDifference = Math.abs(l1.angleToX() - l2.angleToX());
-                            while (angleDifference >= Math.PI - comparisonThreshold)
-                                angleDifference -= Math.PI;
-                            angleDifference = Math.abs(angleDifference);
-
-                            if (angleDifference < comparisonThreshold)
-                                merge = true;
-                        }
-                    }
-                    else if (t1 instanceof CircularToolpath && t2 instanceof CircularToolpath)
-                    {
-                        Arc a1 = (Arc) c1;
-                        Arc a2 = (Arc) c2;
-                        if (a1.getTo().equals(a2.getFrom(), tolerance) && a1.isClockwise() == a2.isClockwise())
-                        {
-                            if (a1.getCenter().equals(a2.getCenter()) && a1.getRadius() == a2.getRadius())
-                                merge = true;
-                        }
-                    }
-
-                    if (merge)
-                    {
-                        Curve curve = ((CuttingToolpath) t1).getCurve();
-                        if (l1Inversed)
-                            curve.setFrom(c2.getTo());
-                        else
-                            curve.setTo(c2.getTo());
-                        if (curve instanceof Arc && c2.getTo().equals(c1.getFrom(), tolerance))
-                            curve.setTo(curve.getFrom());
-                        toBeRemoved.add(t2);
-                        removeVertices(c2.getFrom(), t2);
-                        removeVertices(c2.getTo(), t2);
-                        addVertices(c2.getTo(), t1);
-                        break;
-
-                    }
+                    if (candidatesCount == candidates.length)
+                        candidates = Arrays.copyOf(candidates, candidatesCount * 2);
+                    candidates[candidatesCount++] = e;
                 }
-
-                if (merge)
-                    break;
             }
         }
+        Arrays.sort(candidates, 0, candidatesCount);
+    }
 
-        int lines = 0;
-        int arcs = 0;
-        ArrayList<Toolpath> result = new ArrayList<>();
-        for (Toolpath t : toolpaths)
-            if (!toBeRemoved.contains(t))
-            {
-                if (t instanceof LinearToolpath)
-                    lines++;
-                if (t instanceof CircularToolpath)
-                    arcs++;
-                result.add(t);
-            }
-        System.out.println("lines: " + lines + ", arcs: " + arcs);
+    private boolean isLinear(int toolpath)
+    {
+        return toolpaths.get(toolpath) instanceof LinearToolpath;
+    }
 
-        return result;
+    private double getLength(int toolpath)
+    {
+        double dx = xs[toolpath * 2 + 1] - xs[toolpath * 2];
+        double dy = ys[toolpath * 2 + 1] - ys[toolpath * 2];
+        return Math.sqrt(dx * dx + dy * dy);
     }
 
-    private void filterDots(List<Toolpath> toBeRemoved)
+    /**
+     * @return cosine of the angle between direction from endpoint a1 to a2 and direction from endpoint b1 to b2
+     */
+    private double getCosine(int a1, int a2, int b1, int b2)
     {
-        for (Point p : verticesMap.keySet())
+        double ax = xs[a2] - xs[a1];
+        double ay = ys[a2] - ys[a1];
+        double bx = xs[b2] - xs[b1];
+        double by = ys[b2] - ys[b1];
+        double lengths = Math.sqrt(ax * ax + ay * ay) * Math.sqrt(bx * bx + by * by);
+        return lengths == 0 ? 1 : (ax * bx + ay * by) / lengths;
+    }
+
+    private void removeDots()
+    {
+        for (int i = 0; i < toolpaths.size(); i++)
         {
+            if (!isLinear(i) || getLength(i) >= tolerance)
+                continue;
+            findCandidates(i * 2);
+            if (candidatesCount == 0)
+                findCandidates(i * 2 + 1);
+            if (candidatesCount > 0)
+                removed.set(i);
+        }
+    }
 
-            ArrayList<Toolpath> toMerge = verticesMap.get(p);
-            for (int i = 0; i < toMerge.size(); i++)
+    /**
+     * Of two segments going the same way from a common end the shorter one is covered by the longer one
+     */
+    private void removeOverlaps()
+    {
+        for (int i = 0; i < toolpaths.size(); i++)
+        {
+            if (!isLinear(i))
+                continue;
+            for (int e = i * 2; e <= i * 2 + 1 && !removed.get(i); e++)
             {
-                for (int j = i + 1; j < toMerge.size(); j++)
+                findCandidates(e);
+                for (int c = 0; c < candidatesCount && !removed.get(i); c++)
                 {
-                    Toolpath t1 = toMerge.get(i);
-                    Toolpath t2 = toMerge.get(j);
-
-                    if (t1 instanceof LinearToolpath)
-                    {
-                        if (((Line)((LinearToolpath) t1).getCurve()).length() < tolerance)
-                            toBeRemoved.add(t1);
-                    }
-                    else if (t2 instanceof LinearToolpath)
-                    {
-                        if (((Line)((LinearToolpath) t2).getCurve()).length() < tolerance)
-                            toBeRemoved.add(t2);
-                    }
+                    int f = candidates[c];
+                    if (!isLinear(f / 2) || removed.get(f / 2))
+                        continue;
+                    boolean duplicate = xs[e ^ 1] == xs[f ^ 1] && ys[e ^ 1] == ys[f ^ 1];
+                    if (duplicate)
+                        removed.set(f / 2);
+                    else if (getCosine(e ^ 1, e, f, f ^ 1) < -COS_THRESHOLD)
+                        removed.set(getLength(i) > getLength(f / 2) ? f / 2 : i);
                 }
             }
         }
     }
 
-    private void initVerticesMap(List<Toolpath> toolpaths)
+    private boolean canLink(int e, int f)
     {
-        for (Toolpath t : toolpaths)
-        {
-            Curve curve = ((CuttingToolpath) t).getCurve();
-            addVertices(curve.getFrom(), t);
-            addVertices(curve.getTo(), t);
-        }
+        int t1 = e / 2;
+        int t2 = f / 2;
+        if (!toolpaths.get(t1).getClass().equals(toolpaths.get(t2).getClass()))
+            return false;
+        if (isLinear(t1))
+            return getCosine(e ^ 1, e, f, f ^ 1) > COS_THRESHOLD;
+        if (!(curves[t1] instanceof Arc))
+            return false;
+        Arc a1 = (Arc) curves[t1];
+        Arc a2 = (Arc) curves[t2];
+        // Directions as if the first arc was cut towards e and the second one away from f
+        boolean clockwise1 = a1.isClockwise() ^ (e % 2 == 0);
+        boolean clockwise2 = a2.isClockwise() ^ (f % 2 == 1);
+        return clockwise1 == clockwise2 && a1.getRadius() == a2.getRadius() && a1.getCenter().equals(a2.getCenter());
     }
 
-    private List<Point> getPointsForVertex(Point point)
+    /**
+     * Links every endpoint to at most one endpoint of a toolpath continuing it, so that links form runs
+     */
+    private void linkRuns()
     {
-        Point p1 = new Point(point.getX() / roundingFactor * roundingFactor, point.getY() / roundingFactor * roundingFactor);
-        Point p2 = p1.add(new Point(roundingFactor, 0));
-        Point p3 = p1.add(new Point(0, roundingFactor));
-        Point p4 = p1.add(new Point(roundingFactor, roundingFactor));
-        return Arrays.asList(p1, p2, p3, p4);
+        for (int e = 0; e < links.length; e++)
+        {
+            if (removed.get(e / 2) || links[e] >= 0)
+                continue;
+            findCandidates(e);
+            for (int c = 0; c < candidatesCount; c++)
+            {
+                int f = candidates[c];
+                if (links[f] >= 0 || !canLink(e, f))
+                    continue;
+                // Only arcs may close a run into a full circle
+                if (isLinear(e / 2) && find(e / 2) == find(f / 2))
+                    continue;
+                links[e] = f;
+                links[f] = e;
+                parents[find(f / 2)] = find(e / 2);
+                break;
+            }
+        }
     }
 
-    private void addVertices(Point point, Toolpath toolpath)
+    private int find(int toolpath)
     {
-        addVertex(getPointsForVertex(point), toolpath);
+        while (parents[toolpath] != toolpath)
+        {
+            parents[toolpath] = parents[parents[toolpath]];
+            toolpath = parents[toolpath];
+        }
+        return toolpath;
     }
 
-    private void removeVertices(Point point, Toolpath toolpath)
+    private void collapseRuns()
     {
-        removeVertex(getPointsForVertex(point), toolpath);
+        int[] run = new int[toolpaths.size()];
+        BitSet collapsed = new BitSet(toolpaths.size());
+        for (int i = 0; i < toolpaths.size(); i++)
+        {
+            if (removed.get(i) || collapsed.get(find(i)) || (links[i * 2] < 0 && links[i * 2 + 1] < 0))
+                continue;
+            collapsed.set(find(i));
+
+            // Going backwards to where the run starts
+            int start = i * 2;
+            boolean cycle = false;
+            while (links[start] >= 0)
+            {
+                start = links[start] ^ 1;
+                if (start / 2 == i)
+                {
+                    start = i * 2;
+                    cycle = true;
+                    break;
+                }
+            }
+
+            int length = 0;
+            int entry = start;
+            while (true)
+            {
+                run[length++] = entry;
+                int next = links[entry ^ 1];
+                if (next < 0 || next == start)
+                    break;
+                entry = next;
+            }
+
+            if (isLinear(i))
+                collapseLines(run, length);
+            else
+                collapse(run, 0, length - 1, cycle);
+        }
     }
 
-    private void addVertex(List<Point> vertices, Toolpath toolpath)
+    /**
+     * Splits run of segments where its direction deviates from the chord collected so far, same as extending segment by segment
+     */
+    private void collapseLines(int[] run, int length)
     {
-        for (Point p : vertices)
+        int first = 0;
+        for (int k = 1; k < length; k++)
         {
-            ArrayList<Toolpath> list = verticesMap.get(p);
-            if (list == null)
+            if (getCosine(run[first], run[k], run[k], run[k] ^ 1) <= COS_THRESHOLD)
             {
-                list = new ArrayList<>();
-                verticesMap.put(p, list);
+                collapse(run, first, k - 1, false);
+                first = k;
             }
-            if (!list.contains(toolpath))
-                list.add(toolpath);
         }
+        collapse(run, first, length - 1, false);
     }
 
-    private void removeVertex(List<Point> vertices, Toolpath toolpath)
+    /**
+     * Keeps the first of toolpaths in the list, stretched over the whole part of the run
+     */
+    private void collapse(int[] run, int first, int last, boolean cycle)
     {
-        for (Point p : vertices)
+        if (first == last && !cycle)
+            return;
+        int kept = first;
+        for (int k = first + 1; k <= last; k++)
         {
-            ArrayList<Toolpath> list = verticesMap.get(p);
-            if (list != null)
-                list.remove(toolpath);
+            if (run[k] < run[kept])
+                kept = k;
+        }
+        for (int k = first; k <= last; k++)
+        {
+            if (k != kept)
+                removed.set(run[k] / 2);
         }
-    }
 
+        Point from = new Point(xs[run[first]], ys[run[first]]);
+        Point to = new Point(xs[run[last] ^ 1], ys[run[last] ^ 1]);
+        Curve curve = curves[run[kept] / 2];
+        if (run[kept] % 2 == 0)
+        {
+            curve.setFrom(from);
+            curve.setTo(cycle ? from : to);
+        }
+        else
+        {
+            curve.setFrom(to);
+            curve.setTo(from);
+        }
+    }
 }
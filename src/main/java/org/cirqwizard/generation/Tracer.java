@@ -15,7 +15,6 @@ This program is free software: you can redistribute it and/or modify
 package org.cirqwizard.generation;
 
 import org.cirqwizard.geom.Arc;
-import org.cirqwizard.geom.Circle;
 import org.cirqwizard.geom.Curve;
 import org.cirqwizard.geom.Line;
 import org.cirqwizard.generation.toolpath.CircularToolpath;
@@ -28,18 +27,14 @@ import java.util.List;
 
 public class Tracer
 {
-    private byte[] windowData;
+    private PackedBitmap windowData;
 
-    private int width;
-    private int height;
     private int toolDiameter;
-    private List<Circle> knownCircles;
+    private CircleIndex knownCircles;
 
-    public Tracer(byte[] windowData, int width, int height, int toolDiameter, List<Circle> knownCircles)
+    public Tracer(PackedBitmap windowData, int toolDiameter, CircleIndex knownCircles)
     {
         this.windowData = windowData;
-        this.width = width;
-        this.height = height;
         this.toolDiameter = toolDiameter;
         this.knownCircles = knownCircles;
     }
@@ -47,17 +42,13 @@ public class Tracer
     public List<Toolpath> process()
     {
         ArrayList<Toolpath> result = new ArrayList<>();
-        for (int y = height - 1; y >= 0; y--)
+        for (int y = windowData.getHeight() - 1; y >= 0; y--)
         {
-            for (int x = width - 1; x >= 0; x--)
+            for (int x = windowData.previousSetBit(windowData.getWidth() - 1, y); x >= 0; x = windowData.previousSetBit(x - 1, y))
             {
-                int index = x + y * width;
-                if (windowData[index] != 0)
-                {
-                    List<Curve> curves = new Vectorizer(windowData, width, height, knownCircles, x, y).trace();
-                    for (Curve curve : curves)
-                        result.add(getToolpath(curve));
-                }
+                List<Curve> curves = new Vectorizer(windowData, knownCircles, x, y).trace();
+                for (Curve curve : curves)
+                    result.add(getToolpath(curve));
             }
         }
 
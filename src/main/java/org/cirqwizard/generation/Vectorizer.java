@@ -19,10 +19,14 @@ import org.cirqwizard.logging.LoggerFactory;
 import org.cirqwizard.settings.ApplicationConstants;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.logging.Level;
 
+/**
+ * Follows a contour pixel by pixel and splits it into lines and arcs of known circles.
+ * Deviations of segment's points from a line and from circles are calculated from running sums of their coordinates,
+ * so every step takes constant time.
+ */
 public class Vectorizer
 {
     private static final int INITIAL_SAMPLE_COUNT = (int)(0.15 * ApplicationConstants.RESOLUTION);                    // Amount of samples to process before trying to decide which curve it is
@@ -33,95 +37,171 @@ public class Vectorizer
     private static final double LOW_UNCERTAINTY_THRESHOLD = 0.6;   // Arcs with uncertainty lower than that are processed as arcs
     private static final double HIGH_UNCERTAINTY_THRESHOLD = 10.0;    // Arcs with uncertainty higher than that are processed as segments
 
+    private static final int[] DIRECTIONS_X = {1, 1, 0, -1, -1, -1, 0, 1};     // East, south-east, south, ... clockwise
+    private static final int[] DIRECTIONS_Y = {0, -1, -1, -1, 0, 1, 1, 1};
 
-    private byte[] windowData;
+    private PackedBitmap windowData;
     private int width;
     private int height;
-    private List<Circle> knownCircles;
+    private CircleIndex knownCircles;
 
-    private Point current;
-    private Line currentSegment;
+    private int currentX;
+    private int currentY;
+    private int segmentStartX;
+    private int segmentStartY;
     private MatchedArc matchedArc;
     private ArrayList<Curve> result = new ArrayList<>();
-    private LinkedList<Point> segmentPoints = new LinkedList<>();
 
-    public Vectorizer(byte[] windowData, int width, int height, List<Circle> knownCircles, int x, int y)
+    // Ring buffer of last processed points
+    private int[] lastPointsX = new int[256];
+    private int[] lastPointsY = new int[256];
+    private int lastPointsHead;
+    private int lastPointsSize;
+
+    // Sums over points of current segment, relative to its first point
+    private List<Circle> segmentCircles;
+    private int firstX;
+    private int firstY;
+    private int count;
+    private double sumX, sumY, sumXX, sumXY, sumYY;
+    private double sumXXY, sumXYY, sumXXYY;
+    private double sumQ, sumQQ, sumQX, sumQY;
+
+    public Vectorizer(PackedBitmap windowData, CircleIndex knownCircles, int x, int y)
     {
         this.windowData = windowData;
-        this.width = width;
-        this.height = height;
+        this.width = windowData.getWidth();
+        this.height = windowData.getHeight();
         this.knownCircles = knownCircles;
-        current = new Point(x, y);
-        currentSegment = new Line(current, current);
+        currentX = segmentStartX = x;
+        currentY = segmentStartY = y;
     }
 
     public List<Curve> trace()
     {
         int segmentCounter = 0;
-        LinkedList<Point> lastPoints = new LinkedList<>();
-        segmentPoints = new LinkedList<>();
+        lastPointsSize = 0;
+        clearSegment();
         double angle = 0;
         matchedArc = null;
 
         do
         {
-            lastPoints.addLast(current);
             int sampleCount = segmentCounter <= INITIAL_SAMPLE_COUNT ? INITIAL_SAMPLE_COUNT : (matchedArc == null ? SAMPLE_COUNT : (int)((double) matchedArc.getCircle().getRadius() * 2 * (Math.PI / 15)));
-            while (lastPoints.size() > sampleCount)
-                lastPoints.removeFirst();
-            segmentPoints.addLast(current);
+            addLastPoint(sampleCount);
+            addSegmentPoint();
 
             segmentCounter++;
-            currentSegment.setTo(current);
 
             boolean restart = false;
 
             if (segmentCounter == INITIAL_SAMPLE_COUNT)
             {
-                angle = calculateAngle(currentSegment.getFrom(), current);
-                matchedArc = fitArc(segmentPoints, calculateSegmentDeviation(segmentPoints));
+                angle = calculateAngle(segmentStartX, segmentStartY, currentX, currentY);
+                matchedArc = fitArc(calculateSegmentDeviation());
             }
             else if (segmentCounter > INITIAL_SAMPLE_COUNT)
             {
                 if (matchedArc != null && matchedArc.getUncertainty() >= LOW_UNCERTAINTY_THRESHOLD)
-                    matchedArc = fitArc(segmentPoints, calculateSegmentDeviation(segmentPoints));
+                    matchedArc = fitArc(calculateSegmentDeviation());
 
                 if (matchedArc != null && matchedArc.getUncertainty() < LOW_UNCERTAINTY_THRESHOLD)
-                    restart = Math.abs(matchedArc.getCircle().getRadius() - matchedArc.getCircle().getCenter().distanceTo(current)) >= MAX_ARC_DEVIATION;
+                    restart = Math.abs(matchedArc.getCircle().getRadius() - distanceTo(matchedArc.getCircle().getCenter(), currentX, currentY)) >= MAX_ARC_DEVIATION;
                 else if (matchedArc == null || segmentCounter >  (double)matchedArc.getCircle().getRadius() * 2 * (Math.PI / 15))
-                    restart = Math.abs(calculateAngle(lastPoints.getFirst(), lastPoints.getLast()) - angle) > ANGULAR_THRESHOLD;
+                    restart = Math.abs(calculateAngle(lastPointsX[lastPointsHead], lastPointsY[lastPointsHead], currentX, currentY) - angle) > ANGULAR_THRESHOLD;
             }
 
             if (restart)
             {
-
-                Curve curve = getCurve(calculateAngle(lastPoints.get(0), current), lastPoints.get(0));
-                result.add(curve);
-                currentSegment = new Line(current, current);
-                segmentPoints.clear();
+                result.add(getCurve());
+                segmentStartX = currentX;
+                segmentStartY = currentY;
+                clearSegment();
                 matchedArc = null;
                 segmentCounter = 0;
             }
 
-            windowData[current.getX() + current.getY() * width] = 0;
+            windowData.clear(currentX, currentY);
         }
         while (calculateNextPoint());
         if (segmentCounter > 10)
-            result.add(getCurve(calculateAngle(lastPoints.get(0), current), lastPoints.get(0)));
+            result.add(getCurve());
 
         return result;
     }
 
+    private void addLastPoint(int sampleCount)
+    {
+        if (lastPointsSize == lastPointsX.length)
+        {
+            int[] xs = new int[lastPointsSize * 2];
+            int[] ys = new int[lastPointsSize * 2];
+            for (int i = 0; i < lastPointsSize; i++)
+            {
+                xs[i] = lastPointsX[(lastPointsHead + i) & (lastPointsX.length - 1)];
+                ys[i] = lastPointsY[(lastPointsHead + i) & (lastPointsY.length - 1)];
+            }
+            lastPointsX = xs;
+            lastPointsY = ys;
+            lastPointsHead = 0;
+        }
+        int tail = (lastPointsHead + lastPointsSize) & (lastPointsX.length - 1);
+        lastPointsX[tail] = currentX;
+        lastPointsY[tail] = currentY;
+        lastPointsSize++;
+        while (lastPointsSize > sampleCount)
+        {
+            lastPointsHead = (lastPointsHead + 1) & (lastPointsX.length - 1);
+            lastPointsSize--;
+        }
+    }
+
+    private void clearSegment()
+    {
+        segmentCircles = null;
+        count = 0;
+        sumX = sumY = sumXX = sumXY = sumYY = 0;
+        sumXXY = sumXYY = sumXXYY = 0;
+        sumQ = sumQQ = sumQX = sumQY = 0;
+    }
+
+    private void addSegmentPoint()
+    {
+        if (count == 0)
+        {
+            firstX = currentX;
+            firstY = currentY;
+        }
+        count++;
+        double x = currentX - firstX;
+        double y = currentY - firstY;
+        double q = x * x + y * y;
+        sumX += x;
+        sumY += y;
+        sumXX += x * x;
+        sumXY += x * y;
+        sumYY += y * y;
+        sumXXY += x * x * y;
+        sumXYY += x * y * y;
+        sumXXYY += x * x * y * y;
+        sumQ += q;
+        sumQQ += q * q;
+        sumQX += q * x;
+        sumQY += q * y;
+    }
+
     private boolean calculateNextPoint()
     {
-        for (Direction d : directions)
+        for (int i = 0; i < DIRECTIONS_X.length; i++)
         {
-            Point p = current.add(d.getVector());
-            if (p.getX() < 0 || p.getX() >= width || p.getY() < 0 || p.getY() >= height)
+            int x = currentX + DIRECTIONS_X[i];
+            int y = currentY + DIRECTIONS_Y[i];
+            if (x < 0 || x >= width || y < 0 || y >= height)
                 continue;
-            if (windowData[p.getX() + p.getY() * width] != 0)
+            if (windowData.get(x, y))
             {
-                current = p;
+                currentX = x;
+                currentY = y;
                 return true;
             }
         }
@@ -129,12 +209,17 @@ public class Vectorizer
         return false;
     }
 
-    private Curve getCurve(double heading, Point headingStartPoint)
+    private Curve getCurve()
     {
+        Line currentSegment = new Line(new Point(segmentStartX, segmentStartY), new Point(currentX, currentY));
         if (matchedArc == null || matchedArc.getUncertainty() > HIGH_UNCERTAINTY_THRESHOLD)
             return currentSegment;
 
-        double centerAngle = calculateAngle(headingStartPoint, matchedArc.getCircle().getCenter());
+        int headingStartX = lastPointsX[lastPointsHead];
+        int headingStartY = lastPointsY[lastPointsHead];
+        double heading = calculateAngle(headingStartX, headingStartY, currentX, currentY);
+        Point center = matchedArc.getCircle().getCenter();
+        double centerAngle = calculateAngle(headingStartX, headingStartY, center.getX(), center.getY());
         double headingCenterAngle = heading - centerAngle;
         if (headingCenterAngle < -Math.PI)
             headingCenterAngle += Math.PI * 2;
@@ -149,43 +234,64 @@ public class Vectorizer
         return new Arc(currentSegment.getFrom(), currentSegment.getTo(), matchedArc.getCircle().getCenter(), matchedArc.getCircle().getRadius(), clockwise);
     }
 
-    private double calculateAngle(Point start, Point end)
+    private static double calculateAngle(int startX, int startY, int endX, int endY)
     {
-        return Math.atan2(end.getY() - start.getY(), end.getX() - start.getX());
+        return Math.atan2(endY - startY, endX - startX);
     }
 
-    private double calculateSegmentDeviation(LinkedList<Point> points)
+    private static double distanceTo(Point p, int x, int y)
     {
-        double deviation = 0;
-        Point start = points.getFirst();
-        Point end = points.getLast();
-        for (Point p : points)
-        {
-            double d = (p.getY() - start.getY()) * (end.getX() - p.getX()) - (end.getY() - start.getY()) * (p.getX() - start.getX());
-            deviation += d * d;
-        }
-        return Math.sqrt(deviation);
+        return Math.sqrt((double) (p.getX() - x) * (p.getX() - x) + (double) (p.getY() - y) * (p.getY() - y));
     }
 
-    private double calculateArcDeviation(LinkedList<Point> points, Point center, int radius)
+    /**
+     * Square root of the sum of (y * EX - x * y - x * EY)^2 over segment points, with point (x, y) and segment end (EX, EY)
+     * taken relative to the first point. This is not a cross product, it is the metric vectorizer has always used,
+     * kept as it is so that arc uncertainty thresholds stay the same
+     */
+    private double calculateSegmentDeviation()
     {
-        double deviation = 0;
-        for (Point p : points)
-        {
-            double d = (double)((p.getX() - center.getX()) * (p.getX() - center.getX()) + (p.getY() - center.getY()) * (p.getY() - center.getY())) - radius * radius;
-            deviation += d * d;
-        }
-        return Math.sqrt(deviation);
+        double endX = currentX - firstX;
+        double endY = currentY - firstY;
+        double deviation = endX * endX * sumYY + sumXXYY + endY * endY * sumXX
+                - 2 * endX * sumXYY - 2 * endX * endY * sumXY + 2 * endY * sumXXY;
+        return Math.sqrt(Math.max(0, deviation));
+    }
+
+    /**
+     * Sum of squared differences between squared distances from the center to each point and squared radius
+     */
+    private double calculateArcDeviation(Point center, int radius)
+    {
+        double centerX = center.getX() - firstX;
+        double centerY = center.getY() - firstY;
+        double k = centerX * centerX + centerY * centerY - (double) radius * radius;
+        double projection = centerX * sumX + centerY * sumY;
+        double deviation = sumQQ + 4 * (centerX * centerX * sumXX + 2 * centerX * centerY * sumXY + centerY * centerY * sumYY)
+                + count * k * k - 4 * (centerX * sumQX + centerY * sumQY) + 2 * k * sumQ - 4 * k * projection;
+        return Math.sqrt(Math.max(0, deviation));
     }
 
-    private MatchedArc fitArc(LinkedList<Point> points, double segmentDeviation)
+    private MatchedArc fitArc(double segmentDeviation)
     {
         double minDeviation = Double.MAX_VALUE;
         Circle bestFit = null;
 
-        for (Circle circle : knownCircles)
+        if (segmentCircles == null)
         {
-            double deviation = calculateArcDeviation(points, circle.getCenter(), circle.getRadius());
+            segmentCircles = new ArrayList<>();
+            for (Circle circle : knownCircles.query(firstX, firstY, MAX_ARC_DEVIATION))
+            {
+                if (Math.abs(circle.getRadius() - distanceTo(circle.getCenter(), firstX, firstY)) < MAX_ARC_DEVIATION)
+                    segmentCircles.add(circle);
+            }
+        }
+        // Only circles whose radius band contains both the first and the current point are considered
+        for (Circle circle : segmentCircles)
+        {
+            if (Math.abs(circle.getRadius() - distanceTo(circle.getCenter(), currentX, currentY)) >= MAX_ARC_DEVIATION)
+                continue;
+            double deviation = calculateArcDeviation(circle.getCenter(), circle.getRadius());
             if (deviation < minDeviation)
             {
                 minDeviation = deviation;
@@ -195,41 +301,9 @@ public class Vectorizer
 
         if (bestFit == null)
             return null;
-        if (Math.abs(bestFit.getRadius() - bestFit.getCenter().distanceTo(points.getFirst())) >= MAX_ARC_DEVIATION ||
-                Math.abs(bestFit.getRadius() - bestFit.getCenter().distanceTo(points.getLast())) >= MAX_ARC_DEVIATION)
-            return null;
         double uncertainty = minDeviation / segmentDeviation;
         if (uncertainty > HIGH_UNCERTAINTY_THRESHOLD)
             return null;
         return new MatchedArc(bestFit, uncertainty);
     }
-
-    private static Direction[] directions = {Direction.EAST, Direction.SOUTH_EAST, Direction.SOUTH, Direction.SOUTH_WEST, Direction.WEST, Direction.NORTH_WEST,
-            Direction.NORTH, Direction.NORTH_EAST};
-
-    private static enum Direction
-    {
-        NORTH(new Point(0, 1)),
-        NORTH_EAST(new Point(1, 1)),
-        EAST(new Point(1, 0)),
-        SOUTH_EAST(new Point(1, -1)),
-        SOUTH(new Point(0, -1)),
-        SOUTH_WEST(new Point(-1, -1)),
-        WEST(new Point(-1, 0)),
-        NORTH_WEST(new Point(-1, 1));
-
-        private Point vector;
-
-        Direction(Point vector)
-        {
-            this.vector = vector;
-        }
-
-        public Point getVector()
-        {
-            return vector;
-        }
-    }
-
-
 }
@@ -0,0 +1,134 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cirqwizard.generation;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Splits the panel into raster windows. Windows without primitives are skipped,
+ * windows with many primitives are split into quadrants (down to minimal size).
+ * Windows are returned heaviest first, so that the pool is not left waiting for a big window at the end.
+ */
+public class WindowPlanner
+{
+    private int width;
+    private int height;
+    private int windowSize;
+    private int minWindowSize;
+    private int overlap;
+    private int maxPrimitivesPerWindow;
+
+    /**
+     *
+     * @param width panel width
+     * @param height panel height
+     * @param windowSize maximal window size (without overlap)
+     * @param minWindowSize windows are not split below this size
+     * @param overlap overlap added to each side of a window
+     * @param maxPrimitivesPerWindow windows with more primitives are split
+     */
+    public WindowPlanner(int width, int height, int windowSize, int minWindowSize, int overlap, int maxPrimitivesPerWindow)
+    {
+        this.width = width;
+        this.height = height;
+        this.windowSize = windowSize;
+        this.minWindowSize = minWindowSize;
+        this.overlap = overlap;
+        this.maxPrimitivesPerWindow = maxPrimitivesPerWindow;
+    }
+
+    public List<Window> plan(PrimitiveIndex index, int inflation)
+    {
+        List<Window> windows = new ArrayList<>();
+        for (int x = 0; x < width; x += windowSize)
+            for (int y = 0; y < height; y += windowSize)
+                subdivide(index, inflation, x, y, Math.min(windowSize, width - x), Math.min(windowSize, height - y), windows);
+        windows.sort(Comparator.comparingInt(Window::getWeight).reversed());
+        return windows;
+    }
+
+    private void subdivide(PrimitiveIndex index, int inflation, int x, int y, int w, int h, List<Window> windows)
+    {
+        Window window = createWindow(x, y, w, h, 0);
+        int primitivesCount = index.query(window.getX(), window.getY(), window.getWidth(), window.getHeight(), inflation).size();
+        if (primitivesCount == 0)
+            return;
+        if (primitivesCount <= maxPrimitivesPerWindow || w / 2 < minWindowSize || h / 2 < minWindowSize)
+        {
+            window.weight = primitivesCount;
+            windows.add(window);
+            return;
+        }
+
+        int halfWidth = w / 2;
+        int halfHeight = h / 2;
+        subdivide(index, inflation, x, y, halfWidth, halfHeight, windows);
+        subdivide(index, inflation, x + halfWidth, y, w - halfWidth, halfHeight, windows);
+        subdivide(index, inflation, x, y + halfHeight, halfWidth, h - halfHeight, windows);
+        subdivide(index, inflation, x + halfWidth, y + halfHeight, w - halfWidth, h - halfHeight, windows);
+    }
+
+    private Window createWindow(int x, int y, int w, int h, int weight)
+    {
+        int windowX = x > overlap ? x - overlap : x;
+        int windowY = y > overlap ? y - overlap : y;
+        return new Window(windowX, windowY, Math.min(w + 2 * overlap, width - windowX), Math.min(h + 2 * overlap, height - windowY), weight);
+    }
+
+    public static class Window
+    {
+        private int x;
+        private int y;
+        private int width;
+        private int height;
+        private int weight;
+
+        public Window(int x, int y, int width, int height, int weight)
+        {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.weight = weight;
+        }
+
+        public int getX()
+        {
+            return x;
+        }
+
+        public int getY()
+        {
+            return y;
+        }
+
+        public int getWidth()
+        {
+            return width;
+        }
+
+        public int getHeight()
+        {
+            return height;
+        }
+
+        public int getWeight()
+        {
+            return weight;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cirqwizard.generation;
+
+import javafx.beans.property.BooleanProperty;
+import org.cirqwizard.logging.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Runs raster windows on a fixed thread pool, admitting only as many of them as fit into memory budget.
+ * Budget is a share of maximum heap size, each window's footprint is estimated from its dimensions.
+ * If a window runs out of memory nevertheless, the budget is halved and the window is retried.
+ * The budget is doubled back, up to its initial size, after a number of windows complete without running out of memory.
+ */
+public class WindowScheduler
+{
+    private static final double HEAP_SHARE = 0.5;
+    private static final int MAX_ATTEMPTS = 4;
+    private static final int KILOBYTE = 1024;
+    private static final int ACQUIRE_POLL_INTERVAL = 100;
+    private static final int RECOVERY_INTERVAL = 8;
+
+    private ExecutorService pool;
+    private BooleanProperty cancelledProperty;
+    private int initialBudget;
+    // Budget and free part of it are in kilobytes, guarded by this scheduler's monitor.
+    // Free budget goes negative when the budget is reduced while windows hold more than is left of it
+    private int budgetSize;
+    private int available;
+    private int windowsSinceReduction;
+
+    public WindowScheduler(int threads, BooleanProperty cancelledProperty)
+    {
+        this(threads, (long) (Runtime.getRuntime().maxMemory() * HEAP_SHARE), cancelledProperty);
+    }
+
+    /**
+     *
+     * @param threads maximum number of windows processed simultaneously
+     * @param memoryBudget memory in bytes windows may occupy at the same time
+     * @param cancelledProperty once set, windows waiting for memory are skipped
+     */
+    public WindowScheduler(int threads, long memoryBudget, BooleanProperty cancelledProperty)
+    {
+        pool = Executors.newFixedThreadPool(threads);
+        this.cancelledProperty = cancelledProperty;
+        initialBudget = (int) Math.max(1, Math.min(Integer.MAX_VALUE, memoryBudget / KILOBYTE));
+        budgetSize = initialBudget;
+        available = initialBudget;
+    }
+
+    /**
+     * Estimates memory needed to render a window and to trace its packed edges
+     */
+    public static long estimatePackedWindow(int width, int height)
+    {
+        return (long) height * ((width + 7) / 8 + PackedBitmap.getWordsPerRow(width) * 8);
+    }
+
+    /**
+     * Estimates memory needed to render a window and to process it byte per pixel
+     */
+    public static long estimateBytePerPixelWindow(int width, int height)
+    {
+        return (long) height * ((width + 7) / 8 + width);
+    }
+
+    public synchronized int getBudget()
+    {
+        return budgetSize;
+    }
+
+    /**
+     * Blocks until there is enough memory for the window and submits it for processing.
+     * The window is skipped if generation is cancelled while waiting
+     * @param footprint estimated memory footprint of the window in bytes
+     */
+    public void submit(long footprint, Runnable window)
+    {
+        int permits = acquire(footprint);
+        if (permits > 0)
+            pool.submit(() -> process(footprint, permits, window));
+    }
+
+    public void await()
+    {
+        try
+        {
+            pool.shutdown();
+            pool.awaitTermination(10, TimeUnit.DAYS);
+        }
+        catch (InterruptedException e)
+        {
+        }
+    }
+
+    /**
+     * @return amount of budget taken or 0 if generation was cancelled
+     */
+    private synchronized int acquire(long footprint)
+    {
+        boolean interrupted = false;
+        try
+        {
+            while (!cancelledProperty.get())
+            {
+                // Budget may change while waiting, so the amount is re-evaluated on every attempt
+                int permits = (int) Math.max(1, Math.min(budgetSize, (footprint + KILOBYTE - 1) / KILOBYTE));
+                if (available >= permits)
+                {
+                    available -= permits;
+                    return permits;
+                }
+                try
+                {
+                    wait(ACQUIRE_POLL_INTERVAL);
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+            }
+            return 0;
+        }
+        finally
+        {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void release(int permits)
+    {
+        available += permits;
+        notifyAll();
+    }
+
+    private void process(long footprint, int permits, Runnable window)
+    {
+        try
+        {
+            for (int attempt = 1; ; attempt++)
+            {
+                try
+                {
+                    window.run();
+                    windowCompleted();
+                    return;
+                }
+                catch (OutOfMemoryError e)
+                {
+                    release(permits);
+                    permits = 0;
+                    int budget = reduceBudget();
+                    if (attempt >= MAX_ATTEMPTS)
+                    {
+                        LoggerFactory.logException("Out of memory caught while generating tool paths", e);
+                        return;
+                    }
+                    LoggerFactory.getApplicationLogger().log(Level.WARNING, "Out of memory caught while generating tool paths. " +
+                            "Reducing memory budget to " + budget + " KB and retrying", e);
+                    permits = acquire(footprint);
+                    if (permits == 0)
+                        return;
+                }
+            }
+        }
+        finally
+        {
+            release(permits);
+        }
+    }
+
+    private synchronized int reduceBudget()
+    {
+        int reduction = budgetSize / 2;
+        budgetSize -= reduction;
+        available -= reduction;
+        windowsSinceReduction = 0;
+        return budgetSize;
+    }
+
+    private synchronized void windowCompleted()
+    {
+        if (budgetSize >= initialBudget || ++windowsSinceReduction < RECOVERY_INTERVAL)
+            return;
+        int increase = Math.min(budgetSize, initialBudget - budgetSize);
+        budgetSize += increase;
+        available += increase;
+        windowsSinceReduction = 0;
+        notifyAll();
+    }
+}
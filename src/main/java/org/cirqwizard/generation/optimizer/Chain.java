@@ -14,10 +14,14 @@ This program is free software: you can redistribute it and/or modify
 
 package org.cirqwizard.generation.optimizer;
 
+import org.cirqwizard.geom.Arc;
 import org.cirqwizard.geom.Point;
+import org.cirqwizard.generation.toolpath.CircularToolpath;
 import org.cirqwizard.generation.toolpath.CuttingToolpath;
+import org.cirqwizard.generation.toolpath.LinearToolpath;
 import org.cirqwizard.generation.toolpath.Toolpath;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class Chain
@@ -43,4 +47,28 @@ public class Chain
     {
         return ((CuttingToolpath)segments.get(segments.size() - 1)).getCurve().getTo();
     }
+
+    /**
+     * Returns the same chain milled in the opposite direction
+     */
+    public Chain reverse()
+    {
+        List<Toolpath> reversed = new ArrayList<>(segments.size());
+        for (int i = segments.size() - 1; i >= 0; i--)
+        {
+            CuttingToolpath toolpath = (CuttingToolpath) segments.get(i);
+            CuttingToolpath reversedToolpath;
+            if (toolpath instanceof CircularToolpath)
+            {
+                Arc arc = (Arc) toolpath.getCurve();
+                reversedToolpath = new CircularToolpath(toolpath.getToolDiameter(), arc.getTo(), arc.getFrom(), arc.getCenter(),
+                        arc.getRadius(), !arc.isClockwise());
+            }
+            else
+                reversedToolpath = new LinearToolpath(toolpath.getToolDiameter(), toolpath.getCurve().getTo(), toolpath.getCurve().getFrom());
+            reversedToolpath.setEnabled(toolpath.isEnabled());
+            reversed.add(reversedToolpath);
+        }
+        return new Chain(reversed);
+    }
 }
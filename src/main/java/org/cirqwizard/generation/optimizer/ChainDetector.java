@@ -18,7 +18,6 @@ import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import org.cirqwizard.geom.Arc;
-import org.cirqwizard.geom.Point;
 import org.cirqwizard.generation.toolpath.CircularToolpath;
 import org.cirqwizard.generation.toolpath.CuttingToolpath;
 import org.cirqwizard.generation.toolpath.LinearToolpath;
@@ -26,14 +25,21 @@ import org.cirqwizard.generation.toolpath.Toolpath;
 
 import java.util.*;
 
+/**
+ * Joins toolpaths sharing rounded end points into chains. Endpoints are indexed as 2 * i for start and 2 * i + 1 for end
+ * of i-th toolpath, toolpaths meeting at a vertex are kept in compressed rows of a single array.
+ */
 public class ChainDetector
 {
     private static final int ROUNDING_FACTOR = 30;
 
     private List<Toolpath> toolpaths;
 
-    private ArrayList<Point> vertices = new ArrayList<>();
-    private HashMap<Point, ArrayList<Toolpath>> map = new HashMap<>();
+    private int[] endpointVertices;
+    private int[] rowOffsets;
+    private int[] rows;
+    private int[] rowCursors;
+    private BitSet visited;
     private DoubleProperty progressProperty = new SimpleDoubleProperty();
     private StringProperty estimatedMachiningTimeProperty = new SimpleStringProperty();
 
@@ -46,17 +52,12 @@ public class ChainDetector
     public List<Chain> detect()
     {
         List<Chain> result = new ArrayList<>();
-        while (!vertices.isEmpty())
+        // Vertices are numbered in ascending order of their coordinates, chains start from the lowest vertex left
+        for (int vertex = 0; vertex < rowCursors.length; vertex++)
         {
-            Point p = vertices.get(0);
-            if (map.get(p).isEmpty())
-            {
-                vertices.remove(0);
-                continue;
-            }
-            ArrayList<Toolpath> chainSegments = new ArrayList<>();
-            traverse(chainSegments, p, (CuttingToolpath) map.get(p).get(0));
-            result.add(new Chain(chainSegments));
+            int endpoint;
+            while ((endpoint = nextEndpoint(vertex)) >= 0)
+                result.add(new Chain(traverse(endpoint)));
         }
 
         return result;
@@ -72,13 +73,27 @@ public class ChainDetector
         return estimatedMachiningTimeProperty;
     }
 
-    private void traverse(ArrayList<Toolpath> result, Point point, CuttingToolpath edge)
+    /**
+     * @return first endpoint at the vertex whose toolpath is not in a chain yet, -1 if there is none
+     */
+    private int nextEndpoint(int vertex)
     {
-        if (edge.getCurve().getFrom().equals(point, ROUNDING_FACTOR))
-            result.add(edge);
-        else
+        int end = rowOffsets[vertex + 1];
+        while (rowCursors[vertex] < end && visited.get(rows[rowCursors[vertex]] / 2))
+            rowCursors[vertex]++;
+        return rowCursors[vertex] < end ? rows[rowCursors[vertex]] : -1;
+    }
+
+    private List<Toolpath> traverse(int endpoint)
+    {
+        ArrayList<Toolpath> result = new ArrayList<>();
+        while (endpoint >= 0)
         {
-            if (edge instanceof LinearToolpath)
+            CuttingToolpath edge = (CuttingToolpath) toolpaths.get(endpoint / 2);
+            visited.set(endpoint / 2);
+            if (endpoint % 2 == 0)
+                result.add(edge);
+            else if (edge instanceof LinearToolpath)
                 result.add(new LinearToolpath(edge.getToolDiameter(), edge.getCurve().getTo(), edge.getCurve().getFrom()));
             else if (edge instanceof CircularToolpath)
             {
@@ -86,58 +101,77 @@ public class ChainDetector
                 result.add(new CircularToolpath(edge.getToolDiameter(), arc.getTo(), arc.getFrom(),
                         arc.getCenter(), arc.getRadius(), !arc.isClockwise()));
             }
+            endpoint = nextEndpoint(endpointVertices[endpoint ^ 1]);
         }
-        Point p = edge.getCurve().getFrom().round(ROUNDING_FACTOR);
-        if (p.equals(point, ROUNDING_FACTOR))
-            p = edge.getCurve().getTo().round(ROUNDING_FACTOR);
-        map.get(point).remove(edge);
+        return result;
+    }
 
-        if (map.get(p) != null)
-        {
-            map.get(p).remove(edge);
-            if (!map.get(p).isEmpty())
-                traverse(result, p, (CuttingToolpath) map.get(p).get(0));
-        }
+    private static int round(int coordinate)
+    {
+        return (coordinate + ROUNDING_FACTOR / 2) / ROUNDING_FACTOR * ROUNDING_FACTOR;
+    }
+
+    // Flipping sign bit of y makes unsigned order of lower half follow signed order of y
+    private static long getKey(int x, int y)
+    {
+        return ((long) x << 32) | ((y ^ Integer.MIN_VALUE) & 0xffffffffL);
     }
 
     private void generateMap()
     {
-        for (Toolpath t : toolpaths)
+        int endpointsCount = toolpaths.size() * 2;
+        long[] keys = new long[endpointsCount];
+        for (int i = 0; i < toolpaths.size(); i++)
         {
-            Point from = ((CuttingToolpath)t).getCurve().getFrom().round(ROUNDING_FACTOR);
-            Point to = ((CuttingToolpath)t).getCurve().getTo().round(ROUNDING_FACTOR);
+            CuttingToolpath t = (CuttingToolpath) toolpaths.get(i);
+            keys[i * 2] = getKey(round(t.getCurve().getFrom().getX()), round(t.getCurve().getFrom().getY()));
+            keys[i * 2 + 1] = getKey(round(t.getCurve().getTo().getX()), round(t.getCurve().getTo().getY()));
+        }
 
-            ArrayList<Toolpath> list = map.get(from);
-            if (list == null)
-            {
-                vertices.add(from);
-                list = new ArrayList<>();
-                map.put(from, list);
-            }
-            list.add(t);
+        long[] vertexKeys = keys.clone();
+        Arrays.sort(vertexKeys);
+        int verticesCount = 0;
+        for (int i = 0; i < vertexKeys.length; i++)
+        {
+            if (i == 0 || vertexKeys[i] != vertexKeys[i - 1])
+                vertexKeys[verticesCount++] = vertexKeys[i];
+        }
 
-            list = map.get(to);
-            if (list == null)
-            {
-                vertices.add(to);
-                list = new ArrayList<>();
-                map.put(to, list);
-            }
-            list.add(t);
+        // Open addressing table from vertex key to its number
+        int capacity = Integer.highestOneBit(Math.max(verticesCount * 2, 2) - 1) << 1;
+        long[] tableKeys = new long[capacity];
+        int[] tableVertices = new int[capacity];
+        Arrays.fill(tableVertices, -1);
+        for (int v = 0; v < verticesCount; v++)
+        {
+            int slot = findSlot(tableKeys, tableVertices, vertexKeys[v]);
+            tableKeys[slot] = vertexKeys[v];
+            tableVertices[slot] = v;
         }
-        Collections.sort(vertices, new Comparator<Point>()
+
+        endpointVertices = new int[endpointsCount];
+        rowOffsets = new int[verticesCount + 1];
+        for (int e = 0; e < endpointsCount; e++)
         {
-            @Override
-            public int compare(Point o1, Point o2)
-            {
-                if (o1.getX() < o2.getX())
-                    return -1;
-                if (o1.getX() > o2.getX())
-                    return 1;
-                if (o1.getY() < o2.getY())
-                    return -1;
-                return o1.getY() == o2.getY() ? 0 : 1;
-            }
-        });
+            endpointVertices[e] = tableVertices[findSlot(tableKeys, tableVertices, keys[e])];
+            rowOffsets[endpointVertices[e] + 1]++;
+        }
+        for (int v = 0; v < verticesCount; v++)
+            rowOffsets[v + 1] += rowOffsets[v];
+        rowCursors = Arrays.copyOf(rowOffsets, verticesCount);
+        rows = new int[endpointsCount];
+        for (int e = 0; e < endpointsCount; e++)
+            rows[rowCursors[endpointVertices[e]]++] = e;
+        System.arraycopy(rowOffsets, 0, rowCursors, 0, verticesCount);
+        visited = new BitSet(toolpaths.size());
+    }
+
+    private static int findSlot(long[] tableKeys, int[] tableVertices, long key)
+    {
+        int mask = tableKeys.length - 1;
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+        while (tableVertices[slot] >= 0 && tableKeys[slot] != key)
+            slot = (slot + 1) & mask;
+        return slot;
     }
 }
@@ -0,0 +1,39 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.cirqwizard.generation.optimizer;
+
+import java.util.List;
+
+/**
+ * Orders dispensing pads: nearest neighbour tour from origin, refined by 2-opt and Or-opt.
+ * Every pass costs the same retract and pauses wherever it is, so only travel between pads depends on the order.
+ * Pads are chains and may be dispensed in reverse.
+ */
+public class DispensingPathOptimizer
+{
+    private List<Chain> pads;
+
+    public DispensingPathOptimizer(List<Chain> pads)
+    {
+        this.pads = pads;
+    }
+
+    public List<Chain> optimize()
+    {
+        if (pads.size() < 2)
+            return pads;
+        int[] tour = new TourConstructor(new Environment(pads)).createNearestNeighbourTour();
+        return new LocalSearchOptimizer(pads).optimize(tour);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.cirqwizard.generation.optimizer;
+
+import org.cirqwizard.generation.toolpath.DrillPoint;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drill hits made with a single tool, in drilling order. Hits are referred to by their index among the panel's drill hits.
+ */
+public class DrillJob
+{
+    private int toolDiameter;
+    private int[] order;
+
+    public DrillJob(int toolDiameter, int[] order)
+    {
+        this.toolDiameter = toolDiameter;
+        this.order = order;
+    }
+
+    public int getToolDiameter()
+    {
+        return toolDiameter;
+    }
+
+    public int[] getOrder()
+    {
+        return order;
+    }
+
+    public List<DrillPoint> getDrillPoints(List<DrillPoint> drillPoints)
+    {
+        List<DrillPoint> result = new ArrayList<>(order.length);
+        for (int i : order)
+            result.add(drillPoints.get(i));
+        return result;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.cirqwizard.generation.optimizer;
+
+import org.cirqwizard.generation.toolpath.DrillPoint;
+import org.cirqwizard.geom.Point;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Plans drilling of a whole panel: diameters within tolerance share a drill, tools are taken in order of proximity
+ * and each tool's hits are ordered starting from where the previous tool stopped
+ */
+public class DrillJobPlanner
+{
+    private List<DrillPoint> drillPoints;
+    private int tolerance;
+
+    public DrillJobPlanner(List<DrillPoint> drillPoints, int tolerance)
+    {
+        this.drillPoints = drillPoints;
+        this.tolerance = tolerance;
+    }
+
+    public List<DrillJob> plan()
+    {
+        List<DrillJob> groups = groupDiameters();
+        List<DrillJob> jobs = new ArrayList<>();
+        Point location = new Point(0, 0);
+        while (!groups.isEmpty())
+        {
+            DrillJob next = groups.get(0);
+            double nextDistance = Double.MAX_VALUE;
+            for (DrillJob group : groups)
+            {
+                double distance = getDistance(location, group.getDrillPoints(drillPoints));
+                if (distance < nextDistance)
+                {
+                    next = group;
+                    nextDistance = distance;
+                }
+            }
+            groups.remove(next);
+
+            int[] order = new DrillPathOptimizer(next.getDrillPoints(drillPoints)).optimize(location);
+            for (int i = 0; i < order.length; i++)
+                order[i] = next.getOrder()[order[i]];
+            jobs.add(new DrillJob(next.getToolDiameter(), order));
+            location = drillPoints.get(order[order.length - 1]).getPoint();
+        }
+        return jobs;
+    }
+
+    /**
+     * Sorted diameters are split into the least number of groups spanning no more than tolerance.
+     * Each group is drilled with its most used diameter.
+     */
+    private List<DrillJob> groupDiameters()
+    {
+        TreeMap<Integer, List<Integer>> diameters = new TreeMap<>();
+        for (int i = 0; i < drillPoints.size(); i++)
+            diameters.computeIfAbsent(drillPoints.get(i).getToolDiameter(), d -> new ArrayList<>()).add(i);
+        List<DrillJob> groups = new ArrayList<>();
+        while (!diameters.isEmpty())
+        {
+            Map<Integer, List<Integer>> group = diameters.headMap(diameters.firstKey() + tolerance, true);
+            int toolDiameter = group.keySet().iterator().next();
+            List<Integer> indices = new ArrayList<>();
+            for (Map.Entry<Integer, List<Integer>> e : group.entrySet())
+            {
+                if (e.getValue().size() > group.get(toolDiameter).size())
+                    toolDiameter = e.getKey();
+                indices.addAll(e.getValue());
+            }
+            groups.add(new DrillJob(toolDiameter, indices.stream().mapToInt(Integer::intValue).toArray()));
+            group.clear();
+        }
+        return groups;
+    }
+
+    private static double getDistance(Point location, List<DrillPoint> points)
+    {
+        double distance = Double.MAX_VALUE;
+        for (DrillPoint p : points)
+            distance = Math.min(distance, location.distanceTo(p.getPoint()));
+        return distance;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cirqwizard.generation.optimizer;
+
+import org.cirqwizard.generation.toolpath.DrillPoint;
+import org.cirqwizard.geom.Point;
+
+import java.util.List;
+
+/**
+ * Orders drill hits: nearest neighbour tour from start point, refined by 2-opt and Or-opt
+ */
+public class DrillPathOptimizer
+{
+    private List<DrillPoint> drillPoints;
+
+    public DrillPathOptimizer(List<DrillPoint> drillPoints)
+    {
+        this.drillPoints = drillPoints;
+    }
+
+    /**
+     * @return order of drill points, as indices in the list given to constructor
+     */
+    public int[] optimize()
+    {
+        return optimize(new Point(0, 0));
+    }
+
+    /**
+     * @param start location of the spindle before the first hit
+     * @return order of drill points, as indices in the list given to constructor
+     */
+    public int[] optimize(Point start)
+    {
+        // Tour construction and local search start at origin, so coordinates are taken relative to start point
+        int[] xs = new int[drillPoints.size()];
+        int[] ys = new int[drillPoints.size()];
+        for (int i = 0; i < xs.length; i++)
+        {
+            xs[i] = drillPoints.get(i).getPoint().getX() - start.getX();
+            ys[i] = drillPoints.get(i).getPoint().getY() - start.getY();
+        }
+        int[] tour = new TourConstructor(xs, ys).createNearestNeighbourTour();
+        return new LocalSearchOptimizer(xs, ys).optimizeOrder(tour);
+    }
+}
@@ -14,15 +14,31 @@ This program is free software: you can redistribute it and/or modify
 
 package org.cirqwizard.generation.optimizer;
 
+import org.cirqwizard.geom.Point;
+
 import java.util.List;
 
+/**
+ * Chains being ordered. Coordinates of chains' ends are kept in flat arrays for fitness evaluation and,
+ * if there are not too many chains, distances between all pairs of chains are precomputed.
+ */
 public class Environment
 {
+    private static final long MAX_DISTANCE_MATRIX_SIZE = 16 * 1024 * 1024;
+
     private List<Chain> chains;
 
+    private int[] startX;
+    private int[] startY;
+    private int[] endX;
+    private int[] endY;
+    // Distance from the end of chain i to the start of chain j is at [i * chains count + j]
+    private float[] distances;
+    private double[] distancesFromOrigin;
+
     public Environment(List<Chain> chains)
     {
-        this.chains = chains;
+        setChains(chains);
     }
 
     public List<Chain> getChains()
@@ -33,5 +49,93 @@ public class Environment
     public void setChains(List<Chain> chains)
     {
         this.chains = chains;
+
+        int n = chains.size();
+        startX = new int[n];
+        startY = new int[n];
+        endX = new int[n];
+        endY = new int[n];
+        distancesFromOrigin = new double[n];
+        for (int i = 0; i < n; i++)
+        {
+            Point start = chains.get(i).getStart();
+            Point end = chains.get(i).getEnd();
+            startX[i] = start.getX();
+            startY[i] = start.getY();
+            endX[i] = end.getX();
+            endY[i] = end.getY();
+            distancesFromOrigin[i] = Math.sqrt((double) startX[i] * startX[i] + (double) startY[i] * startY[i]);
+        }
+
+        distances = null;
+        long matrixSize = (long) n * n;
+        if (matrixSize <= MAX_DISTANCE_MATRIX_SIZE && matrixSize * 4 <= Runtime.getRuntime().maxMemory() / 8)
+        {
+            distances = new float[n * n];
+            for (int i = 0; i < n; i++)
+                for (int j = 0; j < n; j++)
+                    distances[i * n + j] = (float) distance(i, j);
+        }
+    }
+
+    int[] getStartX()
+    {
+        return startX;
+    }
+
+    int[] getStartY()
+    {
+        return startY;
+    }
+
+    int[] getEndX()
+    {
+        return endX;
+    }
+
+    int[] getEndY()
+    {
+        return endY;
+    }
+
+    private double distance(int from, int to)
+    {
+        double dx = endX[from] - startX[to];
+        double dy = endY[from] - startY[to];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * Calculates length of rapid moves needed to mill chains in the given order, starting from origin
+     * @param genes order of chains
+     * @return total length of rapid moves
+     */
+    public double calculateFitness(int[] genes)
+    {
+        if (genes.length == 0)
+            return 0;
+
+        double fitness = distancesFromOrigin[genes[0]];
+        int previous = genes[0];
+        if (distances != null)
+        {
+            int n = startX.length;
+            for (int k = 1; k < genes.length; k++)
+            {
+                int g = genes[k];
+                fitness += distances[previous * n + g];
+                previous = g;
+            }
+        }
+        else
+        {
+            for (int k = 1; k < genes.length; k++)
+            {
+                int g = genes[k];
+                fitness += distance(previous, g);
+                previous = g;
+            }
+        }
+        return fitness;
     }
 }
@@ -14,37 +14,91 @@ This program is free software: you can redistribute it and/or modify
 
 package org.cirqwizard.generation.optimizer;
 
-import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
+/**
+ * Population of a fixed size. Phenotypes are allocated once and their genes are overwritten by breeding.
+ */
 public class Generation
 {
-    private ArrayList<Phenotype> population = new ArrayList<>();
+    private Phenotype[] population;
 
-    public Generation()
+    public Generation(int genomeSize, int size)
     {
+        population = new Phenotype[size];
+        for (int i = 0; i < size; i++)
+            population[i] = new Phenotype(new int[genomeSize]);
     }
 
-    public Generation(ArrayList<Phenotype> population)
+    public void populate(Random random)
     {
-        this.population = population;
+        for (Phenotype p : population)
+            shuffle(p.getGenes(), random);
     }
 
-    public void populate(int genomeSize, int size)
+    /**
+     * Seeds population with the given tours and their perturbations. A share of population is left random to keep diversity
+     * @param tours initial tours
+     * @param randomShare share of random phenotypes
+     * @param random random generator
+     */
+    public void populate(List<int[]> tours, double randomShare, Random random)
     {
-        Random rnd = new Random();
-        for (int i = 0; i < size; i++)
+        int seeded = Math.max(tours.size(), (int) (population.length * (1 - randomShare)));
+        for (int i = 0; i < population.length; i++)
+        {
+            int[] genes = population[i].getGenes();
+            if (i >= seeded || tours.isEmpty())
+            {
+                shuffle(genes, random);
+                continue;
+            }
+            System.arraycopy(tours.get(i % tours.size()), 0, genes, 0, genes.length);
+            if (i >= tours.size())
+                perturb(genes, random);
+        }
+    }
+
+    private static void shuffle(int[] genes, Random random)
+    {
+        for (int i = 0; i < genes.length; i++)
+        {
+            int j = random.nextInt(i + 1);
+            genes[i] = genes[j];
+            genes[j] = i;
+        }
+    }
+
+    // Reverses a few short runs of genes, keeping most of the tour intact
+    private static void perturb(int[] genes, Random random)
+    {
+        if (genes.length < 2)
+            return;
+        int count = 1 + random.nextInt(4);
+        for (int k = 0; k < count; k++)
         {
-            ArrayList<Integer> toAdd = new ArrayList<>();
-            for (int j = 0; j < genomeSize; j++)
-                toAdd.add(j);
-            int[] newGenes = new int[toAdd.size()];
-            for (int j = 0; j < newGenes.length; j++)
-                newGenes[j] = toAdd.remove(rnd.nextInt(toAdd.size()));
-            population.add(new Phenotype(newGenes));
+            int from = random.nextInt(genes.length - 1);
+            int to = Math.min(genes.length - 1, from + 1 + random.nextInt(10));
+            for (; from < to; from++, to--)
+            {
+                int g = genes[from];
+                genes[from] = genes[to];
+                genes[to] = g;
+            }
         }
     }
 
+    public int size()
+    {
+        return population.length;
+    }
+
+    public Phenotype get(int index)
+    {
+        return population[index];
+    }
+
     public Phenotype getBestFitness(Environment environment)
     {
         Phenotype mostFit = null;
@@ -55,13 +109,22 @@ public class Generation
         return mostFit;
     }
 
-    public Phenotype tournamentWinner(Environment environment, int tournamentSize)
+    public Phenotype getWorstFitness(Environment environment)
+    {
+        Phenotype leastFit = null;
+        for (Phenotype p : population)
+            if (leastFit == null || p.calculateFitness(environment) > leastFit.calculateFitness(environment))
+                leastFit = p;
+
+        return leastFit;
+    }
+
+    public Phenotype tournamentWinner(Environment environment, int tournamentSize, Random random)
     {
         Phenotype winner = null;
-        Random random = new Random();
         for (int i = 0; i < tournamentSize; i++)
         {
-            Phenotype p = population.get(random.nextInt(population.size()));
+            Phenotype p = population[random.nextInt(population.length)];
             if (winner == null || p.calculateFitness(environment) < winner.calculateFitness(environment))
                 winner = p;
         }
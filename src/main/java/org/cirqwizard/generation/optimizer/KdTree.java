@@ -0,0 +1,154 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cirqwizard.generation.optimizer;
+
+import java.util.Arrays;
+
+/**
+ * Two dimensional k-d tree over integer points, used to build nearest neighbour lists and tours.
+ * Points can be removed, removed points are skipped by queries.
+ */
+public class KdTree
+{
+    private int[] xs;
+    private int[] ys;
+    // Points in tree order: median of a range is its node, left and right halves are its subtrees
+    private int[] nodes;
+    // Number of points not removed in a subtree, at the position of subtree's root in nodes
+    private int[] alive;
+    private int[] locations;
+    private boolean[] removed;
+
+    public KdTree(int[] xs, int[] ys)
+    {
+        this.xs = xs;
+        this.ys = ys;
+        nodes = new int[xs.length];
+        for (int i = 0; i < nodes.length; i++)
+            nodes[i] = i;
+        alive = new int[xs.length];
+        build(0, nodes.length, 0);
+        locations = new int[xs.length];
+        for (int i = 0; i < nodes.length; i++)
+            locations[nodes[i]] = i;
+        removed = new boolean[xs.length];
+    }
+
+    private void build(int from, int to, int depth)
+    {
+        if (to - from <= 0)
+            return;
+        alive[(from + to) >>> 1] = to - from;
+        if (to - from == 1)
+            return;
+        int[] keys = depth % 2 == 0 ? xs : ys;
+        long[] sorted = new long[to - from];
+        for (int i = from; i < to; i++)
+            sorted[i - from] = ((long) keys[nodes[i]] << 32) | nodes[i];
+        Arrays.sort(sorted);
+        for (int i = from; i < to; i++)
+            nodes[i] = (int) sorted[i - from];
+        int median = (from + to) >>> 1;
+        build(from, median, depth + 1);
+        build(median + 1, to, depth + 1);
+    }
+
+    /**
+     * Finds nearest points
+     * @param x query point x
+     * @param y query point y
+     * @param count maximal number of points to return
+     * @param exclude index of a point to skip, -1 to skip none
+     * @return indices of the nearest points, nearest first
+     */
+    public int[] nearest(int x, int y, int count, int exclude)
+    {
+        int available = nodes.length == 0 ? 0 : alive[nodes.length >>> 1];
+        if (exclude >= 0 && !removed[exclude])
+            available--;
+        count = Math.min(count, available);
+        int[] result = new int[count];
+        long[] distances = new long[count];
+        int[] found = new int[1];
+        search(0, nodes.length, 0, x, y, exclude, result, distances, found);
+        return result;
+    }
+
+    public void remove(int point)
+    {
+        if (removed[point])
+            return;
+        removed[point] = true;
+        int location = locations[point];
+        int from = 0;
+        int to = nodes.length;
+        while (true)
+        {
+            int median = (from + to) >>> 1;
+            alive[median]--;
+            if (median == location)
+                break;
+            if (location < median)
+                to = median;
+            else
+                from = median + 1;
+        }
+    }
+
+    private void search(int from, int to, int depth, int x, int y, int exclude, int[] result, long[] distances, int[] found)
+    {
+        if (from >= to || result.length == 0)
+            return;
+        int median = (from + to) >>> 1;
+        if (alive[median] == 0)
+            return;
+        int point = nodes[median];
+        if (point != exclude && !removed[point])
+        {
+            long dx = xs[point] - x;
+            long dy = ys[point] - y;
+            insert(point, dx * dx + dy * dy, result, distances, found);
+        }
+
+        long delta = depth % 2 == 0 ? (long) x - xs[point] : (long) y - ys[point];
+        if (delta < 0)
+        {
+            search(from, median, depth + 1, x, y, exclude, result, distances, found);
+            if (found[0] < result.length || delta * delta < distances[found[0] - 1])
+                search(median + 1, to, depth + 1, x, y, exclude, result, distances, found);
+        }
+        else
+        {
+            search(median + 1, to, depth + 1, x, y, exclude, result, distances, found);
+            if (found[0] < result.length || delta * delta < distances[found[0] - 1])
+                search(from, median, depth + 1, x, y, exclude, result, distances, found);
+        }
+    }
+
+    private static void insert(int point, long distance, int[] result, long[] distances, int[] found)
+    {
+        if (found[0] == result.length && distance >= distances[found[0] - 1])
+            return;
+        int i = found[0] < result.length ? found[0]++ : found[0] - 1;
+        while (i > 0 && distances[i - 1] > distance)
+        {
+            result[i] = result[i - 1];
+            distances[i] = distances[i - 1];
+            i--;
+        }
+        result[i] = point;
+        distances[i] = distance;
+    }
+}
@@ -0,0 +1,278 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cirqwizard.generation.optimizer;
+
+import org.cirqwizard.geom.Point;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Refines order of chains (or points) with 2-opt and Or-opt moves. Unlike the genetic optimizer it may reverse chains.
+ * Only moves connecting an end of a chain with one of its nearest neighbours are tried.
+ * Distances are straight lines between chains' ends, the tour starts at origin and is open.
+ */
+public class LocalSearchOptimizer
+{
+    private static final int NEIGHBOURS_COUNT = 10;
+    private static final int MAX_SEGMENT_LENGTH = 3;
+    private static final int MAX_PASSES = 50;
+    private static final double MIN_GAIN = 0.001;
+
+    private static final int ORIGIN = -1;
+    private static final int NONE = -2;
+
+    private List<Chain> chains;
+    private int n;
+    // Ends of chain c are endpoints c * 2 (start) and c * 2 + 1 (end)
+    private int[] x;
+    private int[] y;
+    private int[][] neighbours;
+
+    private int[] order;
+    private int[] position;
+    private boolean[] reversed;
+    private int[] buffer;
+
+    public LocalSearchOptimizer(List<Chain> chains)
+    {
+        this.chains = chains;
+        n = chains.size();
+        x = new int[n * 2];
+        y = new int[n * 2];
+        for (int i = 0; i < n; i++)
+        {
+            Point start = chains.get(i).getStart();
+            Point end = chains.get(i).getEnd();
+            x[i * 2] = start.getX();
+            y[i * 2] = start.getY();
+            x[i * 2 + 1] = end.getX();
+            y[i * 2 + 1] = end.getY();
+        }
+        buildNeighbours(NEIGHBOURS_COUNT);
+    }
+
+    /**
+     * Creates optimizer of a tour through points, such as drill hits
+     * @param xs x coordinates of points
+     * @param ys y coordinates of points
+     */
+    public LocalSearchOptimizer(int[] xs, int[] ys)
+    {
+        n = xs.length;
+        x = new int[n * 2];
+        y = new int[n * 2];
+        for (int i = 0; i < n; i++)
+        {
+            x[i * 2] = x[i * 2 + 1] = xs[i];
+            y[i * 2] = y[i * 2 + 1] = ys[i];
+        }
+        // Both ends of a point coincide, so every neighbour is found twice
+        buildNeighbours(NEIGHBOURS_COUNT * 2 + 1);
+    }
+
+    private void buildNeighbours(int count)
+    {
+        KdTree tree = new KdTree(x, y);
+        neighbours = new int[n * 2][];
+        for (int i = 0; i < n * 2; i++)
+            neighbours[i] = tree.nearest(x[i], y[i], count, i);
+    }
+
+    /**
+     * Improves the given order of chains
+     * @param genes initial order, as indices in the chains list
+     * @return chains in improved order, chains to be milled backwards are reversed
+     */
+    public List<Chain> optimize(int[] genes)
+    {
+        optimizeOrder(genes);
+        List<Chain> result = new ArrayList<>(n);
+        for (int c : order)
+            result.add(reversed[c] ? chains.get(c).reverse() : chains.get(c));
+        return result;
+    }
+
+    /**
+     * Improves the given order
+     * @param initialOrder initial order of chains or points
+     * @return improved order, see {@link #isReversed(int)} for direction of chains
+     */
+    public int[] optimizeOrder(int[] initialOrder)
+    {
+        order = initialOrder.clone();
+        position = new int[n];
+        reversed = new boolean[n];
+        buffer = new int[n];
+        for (int i = 0; i < n; i++)
+            position[order[i]] = i;
+
+        boolean improved = true;
+        for (int pass = 0; improved && pass < MAX_PASSES; pass++)
+        {
+            improved = false;
+            for (int k = 0; k < n; k++)
+            {
+                improved |= tryTwoOpt(k - 1, k);
+                improved |= tryTwoOpt(k);
+                improved |= tryOrOpt(k);
+            }
+        }
+
+        return order.clone();
+    }
+
+    public boolean isReversed(int index)
+    {
+        return reversed[index];
+    }
+
+    private int exit(int k)
+    {
+        if (k < 0)
+            return ORIGIN;
+        int c = order[k];
+        return reversed[c] ? c * 2 : c * 2 + 1;
+    }
+
+    private int entry(int k)
+    {
+        if (k >= n)
+            return NONE;
+        int c = order[k];
+        return reversed[c] ? c * 2 + 1 : c * 2;
+    }
+
+    private double distance(int e1, int e2)
+    {
+        if (e1 == NONE || e2 == NONE)
+            return 0;
+        double dx = (e1 == ORIGIN ? 0 : x[e1]) - (e2 == ORIGIN ? 0 : x[e2]);
+        double dy = (e1 == ORIGIN ? 0 : y[e1]) - (e2 == ORIGIN ? 0 : y[e2]);
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private boolean tryTwoOpt(int k)
+    {
+        int e = exit(k);
+        for (int q : neighbours[e])
+        {
+            int p = position[q / 2];
+            if (p != k && q == exit(p) && tryTwoOpt(Math.min(k, p), Math.max(k, p)))
+                return true;
+        }
+        e = entry(k);
+        for (int q : neighbours[e])
+        {
+            int p = position[q / 2];
+            if (p != k && q == entry(p) && tryTwoOpt(Math.min(k, p) - 1, Math.max(k, p) - 1))
+                return true;
+        }
+        return false;
+    }
+
+    // Reverses chains from i + 1 to j, inclusive
+    private boolean tryTwoOpt(int i, int j)
+    {
+        int a = exit(i);
+        int b = entry(i + 1);
+        int c = exit(j);
+        int d = entry(j + 1);
+        if (distance(a, c) + distance(b, d) - distance(a, b) - distance(c, d) > -MIN_GAIN)
+            return false;
+
+        for (int l = i + 1, r = j; l <= r; l++, r--)
+        {
+            int t = order[l];
+            order[l] = order[r];
+            order[r] = t;
+            position[order[l]] = l;
+            position[order[r]] = r;
+            reversed[order[l]] = !reversed[order[l]];
+            if (l != r)
+                reversed[order[r]] = !reversed[order[r]];
+        }
+        return true;
+    }
+
+    // Moves chains from k to k + length - 1 elsewhere, possibly reversing them
+    private boolean tryOrOpt(int k)
+    {
+        for (int length = 1; length <= MAX_SEGMENT_LENGTH && k + length <= n; length++)
+        {
+            int last = k + length - 1;
+            int first = entry(k);
+            int end = exit(last);
+            double removalGain = distance(exit(k - 1), first) + distance(end, entry(last + 1)) - distance(exit(k - 1), entry(last + 1));
+            if (removalGain <= MIN_GAIN)
+                continue;
+
+            for (int side = 0; side < 2; side++)
+            {
+                for (int q : neighbours[side == 0 ? first : end])
+                {
+                    int p = position[q / 2];
+                    if (p >= k && p <= last)
+                        continue;
+                    // Segment is inserted after the chain at "after"
+                    int after = q == exit(p) ? p : p - 1;
+                    if (after == k - 1 || after == last)
+                        continue;
+                    double bridge = distance(exit(after), entry(after + 1));
+                    double forward = distance(exit(after), first) + distance(end, entry(after + 1)) - bridge;
+                    double backward = distance(exit(after), end) + distance(first, entry(after + 1)) - bridge;
+                    if (Math.min(forward, backward) < removalGain - MIN_GAIN)
+                    {
+                        moveSegment(k, last, after, backward < forward);
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private void moveSegment(int first, int last, int after, boolean reverse)
+    {
+        int count = 0;
+        if (after < 0)
+            count = copySegment(first, last, reverse, count);
+        for (int i = 0; i < n; i++)
+        {
+            if (i >= first && i <= last)
+                continue;
+            buffer[count++] = order[i];
+            if (i == after)
+                count = copySegment(first, last, reverse, count);
+        }
+        int[] t = order;
+        order = buffer;
+        buffer = t;
+        for (int i = 0; i < n; i++)
+            position[order[i]] = i;
+    }
+
+    private int copySegment(int first, int last, boolean reverse, int count)
+    {
+        for (int i = first; i <= last; i++)
+        {
+            int c = order[reverse ? first + last - i : i];
+            if (reverse)
+                reversed[c] = !reversed[c];
+            buffer[count++] = c;
+        }
+        return count;
+    }
+}
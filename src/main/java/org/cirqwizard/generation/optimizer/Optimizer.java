@@ -22,22 +22,34 @@ import org.cirqwizard.generation.toolpath.Toolpath;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Vector;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
 
+/**
+ * Genetic optimizer of chains order. Population is split into islands evolving independently in their own threads,
+ * islands periodically send their best phenotype to the next island (ring topology).
+ * The first island's thread also evaluates the best solution and decides when to stop.
+ */
 public class Optimizer
 {
     private final static int POPULATION_SIZE = 350;
+    private final static int MIN_ISLAND_POPULATION_SIZE = 50;
     private final static int TOURNAMENT_SIZE = 7;
     private final static double MUTATION_PROBABILITY = 0.025;
     private final static int MAX_GENERATIONS_COUNT = 10_000;
     private final static int REEVALUATION_FREQUENCY = 200;
+    private final static int MIGRATION_FREQUENCY = 50;
     private final static double MIN_IMPROVEMENT = 0.2;
+    private final static double RANDOM_PHENOTYPES_SHARE = 0.1;
 
     private Environment environment;
-    private Generation currentGeneration;
+    private Island[] islands;
+    private AtomicReference<Phenotype> bestSolution = new AtomicReference<>();
+    private volatile boolean stopped;
 
     private double feed;
     private double arcFeed;
@@ -67,33 +79,98 @@ public class Optimizer
     {
         init();
 
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, islands.length - 1));
+        for (int i = 1; i < islands.length; i++)
+        {
+            final int island = i;
+            pool.submit(() -> evolve(island));
+        }
+        evolve(0);
+        stopped = true;
+        try
+        {
+            pool.shutdown();
+            pool.awaitTermination(10, TimeUnit.DAYS);
+        }
+        catch (InterruptedException e) {}
+
+        Phenotype mostFit = bestSolution.get();
+        if (cancelledProperty.get())
+        {
+            ArrayList<Chain> result = new ArrayList<>();
+            for (int i : mostFit.getGenes())
+                result.add(environment.getChains().get(i));
+            return result;
+        }
+
+        List<Chain> result = new LocalSearchOptimizer(environment.getChains()).optimize(mostFit.getGenes());
+        final double duration = estimateDuration(result);
+        Platform.runLater(() -> bestSolutionDuration.setValue(duration));
+        return result;
+    }
+
+    private void evolve(int index)
+    {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
         double lastEvaluation = Double.MAX_VALUE;
-        for (int i = 0; i < MAX_GENERATIONS_COUNT; i++)
+        for (int i = 0; i < MAX_GENERATIONS_COUNT && !stopped; i++)
         {
             if (cancelledProperty.get())
                 break;
 
+            breed(index, i, random);
+
+            if (index != 0)
+                continue;
             progressProperty.setValue((double) i / MAX_GENERATIONS_COUNT);
-            breed();
             if (i % REEVALUATION_FREQUENCY == 0)
             {
-                Phenotype mostFit = currentGeneration.getBestFitness(environment);
-                final List<Toolpath> l = new ArrayList<>();
-                for (int j : mostFit.getGenes())
-                    l.addAll(environment.getChains().get(j).getSegments());
-                final double bestResult = TimeEstimator.calculateTotalDuration(l, feed, zFeed, arcFeed, clearance, safetyHeight, true, mergeTolerance);
+                List<Chain> chains = new ArrayList<>();
+                for (int j : bestSolution.get().getGenes())
+                    chains.add(environment.getChains().get(j));
+                final double bestResult = estimateDuration(chains);
                 Platform.runLater(() -> bestSolutionDuration.setValue(bestResult));
                 if (Math.abs(lastEvaluation - bestResult) < MIN_IMPROVEMENT)
                     break;
                 lastEvaluation = bestResult;
             }
         }
+    }
 
-        Phenotype mostFit = currentGeneration.getBestFitness(environment);
-        ArrayList<Chain> result = new ArrayList<>();
-        for (int i : mostFit.getGenes())
-            result.add(environment.getChains().get(i));
-        return result;
+    private void breed(int index, int generation, ThreadLocalRandom random)
+    {
+        Island island = islands[index];
+        Island neighbour = islands[(index + 1) % islands.length];
+        island.acceptImmigrant();
+        island.breed(random);
+        publish(island.getBest());
+        if (generation % MIGRATION_FREQUENCY == 0 && neighbour != island)
+            neighbour.immigrant.set(island.getBest().getGenes().clone());
+    }
+
+    private void publish(Phenotype candidate)
+    {
+        double fitness = candidate.calculateFitness(environment);
+        Phenotype best = bestSolution.get();
+        if (best != null && best.calculateFitness(environment) <= fitness)
+            return;
+        // Phenotypes of islands are overwritten by breeding, the best solution is a copy
+        Phenotype copy = new Phenotype(candidate.getGenes().clone());
+        copy.calculateFitness(environment);
+        while (!bestSolution.compareAndSet(best, copy))
+        {
+            best = bestSolution.get();
+            if (best.calculateFitness(environment) <= fitness)
+                return;
+        }
+    }
+
+    private double estimateDuration(List<Chain> chains)
+    {
+        List<Toolpath> l = new ArrayList<>();
+        for (Chain chain : chains)
+            l.addAll(chain.getSegments());
+        return TimeEstimator.calculateTotalDuration(l, feed, zFeed, arcFeed, clearance, safetyHeight, true, mergeTolerance);
     }
 
     public DoubleProperty progressProperty()
@@ -113,37 +190,83 @@ public class Optimizer
 
     private void init()
     {
-        int[] originalGenes = new int[environment.getChains().size()];
-        for (int i = 0; i < originalGenes.length; i++)
-            originalGenes[i] = i;
-        currentGeneration = new Generation();
-        currentGeneration.populate(environment.getChains().size(), POPULATION_SIZE);
+        int islandsCount = Runtime.getRuntime().availableProcessors();
+        int islandSize = Math.max(MIN_ISLAND_POPULATION_SIZE, POPULATION_SIZE / islandsCount);
+        List<int[]> tours = new TourConstructor(environment).createTours();
+        islands = new Island[islandsCount];
+        bestSolution.set(null);
+        stopped = false;
+        for (int i = 0; i < islandsCount; i++)
+        {
+            islands[i] = new Island(environment.getChains().size(), islandSize, tours);
+            publish(islands[i].getBest());
+        }
+    }
+
+    /**
+     * Breeds one generation on every island in parallel, the same way {@link #optimize()} does
+     */
+    void breed(int generation)
+    {
+        if (islands == null)
+            init();
+        IntStream.range(0, islands.length).parallel().forEach(i -> breed(i, generation, ThreadLocalRandom.current()));
+    }
+
+    Phenotype getBestSolution()
+    {
+        return bestSolution.get();
     }
 
-    public void breed()
+    private class Island
     {
-        final Vector<Phenotype> newGeneration = new Vector<>();
+        private Generation currentGeneration;
+        private Generation nextGeneration;
+        private boolean[] copied;
+        private AtomicReference<int[]> immigrant = new AtomicReference<>();
+
+        public Island(int genomeSize, int size, List<int[]> tours)
+        {
+            currentGeneration = new Generation(genomeSize, size);
+            currentGeneration.populate(tours, RANDOM_PHENOTYPES_SHARE, ThreadLocalRandom.current());
+            for (int i = 0; i < size; i++)
+                currentGeneration.get(i).calculateFitness(environment);
+            nextGeneration = new Generation(genomeSize, size);
+            copied = new boolean[genomeSize];
+        }
 
-        ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-        for (int i = 0; i < POPULATION_SIZE; i++)
+        public void breed(ThreadLocalRandom random)
         {
-            pool.submit(() ->
+            for (int i = 0; i < nextGeneration.size(); i++)
             {
-                Phenotype parent1 = currentGeneration.tournamentWinner(environment, TOURNAMENT_SIZE);
-                Phenotype parent2 = currentGeneration.tournamentWinner(environment, TOURNAMENT_SIZE);
-                Phenotype child = parent1.crossOver(parent2);
-                if (Math.random() < MUTATION_PROBABILITY)
-                    child.mutate();
+                Phenotype parent1 = currentGeneration.tournamentWinner(environment, TOURNAMENT_SIZE, random);
+                Phenotype parent2 = currentGeneration.tournamentWinner(environment, TOURNAMENT_SIZE, random);
+                Phenotype child = nextGeneration.get(i);
+                child.crossOver(parent1, parent2, random, copied);
+                if (random.nextDouble() < MUTATION_PROBABILITY)
+                    child.mutate(random);
                 child.calculateFitness(environment);
-                newGeneration.add(child);
-            });
+            }
+
+            Generation generation = currentGeneration;
+            currentGeneration = nextGeneration;
+            nextGeneration = generation;
         }
-        try
+
+        // Immigrant replaces the least fit phenotype
+        public void acceptImmigrant()
         {
-            pool.shutdown();
-            pool.awaitTermination(10, TimeUnit.DAYS);
+            int[] genes = immigrant.getAndSet(null);
+            if (genes == null)
+                return;
+            Phenotype worst = currentGeneration.getWorstFitness(environment);
+            worst.setGenes(genes);
+            worst.calculateFitness(environment);
+        }
+
+        public Phenotype getBest()
+        {
+            return currentGeneration.getBestFitness(environment);
         }
-        catch (InterruptedException e) {}
-        currentGeneration = new Generation(new ArrayList<>(newGeneration));
     }
 }
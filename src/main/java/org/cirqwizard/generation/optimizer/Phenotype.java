@@ -14,14 +14,14 @@ This program is free software: you can redistribute it and/or modify
 
 package org.cirqwizard.generation.optimizer;
 
-import org.cirqwizard.geom.Point;
-
+import java.util.Arrays;
 import java.util.Random;
 
 public class Phenotype
 {
     private int[] genes;
-    private Double fitness = null;
+    private double fitness;
+    private boolean fitnessCalculated;
 
     public Phenotype(int[] genes)
     {
@@ -30,19 +30,11 @@ public class Phenotype
 
     public double calculateFitness(Environment env)
     {
-        if (fitness != null)
+        if (fitnessCalculated)
             return fitness;
 
-        Point currentLocation = new Point(0, 0);
-        fitness = 0.0;
-
-        for (int i : genes)
-        {
-            Chain chain = env.getChains().get(i);
-            fitness += currentLocation.distanceTo(chain.getStart());
-            currentLocation = chain.getEnd();
-        }
-
+        fitness = env.calculateFitness(genes);
+        fitnessCalculated = true;
         return fitness;
     }
 
@@ -51,36 +43,49 @@ public class Phenotype
         return genes;
     }
 
-    public Phenotype crossOver(Phenotype partner)
+    public void setGenes(int[] genes)
     {
-        Random random = new Random();
-        int firstIndex = random.nextInt(genes.length);
-        int lastIndex = random.nextInt(genes.length);
+        System.arraycopy(genes, 0, this.genes, 0, this.genes.length);
+        fitnessCalculated = false;
+    }
+
+    /**
+     * Replaces genes of this phenotype with a child of two parents: a random slice of the first parent's genes
+     * followed by the remaining genes in order of the second parent
+     * @param parent1 parent the slice is taken from
+     * @param parent2 parent the remaining genes are taken from
+     * @param random random generator of the calling thread
+     * @param copied scratch array of genes' length
+     */
+    public void crossOver(Phenotype parent1, Phenotype parent2, Random random, boolean[] copied)
+    {
+        int[] parentGenes = parent1.genes;
+        int firstIndex = random.nextInt(parentGenes.length);
+        int lastIndex = random.nextInt(parentGenes.length);
 
-        int[] childGenes = new int[genes.length];
         if (lastIndex < firstIndex)
-            lastIndex += genes.length;
+            lastIndex += parentGenes.length;
         int counter = 0;
 
-        boolean[] copied = new boolean[genes.length];
+        Arrays.fill(copied, false);
         for (int i = firstIndex; i < lastIndex; i++)
         {
-            int g = genes[i % genes.length];
-            childGenes[counter++] = g;
+            int g = parentGenes[i % parentGenes.length];
+            genes[counter++] = g;
             copied[g] = true;
         }
-        for (int i = 0; i < partner.genes.length; i++)
+        for (int g : parent2.genes)
         {
-            if (!copied[partner.genes[i]])
-                childGenes[counter++] = partner.genes[i];
+            if (!copied[g])
+                genes[counter++] = g;
         }
-
-        return new Phenotype(childGenes);
+        fitnessCalculated = false;
     }
 
-    public void mutate()
+    public void mutate(Random random)
     {
-        Random random = new Random();
+        if (genes.length < 2)
+            return;
         int genesCount = random.nextInt(genes.length / 2);
         for (int i = 0; i < genesCount; i++)
         {
@@ -90,6 +95,7 @@ public class Phenotype
             genes[gene1] = genes[gene2];
             genes[gene2] = g;
         }
+        fitnessCalculated = false;
     }
 
 }
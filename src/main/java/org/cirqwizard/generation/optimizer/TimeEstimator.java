@@ -16,10 +16,10 @@ package org.cirqwizard.generation.optimizer;
 
 import org.cirqwizard.geom.Arc;
 import org.cirqwizard.geom.Curve;
-import org.cirqwizard.geom.Line;
 import org.cirqwizard.geom.Point;
 import org.cirqwizard.settings.ApplicationConstants;
 import org.cirqwizard.generation.toolpath.CuttingToolpath;
+import org.cirqwizard.generation.toolpath.DrillPoint;
 import org.cirqwizard.generation.toolpath.Toolpath;
 
 import java.util.List;
@@ -33,54 +33,178 @@ public class TimeEstimator
     private final static double yRapidAcceleration = (double) ApplicationConstants.getYRapidAcceleration() / ApplicationConstants.RESOLUTION;
     private final static double zRapidAcceleration = (double) ApplicationConstants.getZRapidAcceleration() / ApplicationConstants.RESOLUTION;
     private final static double feedAcceleration = (double) ApplicationConstants.getFeedAcceleration() / ApplicationConstants.RESOLUTION;
+    private final static double junctionDeviation = (double) ApplicationConstants.getJunctionDeviation() / ApplicationConstants.RESOLUTION;
 
+    /**
+     * Feed moves are planned the way motion controllers do: speed at a junction of connected segments is limited by junction
+     * deviation, speed along an arc by centripetal acceleration, and segments are looked ahead so that the tool only stops
+     * where it has to retract.
+     */
     public static double calculateTotalDuration(List<Toolpath> toolpaths, double feed, double zFeed, double arcFeed, double clearance, double safetyHeight, boolean includeFeed,
                                                 int mergeTolerance)
     {
-        Point currentLocation = new Point(0, 0);
-        double totalTime = 0;
+        if (toolpaths == null)
+            return 0;
 
         double retractTime = calculatePathDuration(clearance, zRapids, zRapidAcceleration);
-        double descentToSafetyHeight = calculatePathDuration(clearance - safetyHeight, zRapids, xRapidAcceleration);
+        double descentToSafetyHeight = calculatePathDuration(clearance - safetyHeight, zRapids, zRapidAcceleration);
         double finalDescent = calculatePathDuration(safetyHeight, zFeed, feedAcceleration);
 
-        if (toolpaths == null)
-            return 0;
+        double[] lengths = new double[toolpaths.size()];
+        double[] speeds = new double[toolpaths.size()];
+        double[] junctionSpeeds = new double[toolpaths.size() + 1];
+        int count = 0;
+        double exitX = 0;
+        double exitY = 0;
 
+        Point currentLocation = new Point(0, 0);
+        double totalTime = 0;
         for (Toolpath t : toolpaths)
         {
-            if (t instanceof CuttingToolpath)
+            if (!(t instanceof CuttingToolpath))
+                continue;
+            Curve curve = ((CuttingToolpath) t).getCurve();
+            boolean connected = currentLocation.distanceTo(curve.getFrom()) <= mergeTolerance;
+            if (!connected)
+                totalTime += retractTime + calculateRapidDuration(currentLocation, curve.getFrom()) + descentToSafetyHeight + finalDescent;
+            currentLocation = curve.getTo();
+            if (!includeFeed)
+                continue;
+
+            double previousExitX = exitX;
+            double previousExitY = exitY;
+            double entryX = exitX;
+            double entryY = exitY;
+            if (curve instanceof Arc && ((Arc) curve).getRadius() > 0)
             {
-                Curve curve = ((CuttingToolpath) t).getCurve();
-                if (currentLocation.distanceTo(curve.getFrom()) > mergeTolerance)
-                {
-                    double xRapidTime = calculatePathDuration((double)Math.abs(currentLocation.getX() - curve.getFrom().getX()) / ApplicationConstants.RESOLUTION,
-                            xRapids, xRapidAcceleration);
-                    double yRapidTime = calculatePathDuration((double)Math.abs(currentLocation.getY() - curve.getFrom().getY()) / ApplicationConstants.RESOLUTION,
-                            yRapids, yRapidAcceleration);
-                    totalTime += retractTime + Math.max(xRapidTime, yRapidTime) + descentToSafetyHeight + finalDescent;
-                }
-
-                if (includeFeed)
+                Arc arc = (Arc) curve;
+                double radius = (double) arc.getRadius() / ApplicationConstants.RESOLUTION;
+                lengths[count] = arc.getAngle() * radius;
+                speeds[count] = Math.min(arcFeed, Math.sqrt(feedAcceleration * radius));
+                // Tangent is perpendicular to the radius, turning to the side of arc's direction
+                double direction = arc.isClockwise() ? -1 : 1;
+                entryX = -direction * (arc.getFrom().getY() - arc.getCenter().getY()) / (double) arc.getRadius();
+                entryY = direction * (arc.getFrom().getX() - arc.getCenter().getX()) / (double) arc.getRadius();
+                exitX = -direction * (arc.getTo().getY() - arc.getCenter().getY()) / (double) arc.getRadius();
+                exitY = direction * (arc.getTo().getX() - arc.getCenter().getX()) / (double) arc.getRadius();
+            }
+            else
+            {
+                double length = curve.getFrom().distanceTo(curve.getTo());
+                lengths[count] = length / ApplicationConstants.RESOLUTION;
+                speeds[count] = feed;
+                if (length > 0)
                 {
-                    if (curve instanceof Line)
-                    {
-                        Line l = (Line) curve;
-                        totalTime += calculatePathDuration(l.length() / ApplicationConstants.RESOLUTION, feed, feedAcceleration);
-                    }
-                    else if (curve instanceof Arc)
-                    {
-                        Arc arc = (Arc) curve;
-                        totalTime += calculatePathDuration(arc.getCircumreference() / ApplicationConstants.RESOLUTION, arcFeed, feedAcceleration);
-                    }
+                    entryX = (curve.getTo().getX() - curve.getFrom().getX()) / length;
+                    entryY = (curve.getTo().getY() - curve.getFrom().getY()) / length;
+                    exitX = entryX;
+                    exitY = entryY;
                 }
-                currentLocation = curve.getTo();
             }
+            if (connected && count > 0)
+                junctionSpeeds[count] = calculateJunctionSpeed(previousExitX, previousExitY, entryX, entryY,
+                        Math.min(speeds[count - 1], speeds[count]));
+            count++;
         }
 
+        if (includeFeed)
+            totalTime += calculateFeedDuration(lengths, speeds, junctionSpeeds, count);
+        return totalTime;
+    }
+
+    /**
+     * Drill hits are visited in the given order starting from origin, each one is a rapid at clearance, a rapid down to safety height,
+     * a feed down to working height and a retract to clearance
+     */
+    public static double calculateDrillingDuration(List<DrillPoint> drillPoints, double feed, double clearance, double safetyHeight, double workingHeight)
+    {
+        double descentToSafetyHeight = calculatePathDuration(clearance - safetyHeight, zRapids, zRapidAcceleration);
+        double drillingTime = calculatePathDuration(safetyHeight - workingHeight, feed, feedAcceleration);
+        double retractTime = calculatePathDuration(clearance - workingHeight, zRapids, zRapidAcceleration);
+
+        Point currentLocation = new Point(0, 0);
+        double totalTime = 0;
+        for (DrillPoint p : drillPoints)
+        {
+            if (!p.isEnabled())
+                continue;
+            totalTime += calculateRapidDuration(currentLocation, p.getPoint()) + descentToSafetyHeight + drillingTime + retractTime;
+            currentLocation = p.getPoint();
+        }
         return totalTime;
     }
 
+    /**
+     * Axes move together along a straight line, speed and acceleration along it are limited by whichever axis reaches its limit first
+     */
+    public static double calculateRapidDuration(Point from, Point to)
+    {
+        double dx = (double) Math.abs(from.getX() - to.getX()) / ApplicationConstants.RESOLUTION;
+        double dy = (double) Math.abs(from.getY() - to.getY()) / ApplicationConstants.RESOLUTION;
+        double length = Math.sqrt(dx * dx + dy * dy);
+        if (length == 0)
+            return 0;
+        double speed = Math.min(dx > 0 ? xRapids * length / dx : Double.MAX_VALUE, dy > 0 ? yRapids * length / dy : Double.MAX_VALUE);
+        double acceleration = Math.min(dx > 0 ? xRapidAcceleration * length / dx : Double.MAX_VALUE,
+                dy > 0 ? yRapidAcceleration * length / dy : Double.MAX_VALUE);
+        return calculatePathDuration(length, speed, acceleration);
+    }
+
+    /**
+     * Junction deviation model: the highest speed at which the tool, taking the corner along a circle touching both segments,
+     * stays within deviation from the corner without exceeding acceleration
+     */
+    private static double calculateJunctionSpeed(double exitX, double exitY, double entryX, double entryY, double maxSpeed)
+    {
+        double cosTheta = -(exitX * entryX + exitY * entryY);
+        if (cosTheta > 0.999999)
+            return 0;
+        if (cosTheta < -0.999999)
+            return maxSpeed;
+        double sinHalfTheta = Math.sqrt(0.5 * (1 - cosTheta));
+        return Math.min(maxSpeed, Math.sqrt(feedAcceleration * junctionDeviation * sinHalfTheta / (1 - sinHalfTheta)));
+    }
+
+    /**
+     * Limits junction speeds so that every segment can decelerate to its exit and accelerate from its entry,
+     * then sums up segments' trapezoidal profiles
+     * @param junctionSpeeds speed limits at the start of each segment, the last element being the stop after the last segment
+     */
+    private static double calculateFeedDuration(double[] lengths, double[] speeds, double[] junctionSpeeds, int count)
+    {
+        junctionSpeeds[count] = 0;
+        for (int i = count - 1; i >= 0; i--)
+            junctionSpeeds[i] = Math.min(junctionSpeeds[i], Math.sqrt(junctionSpeeds[i + 1] * junctionSpeeds[i + 1] + 2 * feedAcceleration * lengths[i]));
+
+        double time = 0;
+        for (int i = 0; i < count; i++)
+        {
+            double entry = junctionSpeeds[i];
+            double exit = Math.min(junctionSpeeds[i + 1], Math.sqrt(entry * entry + 2 * feedAcceleration * lengths[i]));
+            junctionSpeeds[i + 1] = exit;
+            time += calculateSegmentDuration(lengths[i], entry, exit, speeds[i]);
+        }
+        return time;
+    }
+
+    private static double calculateSegmentDuration(double length, double entry, double exit, double speed)
+    {
+        if (length <= 0)
+            return 0;
+        double accelerationDistance = (speed * speed - entry * entry) / (feedAcceleration * 2);
+        double decelerationDistance = (speed * speed - exit * exit) / (feedAcceleration * 2);
+        if (accelerationDistance + decelerationDistance <= length)
+            return (speed - entry) / feedAcceleration + (speed - exit) / feedAcceleration + (length - accelerationDistance - decelerationDistance) / speed;
+
+        double topSpeed = Math.sqrt((feedAcceleration * 2 * length + entry * entry + exit * exit) / 2);
+        return (topSpeed - entry) / feedAcceleration + (topSpeed - exit) / feedAcceleration;
+    }
+
+    public static double calculateZRapidDuration(int distance)
+    {
+        return calculatePathDuration((double) Math.abs(distance) / ApplicationConstants.RESOLUTION, zRapids, zRapidAcceleration);
+    }
+
     private static double calculatePathDuration(double length, double speed, double acceleration)
     {
         double accelerationDistance = speed * speed / (acceleration * 2);
@@ -0,0 +1,207 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cirqwizard.generation.optimizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds tours through all the chains (or points) with constructive heuristics, to seed the genetic optimizer
+ */
+public class TourConstructor
+{
+    private static final int GREEDY_NEIGHBOURS_COUNT = 8;
+    // Hilbert index takes 2 * order bits and is sorted in the upper half of a signed long, so order may not exceed 15
+    private static final int HILBERT_ORDER = 15;
+
+    private int[] startX;
+    private int[] startY;
+    private int[] endX;
+    private int[] endY;
+    private int n;
+
+    public TourConstructor(Environment environment)
+    {
+        this(environment.getStartX(), environment.getStartY(), environment.getEndX(), environment.getEndY());
+    }
+
+    /**
+     * Creates constructor of tours through points, such as drill hits
+     */
+    public TourConstructor(int[] xs, int[] ys)
+    {
+        this(xs, ys, xs, ys);
+    }
+
+    private TourConstructor(int[] startX, int[] startY, int[] endX, int[] endY)
+    {
+        this.startX = startX;
+        this.startY = startY;
+        this.endX = endX;
+        this.endY = endY;
+        this.n = startX.length;
+    }
+
+    public List<int[]> createTours()
+    {
+        List<int[]> tours = new ArrayList<>();
+        tours.add(createNearestNeighbourTour());
+        tours.add(createGreedyTour());
+        tours.add(createHilbertTour());
+        return tours;
+    }
+
+    /**
+     * Starting from origin, goes to the closest chain not yet visited
+     */
+    public int[] createNearestNeighbourTour()
+    {
+        KdTree starts = new KdTree(startX, startY);
+        int[] tour = new int[n];
+        int x = 0;
+        int y = 0;
+        for (int i = 0; i < n; i++)
+        {
+            int chain = starts.nearest(x, y, 1, -1)[0];
+            starts.remove(chain);
+            tour[i] = chain;
+            x = endX[chain];
+            y = endY[chain];
+        }
+        return tour;
+    }
+
+    /**
+     * Links chains by the shortest moves first (among moves to a few nearest chains), then visits resulting fragments
+     * in nearest neighbour order
+     */
+    public int[] createGreedyTour()
+    {
+        KdTree starts = new KdTree(startX, startY);
+        List<long[]> candidates = new ArrayList<>();
+        for (int i = 0; i < n; i++)
+        {
+            for (int j : starts.nearest(endX[i], endY[i], GREEDY_NEIGHBOURS_COUNT, i))
+            {
+                long dx = endX[i] - startX[j];
+                long dy = endY[i] - startY[j];
+                candidates.add(new long[] {dx * dx + dy * dy, i, j});
+            }
+        }
+        candidates.sort((c1, c2) -> Long.compare(c1[0], c2[0]));
+
+        int[] next = new int[n];
+        int[] previous = new int[n];
+        int[] fragments = new int[n];
+        Arrays.fill(next, -1);
+        Arrays.fill(previous, -1);
+        for (int i = 0; i < n; i++)
+            fragments[i] = i;
+        for (long[] candidate : candidates)
+        {
+            int from = (int) candidate[1];
+            int to = (int) candidate[2];
+            if (next[from] >= 0 || previous[to] >= 0)
+                continue;
+            int fromFragment = findFragment(fragments, from);
+            int toFragment = findFragment(fragments, to);
+            if (fromFragment == toFragment)
+                continue;
+            next[from] = to;
+            previous[to] = from;
+            fragments[toFragment] = fromFragment;
+        }
+
+        KdTree heads = new KdTree(startX, startY);
+        for (int i = 0; i < n; i++)
+            if (previous[i] >= 0)
+                heads.remove(i);
+        int[] tour = new int[n];
+        int count = 0;
+        int x = 0;
+        int y = 0;
+        while (count < n)
+        {
+            int chain = heads.nearest(x, y, 1, -1)[0];
+            heads.remove(chain);
+            for (; chain >= 0; chain = next[chain])
+            {
+                tour[count++] = chain;
+                x = endX[chain];
+                y = endY[chain];
+            }
+        }
+        return tour;
+    }
+
+    private static int findFragment(int[] fragments, int i)
+    {
+        while (fragments[i] != i)
+            i = fragments[i] = fragments[fragments[i]];
+        return i;
+    }
+
+    /**
+     * Visits chains in order of their starts along Hilbert curve
+     */
+    public int[] createHilbertTour()
+    {
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++)
+        {
+            minX = Math.min(minX, startX[i]);
+            minY = Math.min(minY, startY[i]);
+            maxX = Math.max(maxX, startX[i]);
+            maxY = Math.max(maxY, startY[i]);
+        }
+        double scale = (double) ((1 << HILBERT_ORDER) - 1) / Math.max(1, Math.max((long) maxX - minX, (long) maxY - minY));
+
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++)
+            keys[i] = (getHilbertIndex((int) ((startX[i] - minX) * scale), (int) ((startY[i] - minY) * scale)) << 32) | i;
+        Arrays.sort(keys);
+        int[] tour = new int[n];
+        for (int i = 0; i < n; i++)
+            tour[i] = (int) keys[i];
+        return tour;
+    }
+
+    private static long getHilbertIndex(int x, int y)
+    {
+        long index = 0;
+        for (int s = 1 << (HILBERT_ORDER - 1); s > 0; s >>= 1)
+        {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            index += (long) s * s * ((3 * rx) ^ ry);
+            if (ry == 0)
+            {
+                if (rx == 1)
+                {
+                    x = (1 << HILBERT_ORDER) - 1 - x;
+                    y = (1 << HILBERT_ORDER) - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return index;
+    }
+}
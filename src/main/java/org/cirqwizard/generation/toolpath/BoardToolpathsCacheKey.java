@@ -0,0 +1,97 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cirqwizard.generation.toolpath;
+
+
+import org.cirqwizard.layers.Board;
+import org.cirqwizard.layers.PanelBoard;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+
+
+/**
+ * Identifies tool paths of a single board, generated in board's coordinates.
+ * Board position in panel is not a part of the key, so moving the board does not invalidate them.
+ */
+public class BoardToolpathsCacheKey implements Serializable
+{
+    private String layerHash;
+    private int angle;
+    private ToolpathsCacheKey parameters;
+
+    public BoardToolpathsCacheKey(String layerHash, int angle, ToolpathsCacheKey parameters)
+    {
+        this.layerHash = layerHash;
+        this.angle = angle;
+        this.parameters = parameters;
+    }
+
+    /**
+     * @return true if tool paths were generated for one of the board's layers in board's current orientation
+     */
+    public boolean isOfBoard(PanelBoard board)
+    {
+        if (angle != normalizeAngle(board.getAngle()))
+            return false;
+        for (Board.LayerType layerType : Board.LayerType.values())
+            if (layerHash.equals(board.getLayerHash(layerType)))
+                return true;
+        return false;
+    }
+
+    public static int normalizeAngle(int angle)
+    {
+        return ((angle % 360) + 360) % 360;
+    }
+
+    public void write(DataOutput out) throws IOException
+    {
+        out.writeUTF(layerHash);
+        out.writeInt(angle);
+        parameters.write(out);
+    }
+
+    public static BoardToolpathsCacheKey read(DataInput in) throws IOException
+    {
+        String layerHash = in.readUTF();
+        int angle = in.readInt();
+        return new BoardToolpathsCacheKey(layerHash, angle, ToolpathsCacheKey.read(in));
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        BoardToolpathsCacheKey that = (BoardToolpathsCacheKey) o;
+
+        if (angle != that.angle) return false;
+        if (!layerHash.equals(that.layerHash)) return false;
+        return parameters.equals(that.parameters);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int result = layerHash.hashCode();
+        result = 31 * result + angle;
+        result = 31 * result + parameters.hashCode();
+        return result;
+    }
+}
@@ -15,24 +15,108 @@ This program is free software: you can redistribute it and/or modify
 package org.cirqwizard.generation.toolpath;
 
 
-import java.io.Serializable;
+import org.cirqwizard.layers.PanelBoard;
+import org.cirqwizard.logging.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.function.Predicate;
+import java.util.logging.Level;
 
 
-public class ToolpathsCache implements Serializable
+/**
+ * Tool paths cache. When loaded from a file, tool paths are decoded only when requested.
+ * Keys are either {@link ToolpathsCacheKey} (whole panel) or {@link BoardToolpathsCacheKey} (single board).
+ * The cache may be saved by another thread, {@link ToolpathsPersistor} holds its monitor only while copying
+ * the state to be written and while updating it after the file is written.
+ */
+public class ToolpathsCache
 {
-    private HashMap<ToolpathsCacheKey, List<Toolpath>> traces = new HashMap<>();
+    private HashMap<Object, List<Toolpath>> toolpaths = new HashMap<>();
+
+    // State of the backing file, maintained by ToolpathsPersistor
+    final Object saveLock = new Object();
+    String filename;
+    ByteBuffer buffer;
+    HashMap<Object, ToolpathsPersistor.Section> sections = new HashMap<>();
+    HashSet<Object> modifiedKeys = new HashSet<>();
+    boolean directoryModified;
+
+    public synchronized List<Toolpath> getToolpaths(ToolpathsCacheKey cacheKey)
+    {
+        return get(cacheKey);
+    }
+
+    public synchronized void setToolpaths(ToolpathsCacheKey cacheKey, List<Toolpath> topLayer)
+    {
+        put(cacheKey, topLayer);
+    }
+
+    public synchronized List<Toolpath> getBoardToolpaths(BoardToolpathsCacheKey cacheKey)
+    {
+        return get(cacheKey);
+    }
+
+    public synchronized void setBoardToolpaths(BoardToolpathsCacheKey cacheKey, List<Toolpath> toolpaths)
+    {
+        put(cacheKey, toolpaths);
+    }
+
+    /**
+     * Drops tool paths of the whole panel, keeping tool paths of individual boards
+     */
+    public synchronized void clearPanelToolpaths()
+    {
+        toolpaths.keySet().removeIf(k -> k instanceof ToolpathsCacheKey);
+        modifiedKeys.removeIf(k -> k instanceof ToolpathsCacheKey);
+        if (sections.keySet().removeIf(k -> k instanceof ToolpathsCacheKey))
+            directoryModified = true;
+    }
+
+    /**
+     * Drops tool paths of boards which are not on the panel anymore or were changed since
+     */
+    public synchronized void retainBoardToolpaths(Collection<PanelBoard> boards)
+    {
+        Predicate<Object> stale = k -> k instanceof BoardToolpathsCacheKey &&
+                boards.stream().noneMatch(((BoardToolpathsCacheKey) k)::isOfBoard);
+        toolpaths.keySet().removeIf(stale);
+        modifiedKeys.removeIf(stale);
+        if (sections.keySet().removeIf(stale))
+            directoryModified = true;
+    }
+
+    private List<Toolpath> get(Object key)
+    {
+        List<Toolpath> result = toolpaths.get(key);
+        if (result == null && sections.containsKey(key))
+        {
+            try
+            {
+                result = ToolpathsPersistor.readSection(buffer, sections.get(key));
+                toolpaths.put(key, result);
+            }
+            catch (ToolpathPersistingException e)
+            {
+                LoggerFactory.getApplicationLogger().log(Level.INFO, e.getMessage(), e);
+                sections.remove(key);
+                directoryModified = true;
+            }
+        }
+        return result;
+    }
 
-    public List<Toolpath> getToolpaths(ToolpathsCacheKey cacheKey)
+    private void put(Object key, List<Toolpath> value)
     {
-        if (traces.containsKey(cacheKey))
-            return traces.get(cacheKey);
-        return null;
+        toolpaths.put(key, value);
+        modifiedKeys.add(key);
     }
 
-    public void setToolpaths(ToolpathsCacheKey cacheKey, List<Toolpath> topLayer)
+    HashMap<Object, List<Toolpath>> getDecodedToolpaths()
     {
-        this.traces.put(cacheKey, topLayer);
+        return toolpaths;
     }
-}
\ No newline at end of file
+}
@@ -15,6 +15,9 @@ This program is free software: you can redistribute it and/or modify
 package org.cirqwizard.generation.toolpath;
 
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 
 
@@ -27,23 +30,51 @@ public class ToolpathsCacheKey implements Serializable
     private int additionalPasses;
     private int additionalPassesOverlap;
     private boolean additionalPassesAroundPadsOnly;
+    private boolean analyticContours;
 
     // Rub out parameters
     private int rubOutInitialOffset;
     private int rubOutOverlap;
 
     public ToolpathsCacheKey(int layerId, int toolDiameter, int additionalPasses, int additionalPassesOverlap, boolean additionalPassesAroundPadsOnly,
-                             int rubOutInitialOffset, int rubOutOverlap)
+                             boolean analyticContours, int rubOutInitialOffset, int rubOutOverlap)
     {
         this.layerId = layerId;
         this.toolDiameter = toolDiameter;
         this.additionalPasses = additionalPasses;
         this.additionalPassesOverlap = additionalPassesOverlap;
         this.additionalPassesAroundPadsOnly = additionalPassesAroundPadsOnly;
+        this.analyticContours = analyticContours;
         this.rubOutInitialOffset = rubOutInitialOffset;
         this.rubOutOverlap = rubOutOverlap;
     }
 
+    public void write(DataOutput out) throws IOException
+    {
+        out.writeInt(layerId);
+        out.writeInt(toolDiameter);
+        out.writeInt(additionalPasses);
+        out.writeInt(additionalPassesOverlap);
+        out.writeBoolean(additionalPassesAroundPadsOnly);
+        out.writeBoolean(analyticContours);
+        out.writeInt(rubOutInitialOffset);
+        out.writeInt(rubOutOverlap);
+    }
+
+    public static ToolpathsCacheKey read(DataInput in) throws IOException
+    {
+        int layerId = in.readInt();
+        int toolDiameter = in.readInt();
+        int additionalPasses = in.readInt();
+        int additionalPassesOverlap = in.readInt();
+        boolean additionalPassesAroundPadsOnly = in.readBoolean();
+        boolean analyticContours = in.readBoolean();
+        int rubOutInitialOffset = in.readInt();
+        int rubOutOverlap = in.readInt();
+        return new ToolpathsCacheKey(layerId, toolDiameter, additionalPasses, additionalPassesOverlap, additionalPassesAroundPadsOnly,
+                analyticContours, rubOutInitialOffset, rubOutOverlap);
+    }
+
     @Override
     public boolean equals(Object o)
     {
@@ -55,6 +86,7 @@ public class ToolpathsCacheKey implements Serializable
         if (additionalPasses != that.additionalPasses) return false;
         if (additionalPassesAroundPadsOnly != that.additionalPassesAroundPadsOnly) return false;
         if (additionalPassesOverlap != that.additionalPassesOverlap) return false;
+        if (analyticContours != that.analyticContours) return false;
         if (layerId != that.layerId) return false;
         if (rubOutInitialOffset != that.rubOutInitialOffset) return false;
         if (rubOutOverlap != that.rubOutOverlap) return false;
@@ -71,6 +103,7 @@ public class ToolpathsCacheKey implements Serializable
         result = 31 * result + additionalPasses;
         result = 31 * result + additionalPassesOverlap;
         result = 31 * result + (additionalPassesAroundPadsOnly ? 1 : 0);
+        result = 31 * result + (analyticContours ? 1 : 0);
         result = 31 * result + rubOutInitialOffset;
         result = 31 * result + rubOutOverlap;
         return result;
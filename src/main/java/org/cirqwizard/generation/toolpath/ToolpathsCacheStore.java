@@ -0,0 +1,135 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cirqwizard.generation.toolpath;
+
+import org.cirqwizard.logging.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+
+/**
+ * Keeps the tool paths cache of the current cache file in memory. A cache file is read once, after that the in-memory
+ * cache is authoritative. Caches of other files are dropped as soon as they have no pending save.
+ * Saving is done in background: saves requested while a previous one is pending are coalesced.
+ */
+public class ToolpathsCacheStore
+{
+    private final HashMap<String, ToolpathsCache> caches = new HashMap<>();
+    private final LinkedHashMap<String, Runnable> pendingSaves = new LinkedHashMap<>();
+    private String currentFilename;
+    private Future<?> lastSave;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r ->
+    {
+        Thread t = new Thread(r, "Tool paths cache writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Returns cache for the file, reading it from disk if it is not in memory. The file becomes the current one
+     * @param filename cache file name
+     * @return cache, empty if the file does not exist or could not be read
+     */
+    public synchronized ToolpathsCache getCache(String filename)
+    {
+        currentFilename = filename;
+        caches.keySet().removeIf(f -> !f.equals(filename) && !pendingSaves.containsKey(f));
+        ToolpathsCache cache = caches.get(filename);
+        if (cache == null)
+        {
+            try
+            {
+                cache = ToolpathsPersistor.loadFromFile(filename);
+            }
+            catch (ToolpathPersistingException e)
+            {
+                LoggerFactory.getApplicationLogger().log(Level.INFO, e.getMessage(), e);
+            }
+            if (cache == null)
+                cache = new ToolpathsCache();
+            caches.put(filename, cache);
+        }
+        return cache;
+    }
+
+    /**
+     * Schedules saving of the cache to its file
+     * @param filename cache file name
+     * @param afterSave action to run on the writer thread after the cache is saved, may be null.
+     *                  If there is a pending save for this file already, its action is replaced by this one
+     */
+    public synchronized void save(String filename, Runnable afterSave)
+    {
+        boolean scheduled = pendingSaves.containsKey(filename);
+        pendingSaves.put(filename, afterSave);
+        if (!scheduled)
+            lastSave = writer.submit(() -> write(filename));
+    }
+
+    private void write(String filename)
+    {
+        ToolpathsCache cache;
+        Runnable afterSave;
+        synchronized (this)
+        {
+            cache = caches.get(filename);
+            afterSave = pendingSaves.remove(filename);
+        }
+        try
+        {
+            if (cache != null)
+                ToolpathsPersistor.saveToFile(cache, filename);
+        }
+        catch (ToolpathPersistingException e)
+        {
+            LoggerFactory.getApplicationLogger().log(Level.INFO, e.getMessage(), e);
+        }
+        if (afterSave != null)
+            afterSave.run();
+        synchronized (this)
+        {
+            if (!filename.equals(currentFilename) && !pendingSaves.containsKey(filename))
+                caches.remove(filename);
+        }
+    }
+
+    /**
+     * Waits until all the scheduled saves are written
+     */
+    public void flush()
+    {
+        Future<?> save;
+        synchronized (this)
+        {
+            save = lastSave;
+        }
+        if (save == null)
+            return;
+        try
+        {
+            save.get(1, TimeUnit.MINUTES);
+        }
+        catch (Exception e)
+        {
+            LoggerFactory.getApplicationLogger().log(Level.WARNING, "Could not save tool paths cache", e);
+        }
+    }
+}
@@ -15,46 +15,354 @@ This program is free software: you can redistribute it and/or modify
 package org.cirqwizard.generation.toolpath;
 
 
+import org.cirqwizard.geom.Arc;
+import org.cirqwizard.geom.Point;
+
 import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 
+/**
+ * Binary tool paths cache file. Layout:
+ * <pre>
+ * header:    int magic, int version, long directory offset
+ * sections:  int count, then for every tool path: byte type, byte flags, int tool diameter, int from x, y, to x, y
+ *            and for circular ones int center x, y, radius, byte clockwise
+ * directory: int count, then for every section: byte key type, key, long offset, int length
+ * </pre>
+ * The file is read into memory as it is and sections are decoded on demand. It is not memory mapped, as a mapped file
+ * can not be replaced on Windows until the mapping is garbage collected. Saving appends modified sections and a new
+ * directory, the file is rewritten only when more than a half of it is occupied by stale sections.
+ */
 public class ToolpathsPersistor
 {
+    private static final int MAGIC = 0x43515450;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int DIRECTORY_OFFSET_POSITION = 8;
+    private static final int COMPACTION_THRESHOLD = 64 * 1024;
+
+    private static final byte LINEAR_TOOLPATH = 0;
+    private static final byte CIRCULAR_TOOLPATH = 1;
+    private static final byte FLAG_ENABLED = 1;
+
+    private static final byte PANEL_KEY = 0;
+    private static final byte BOARD_KEY = 1;
+
+    static class Section
+    {
+        private long offset;
+        private int length;
+
+        Section(long offset, int length)
+        {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
     public static ToolpathsCache loadFromFile(String filename) throws ToolpathPersistingException
     {
         if(!new File(filename).exists())
             return null;
 
-        ToolpathsCache toolpathsCache;
         try
         {
-            FileInputStream fis = new FileInputStream(filename);
-            ObjectInputStream oin = new ObjectInputStream(fis);
-            toolpathsCache = (ToolpathsCache) oin.readObject();
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(Paths.get(filename)));
+            if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+                throw new ToolpathPersistingException("Unsupported tool paths cache format");
+            if (buffer.getInt(4) != VERSION)
+                throw new ToolpathPersistingException("Unsupported tool paths cache version: " + buffer.getInt(4));
+
+            ToolpathsCache cache = new ToolpathsCache();
+            cache.filename = filename;
+            cache.buffer = buffer;
+            long directoryOffset = buffer.getLong(DIRECTORY_OFFSET_POSITION);
+            byte[] directory = new byte[(int) (buffer.limit() - directoryOffset)];
+            ByteBuffer slice = buffer.duplicate();
+            slice.position((int) directoryOffset);
+            slice.get(directory);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(directory));
+            int count = in.readInt();
+            for (int i = 0; i < count; i++)
+            {
+                Object key = in.readByte() == BOARD_KEY ? BoardToolpathsCacheKey.read(in) : ToolpathsCacheKey.read(in);
+                long offset = in.readLong();
+                int length = in.readInt();
+                if (offset < HEADER_SIZE || offset + length > directoryOffset)
+                    throw new ToolpathPersistingException("Corrupted tool paths cache directory");
+                cache.sections.put(key, new Section(offset, length));
+            }
+            return cache;
         }
-        catch(IOException | ClassNotFoundException e)
+        catch (IOException | RuntimeException e)
         {
             throw new ToolpathPersistingException("Error loading toolpaths from file", e);
         }
-        return toolpathsCache;
     }
 
     public static void saveToFile(ToolpathsCache cache, String filename) throws ToolpathPersistingException
     {
-        if (cache != null)
+        if (cache == null)
+            return;
+        synchronized (cache.saveLock)
         {
             try
             {
-                FileOutputStream fos = new FileOutputStream(filename);
-                ObjectOutputStream oos = new ObjectOutputStream(fos);
-                oos.writeObject(cache);
-                oos.flush();
-                oos.close();
+                boolean sameFile;
+                synchronized (cache)
+                {
+                    sameFile = filename.equals(cache.filename);
+                }
+                if (sameFile && new File(filename).exists())
+                    append(cache, filename);
+                else
+                    rewrite(cache, filename);
             }
-            catch(IOException e)
+            catch (IOException e)
             {
                 throw new ToolpathPersistingException("Error saving toolpaths to file", e);
             }
         }
     }
+
+    private static void append(ToolpathsCache cache, String filename) throws IOException
+    {
+        LinkedHashMap<Object, ByteBuffer> modified = new LinkedHashMap<>();
+        HashMap<Object, Section> sections;
+        synchronized (cache)
+        {
+            if (cache.modifiedKeys.isEmpty() && !cache.directoryModified)
+                return;
+            for (Object key : cache.modifiedKeys)
+                modified.put(key, writeSection(cache.getDecodedToolpaths().get(key)));
+            sections = new HashMap<>(cache.sections);
+            cache.modifiedKeys.clear();
+            cache.directoryModified = false;
+        }
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            long position = channel.size();
+            for (Map.Entry<Object, ByteBuffer> entry : modified.entrySet())
+            {
+                sections.put(entry.getKey(), new Section(position, entry.getValue().limit()));
+                position += writeFully(channel, entry.getValue(), position);
+            }
+            long directoryOffset = position;
+            writeFully(channel, writeDirectory(sections), directoryOffset);
+            channel.force(false);
+
+            ByteBuffer header = ByteBuffer.allocate(8);
+            header.putLong(directoryOffset).flip();
+            writeFully(channel, header, DIRECTORY_OFFSET_POSITION);
+            channel.force(false);
+        }
+        catch (IOException e)
+        {
+            synchronized (cache)
+            {
+                for (Object key : modified.keySet())
+                    if (cache.getDecodedToolpaths().containsKey(key))
+                        cache.modifiedKeys.add(key);
+                cache.directoryModified = true;
+            }
+            throw e;
+        }
+
+        // Tool paths set or dropped while the file was written stay modified and are saved next time
+        long liveSize = HEADER_SIZE;
+        synchronized (cache)
+        {
+            for (Object key : modified.keySet())
+                if (cache.getDecodedToolpaths().containsKey(key))
+                    cache.sections.put(key, sections.get(key));
+            for (Section section : cache.sections.values())
+                liveSize += section.length;
+        }
+        if (new File(filename).length() > liveSize * 2 + COMPACTION_THRESHOLD)
+            rewrite(cache, filename);
+    }
+
+    private static void rewrite(ToolpathsCache cache, String filename) throws IOException
+    {
+        Path target = Paths.get(filename);
+        Path temporary = Paths.get(filename + ".new");
+
+        // The new file is assembled on the heap, and the cache keeps reading undecoded sections from that copy
+        ByteBuffer image;
+        synchronized (cache)
+        {
+            List<Object> keys = new ArrayList<>(cache.getDecodedToolpaths().keySet());
+            for (Object key : cache.sections.keySet())
+                if (!keys.contains(key))
+                    keys.add(key);
+            List<ByteBuffer> contents = new ArrayList<>();
+            HashMap<Object, Section> sections = new HashMap<>();
+            long position = HEADER_SIZE;
+            for (Object key : keys)
+            {
+                ByteBuffer section;
+                List<Toolpath> toolpaths = cache.getDecodedToolpaths().get(key);
+                if (toolpaths != null)
+                    section = writeSection(toolpaths);
+                else
+                {
+                    // Section was never decoded, its bytes are copied as they are
+                    Section s = cache.sections.get(key);
+                    section = ByteBuffer.allocate(s.length);
+                    ByteBuffer source = cache.buffer.duplicate();
+                    source.position((int) s.offset);
+                    source.limit((int) s.offset + s.length);
+                    section.put(source).flip();
+                }
+                sections.put(key, new Section(position, section.remaining()));
+                position += section.remaining();
+                contents.add(section);
+            }
+            ByteBuffer directory = writeDirectory(sections);
+            image = ByteBuffer.allocate((int) position + directory.remaining());
+            image.putInt(MAGIC).putInt(VERSION).putLong(position);
+            for (ByteBuffer section : contents)
+                image.put(section);
+            image.put(directory).flip();
+
+            // Until the file is replaced the cache is not tied to any file, so a failed move is followed by another
+            // rewrite rather than by an append to the old file
+            cache.buffer = image;
+            cache.sections = sections;
+            cache.filename = null;
+            cache.modifiedKeys.clear();
+            cache.directoryModified = false;
+        }
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE))
+        {
+            writeFully(channel, image.duplicate(), 0);
+            channel.force(false);
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        synchronized (cache)
+        {
+            cache.filename = filename;
+        }
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        int length = buffer.remaining();
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+        return length;
+    }
+
+    private static ByteBuffer writeDirectory(Map<Object, Section> sections) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(sections.size());
+        for (Map.Entry<Object, Section> entry : sections.entrySet())
+        {
+            if (entry.getKey() instanceof BoardToolpathsCacheKey)
+            {
+                out.writeByte(BOARD_KEY);
+                ((BoardToolpathsCacheKey) entry.getKey()).write(out);
+            }
+            else
+            {
+                out.writeByte(PANEL_KEY);
+                ((ToolpathsCacheKey) entry.getKey()).write(out);
+            }
+            out.writeLong(entry.getValue().offset);
+            out.writeInt(entry.getValue().length);
+        }
+        out.flush();
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    static ByteBuffer writeSection(List<Toolpath> toolpaths) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(4 + toolpaths.size() * 35);
+        buffer.putInt(toolpaths.size());
+        for (Toolpath toolpath : toolpaths)
+        {
+            if (toolpath instanceof CircularToolpath)
+                buffer.put(CIRCULAR_TOOLPATH);
+            else if (toolpath instanceof LinearToolpath)
+                buffer.put(LINEAR_TOOLPATH);
+            else
+                throw new IOException("Unsupported tool path type: " + toolpath.getClass().getName());
+            CuttingToolpath t = (CuttingToolpath) toolpath;
+            buffer.put(t.isEnabled() ? FLAG_ENABLED : 0);
+            buffer.putInt(t.getToolDiameter());
+            putPoint(buffer, t.getCurve().getFrom());
+            putPoint(buffer, t.getCurve().getTo());
+            if (t instanceof CircularToolpath)
+            {
+                Arc arc = (Arc) t.getCurve();
+                putPoint(buffer, arc.getCenter());
+                buffer.putInt(arc.getRadius());
+                buffer.put((byte) (arc.isClockwise() ? 1 : 0));
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void putPoint(ByteBuffer buffer, Point point)
+    {
+        buffer.putInt(point.getX());
+        buffer.putInt(point.getY());
+    }
+
+    static List<Toolpath> readSection(ByteBuffer source, Section section) throws ToolpathPersistingException
+    {
+        try
+        {
+            ByteBuffer buffer = source.duplicate();
+            buffer.position((int) section.offset);
+            buffer.limit((int) section.offset + section.length);
+            int count = buffer.getInt();
+            List<Toolpath> toolpaths = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+            {
+                byte type = buffer.get();
+                byte flags = buffer.get();
+                int toolDiameter = buffer.getInt();
+                Point from = new Point(buffer.getInt(), buffer.getInt());
+                Point to = new Point(buffer.getInt(), buffer.getInt());
+                CuttingToolpath toolpath;
+                if (type == CIRCULAR_TOOLPATH)
+                {
+                    Point center = new Point(buffer.getInt(), buffer.getInt());
+                    int radius = buffer.getInt();
+                    toolpath = new CircularToolpath(toolDiameter, from, to, center, radius, buffer.get() != 0);
+                }
+                else if (type == LINEAR_TOOLPATH)
+                    toolpath = new LinearToolpath(toolDiameter, from, to);
+                else
+                    throw new ToolpathPersistingException("Unexpected tool path type: " + type);
+                toolpath.setEnabled((flags & FLAG_ENABLED) != 0);
+                toolpaths.add(toolpath);
+            }
+            return toolpaths;
+        }
+        catch (BufferUnderflowException | IllegalArgumentException e)
+        {
+            throw new ToolpathPersistingException("Corrupted tool paths cache section", e);
+        }
+    }
 }
@@ -25,6 +25,20 @@ public class Line extends Curve
 
     }
 
+    @Override
+    public void setFrom(Point from)
+    {
+        super.setFrom(from);
+        angleToX = null;
+    }
+
+    @Override
+    public void setTo(Point to)
+    {
+        super.setTo(to);
+        angleToX = null;
+    }
+
     public Line reverse()
     {
         return new Line(to, from);
@@ -24,6 +24,7 @@ import org.cirqwizard.gerber.appertures.CircularAperture;
 
 import java.awt.*;
 import java.awt.geom.Arc2D;
+import java.awt.geom.Area;
 
 public class CircularShape extends InterpolatingShape
 {
@@ -125,6 +126,21 @@ public class CircularShape extends InterpolatingShape
                 Math.toDegrees(getArc().getAngle()) * (getArc().isClockwise() ? 1 : -1), Arc2D.OPEN));
     }
 
+    @Override
+    public Area getArea(double inflation)
+    {
+        int cap = getAperture() instanceof CircularAperture ? BasicStroke.CAP_ROUND : BasicStroke.CAP_SQUARE;
+        double width = Math.max(getAperture().getWidth() + inflation * 2, 0);
+        if (width == 0)
+            return new Area();
+        return new Area(new BasicStroke((float) width, cap, BasicStroke.JOIN_ROUND).createStrokedShape(
+                new Arc2D.Double(getArc().getCenter().getX() - getArc().getRadius(),
+                        getArc().getCenter().getY() - getArc().getRadius(),
+                        getArc().getRadius() * 2, getArc().getRadius() * 2,
+                        -Math.toDegrees(getArc().getStart()),
+                        Math.toDegrees(getArc().getAngle()) * (getArc().isClockwise() ? 1 : -1), Arc2D.OPEN)));
+    }
+
     @Override
     public void render(GraphicsContext g)
     {
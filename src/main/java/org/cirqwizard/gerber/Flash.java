@@ -80,20 +80,31 @@ public class Flash extends GerberPrimitive
 
     @Override
     public void render(Graphics2D g, double inflation)
+    {
+        g.fill(createShape(inflation));
+    }
+
+    @Override
+    public Area getArea(double inflation)
+    {
+        return new Area(createShape(inflation));
+    }
+
+    private Shape createShape(double inflation)
     {
         if (getAperture() instanceof CircularAperture)
         {
             double d = Math.max(((CircularAperture)getAperture()).getDiameter() + inflation * 2, 0);
             double r = d / 2;
-            g.fill(new Ellipse2D.Double(getX() - r, getY() - r, d, d));
+            return new Ellipse2D.Double(getX() - r, getY() - r, d, d);
         }
         else if (getAperture() instanceof RectangularAperture)
         {
             RectangularAperture aperture = (RectangularAperture)getAperture();
             double w = Math.max(aperture.getDimensions()[0] + inflation * 2, 0);
             double h = Math.max(aperture.getDimensions()[1] + inflation * 2, 0);
-            g.fill(new Rectangle2D.Double(getX() - aperture.getDimensions()[0] / 2 - inflation,
-                    getY() - aperture.getDimensions()[1] / 2 - inflation, w, h));
+            return new Rectangle2D.Double(getX() - aperture.getDimensions()[0] / 2 - inflation,
+                    getY() - aperture.getDimensions()[1] / 2 - inflation, w, h);
         }
         else if (getAperture() instanceof OctagonalAperture)
         {
@@ -111,30 +122,20 @@ public class Flash extends GerberPrimitive
             polygon.lineTo(-edgeOffset + flashX, -centerOffset + flashY);
             polygon.lineTo(edgeOffset + flashX, -centerOffset + flashY);
             polygon.lineTo(centerOffset + flashX, -edgeOffset + flashY);
-            g.fill(polygon);
+            polygon.closePath();
+            return polygon;
         }
         else if (getAperture() instanceof OvalAperture)
         {
             OvalAperture aperture = (OvalAperture)getAperture();
-            double flashX = getX();
-            double flashY = getY();
             double width = Math.max(aperture.getWidth() + inflation * 2, 0);
             double height = Math.max(aperture.getHeight() + inflation * 2, 0);
             double d = Math.min(width, height);
-            double l = aperture.isHorizontal() ? width - height : height - width;
-            double xOffset = aperture.isHorizontal() ? l / 2 : 0;
-            double yOffset = aperture.isHorizontal() ? 0 : l / 2;
-            double rectX = aperture.isHorizontal() ? flashX - l / 2 : flashX - width / 2;
-            double rectY = aperture.isHorizontal() ? flashY - height / 2 : flashY - l / 2;
-            double rectWidth =  aperture.isHorizontal() ? l : width;
-            double rectHeight =  aperture.isHorizontal() ? height : l;
-
-            g.fill(new Ellipse2D.Double(flashX - xOffset - d / 2, flashY + yOffset - d / 2, d, d));
-            g.fill(new Ellipse2D.Double(flashX + xOffset - d / 2, flashY - yOffset - d / 2, d, d));
-            g.fill(new Rectangle2D.Double(rectX, rectY, rectWidth, rectHeight));
+            return new RoundRectangle2D.Double(getX() - width / 2, getY() - height / 2, width, height, d, d);
         }
         else if (getAperture() instanceof ApertureMacro)
         {
+            Area area = new Area();
             ApertureMacro macro = (ApertureMacro) getAperture();
             for (MacroPrimitive p : macro.getPrimitives())
             {
@@ -143,16 +144,16 @@ public class Flash extends GerberPrimitive
                     MacroCenterLine centerLine = (MacroCenterLine) p;
                     org.cirqwizard.geom.Point from = centerLine.getFrom().add(getPoint());
                     org.cirqwizard.geom.Point to = centerLine.getTo().add(getPoint());
-                    g.setStroke(new BasicStroke(centerLine.getHeight(), BasicStroke.CAP_BUTT, BasicStroke.JOIN_BEVEL));
-                    g.draw(new Line2D.Float(from.getX(), from.getY(), to.getX(), to.getY()));
+                    area.add(new Area(new BasicStroke(centerLine.getHeight(), BasicStroke.CAP_BUTT, BasicStroke.JOIN_BEVEL).
+                            createStrokedShape(new Line2D.Float(from.getX(), from.getY(), to.getX(), to.getY()))));
                 }
                 else if (p instanceof MacroVectorLine)
                 {
                     MacroVectorLine vectorLine = (MacroVectorLine) p;
                     org.cirqwizard.geom.Point from = vectorLine.getTranslatedStart().add(getPoint());
                     org.cirqwizard.geom.Point to = vectorLine.getTranslatedEnd().add(getPoint());
-                    g.setStroke(new BasicStroke(vectorLine.getWidth(), BasicStroke.CAP_BUTT, BasicStroke.JOIN_BEVEL));
-                    g.draw(new Line2D.Float(from.getX(), from.getY(), to.getX(), to.getY()));
+                    area.add(new Area(new BasicStroke(vectorLine.getWidth(), BasicStroke.CAP_BUTT, BasicStroke.JOIN_BEVEL).
+                            createStrokedShape(new Line2D.Float(from.getX(), from.getY(), to.getX(), to.getY()))));
                 }
                 else if (p instanceof MacroCircle)
                 {
@@ -160,7 +161,7 @@ public class Flash extends GerberPrimitive
                     double d = circle.getDiameter();
                     double r = d / 2;
                     org.cirqwizard.geom.Point point = circle.getCenter().add(getPoint());
-                    g.fill(new Ellipse2D.Double(point.getX() - r, point.getY() - r, d, d));
+                    area.add(new Area(new Ellipse2D.Double(point.getX() - r, point.getY() - r, d, d)));
                 }
                 else if (p instanceof MacroOutline)
                 {
@@ -176,10 +177,13 @@ public class Flash extends GerberPrimitive
                         point = outline.getTranslatedPoints().get(i);
                         polygon.lineTo(point.getX()  + x, point.getY() + y);
                     }
-                    g.fill(polygon);
+                    polygon.closePath();
+                    area.add(new Area(polygon));
                 }
             }
+            return area;
         }
+        return new Area();
     }
 
     @Override
@@ -19,6 +19,7 @@ import org.cirqwizard.gerber.appertures.Aperture;
 import org.cirqwizard.layers.LayerElement;
 
 import java.awt.*;
+import java.awt.geom.Area;
 
 
 public abstract class GerberPrimitive implements LayerElement
@@ -46,6 +47,7 @@ public abstract class GerberPrimitive implements LayerElement
     public abstract Point getMin();
     public abstract Point getMax();
     public abstract void render(Graphics2D g, double inflation);
+    public abstract Area getArea(double inflation);
 
     @Override
     public Object clone() throws CloneNotSupportedException
@@ -22,6 +22,7 @@ import org.cirqwizard.geom.Point;
 import org.cirqwizard.gerber.appertures.CircularAperture;
 
 import java.awt.*;
+import java.awt.geom.Area;
 import java.awt.geom.Line2D;
 
 
@@ -96,6 +97,17 @@ public class LinearShape extends InterpolatingShape
 
     }
 
+    @Override
+    public Area getArea(double inflation)
+    {
+        int cap = getAperture() instanceof CircularAperture ? BasicStroke.CAP_ROUND : BasicStroke.CAP_SQUARE;
+        double width = Math.max(getAperture().getWidth() + inflation * 2, 0);
+        if (width == 0)
+            return new Area();
+        return new Area(new BasicStroke((float) width, cap, BasicStroke.JOIN_ROUND).createStrokedShape(
+                new Line2D.Double(getFrom().getX(), getFrom().getY(), getTo().getX(), getTo().getY())));
+    }
+
     @Override
     public void render(GraphicsContext g)
     {
@@ -21,6 +21,7 @@ import org.cirqwizard.geom.Point;
 
 import java.awt.*;
 import java.awt.geom.Arc2D;
+import java.awt.geom.Area;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.Line2D;
 import java.awt.geom.Path2D;
@@ -77,8 +78,7 @@ public class Region extends GerberPrimitive
         return new Point(maxX, maxY);
     }
 
-    @Override
-    public void render(Graphics2D g, double inflation)
+    private Path2D createPolygon()
     {
         Path2D polygon = new GeneralPath();
 
@@ -102,7 +102,31 @@ public class Region extends GerberPrimitive
                         true);
             }
         }
-        g.fill(polygon);
+        return polygon;
+    }
+
+    private Shape createSegmentShape(GerberPrimitive segment)
+    {
+        if (segment instanceof LinearShape)
+        {
+            LinearShape linearShape = (LinearShape) segment;
+            return new Line2D.Double(linearShape.getFrom().getX(), linearShape.getFrom().getY(),
+                    linearShape.getTo().getX(), linearShape.getTo().getY());
+        }
+        else if (segment instanceof CircularShape)
+        {
+            Arc arc = ((CircularShape) segment).getArc();
+            return new Arc2D.Double(arc.getCenter().getX() - arc.getRadius(), arc.getCenter().getY() - arc.getRadius(),
+                    arc.getRadius() * 2, arc.getRadius() * 2,
+                    -Math.toDegrees(arc.getStart()), Math.toDegrees(arc.getAngle()) * (arc.isClockwise() ? 1 : -1), Arc2D.OPEN);
+        }
+        return null;
+    }
+
+    @Override
+    public void render(Graphics2D g, double inflation)
+    {
+        g.fill(createPolygon());
 
         float width = (float) inflation * 2;
         if (width < 0)
@@ -113,21 +137,32 @@ public class Region extends GerberPrimitive
         g.setStroke(new BasicStroke(width, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER));
         for (GerberPrimitive segment : getSegments())
         {
-            if (segment instanceof LinearShape)
-            {
-                LinearShape linearShape = (LinearShape) segment;
-                g.draw(new Line2D.Double(linearShape.getFrom().getX(), linearShape.getFrom().getY(),
-                        linearShape.getTo().getX(), linearShape.getTo().getY()));
-            }
-            else if (segment instanceof CircularShape)
-            {
-                Arc arc = ((CircularShape) segment).getArc();
-                g.draw(new Arc2D.Double(arc.getCenter().getX() - arc.getRadius(), arc.getCenter().getY() - arc.getRadius(),
-                        arc.getRadius() * 2, arc.getRadius() * 2,
-                        -Math.toDegrees(arc.getStart()), Math.toDegrees(arc.getAngle()) * (arc.isClockwise() ? 1 : -1), Arc2D.OPEN));
-            }
+            Shape shape = createSegmentShape(segment);
+            if (shape != null)
+                g.draw(shape);
         }
+    }
+
+    @Override
+    public Area getArea(double inflation)
+    {
+        Area area = new Area(createPolygon());
+        if (inflation == 0)
+            return area;
 
+        BasicStroke stroke = new BasicStroke((float) Math.abs(inflation * 2), BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER);
+        Area outline = new Area();
+        for (GerberPrimitive segment : getSegments())
+        {
+            Shape shape = createSegmentShape(segment);
+            if (shape != null)
+                outline.add(new Area(stroke.createStrokedShape(shape)));
+        }
+        if (inflation > 0)
+            area.add(outline);
+        else
+            area.subtract(outline);
+        return area;
     }
 
     @Override
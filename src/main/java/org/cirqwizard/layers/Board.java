@@ -58,6 +58,20 @@ public class Board
         return height;
     }
 
+    public static String getLayerFileExtension(LayerType type)
+    {
+        switch (type)
+        {
+            case TOP: return ".cmp";
+            case BOTTOM: return ".sol";
+            case DRILLING: return ".drd";
+            case MILLING: return ".ncl";
+            case SOLDER_PASTE: return ".crc";
+            case PLACEMENT: return ".mnt";
+        }
+        return null;
+    }
+
     public void loadLayers(String filename) throws IOException
     {
         if (new File(filename + ".cmp").exists())
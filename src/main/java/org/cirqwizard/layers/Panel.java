@@ -24,8 +24,10 @@ import org.simpleframework.xml.Root;
 import org.simpleframework.xml.Transient;
 import org.simpleframework.xml.core.Persister;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -98,7 +100,7 @@ public class Panel
         });
     }
 
-    public void save(File file)
+    public synchronized void save(File file)
     {
         try
         {
@@ -110,6 +112,39 @@ public class Panel
         }
     }
 
+    /**
+     * Serializes the panel so that it can be written to a file later, from another thread
+     * @return panel XML or null if the panel could not be serialized
+     */
+    public synchronized byte[] serialize()
+    {
+        try
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new Persister().write(this, out);
+            return out.toByteArray();
+        }
+        catch (Exception e)
+        {
+            LoggerFactory.logException("Could not save panel file", e);
+            return null;
+        }
+    }
+
+    public static void save(byte[] xml, File file)
+    {
+        if (xml == null)
+            return;
+        try
+        {
+            Files.write(file.toPath(), xml);
+        }
+        catch (IOException e)
+        {
+            LoggerFactory.logException("Could not save panel file", e);
+        }
+    }
+
     public static Panel loadFromFile(File file)
     {
         try
@@ -20,7 +20,12 @@ import org.simpleframework.xml.Transient;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
+import java.util.HashMap;
 
 public class PanelBoard
 {
@@ -40,6 +45,8 @@ public class PanelBoard
     private Date bottomLayerTimestamp;
     @Transient
     private Board board;
+    @Transient
+    private HashMap<Board.LayerType, String> layerHashes = new HashMap<>();
 
     public PanelBoard()
     {
@@ -134,6 +141,32 @@ public class PanelBoard
         return validateTimestamp(bottomLayerTimestamp, new File(filename + ".sol"));
     }
 
+    /**
+     * Returns hash of the file layer was loaded from
+     * @return SHA-1 hash or null if the layer was not loaded from a file
+     */
+    public String getLayerHash(Board.LayerType layerType)
+    {
+        return layerHashes.get(layerType);
+    }
+
+    private String calculateLayerHash(Board.LayerType layerType)
+    {
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(Files.readAllBytes(Paths.get(filename + Board.getLayerFileExtension(layerType))));
+            StringBuilder str = new StringBuilder();
+            for (byte b : hash)
+                str.append(String.format("%02x", b));
+            return str.toString();
+        }
+        catch (IOException | NoSuchAlgorithmException e)
+        {
+            return null;
+        }
+    }
+
     public void rotate(boolean clockwise)
     {
         if (generateOutline)
@@ -168,6 +201,12 @@ public class PanelBoard
     {
         board = new Board();
         board.loadLayers(filename);
+        layerHashes.clear();
+        for (Board.LayerType layerType : Board.LayerType.values())
+        {
+            if (board.getLayer(layerType) != null)
+                layerHashes.put(layerType, calculateLayerHash(layerType));
+        }
         if (!board.hasLayers())
             return;
         int rotations = angle / 90;
@@ -0,0 +1,88 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cirqwizard.logging;
+
+
+/**
+ * Histogram with power of two buckets, starting from 64 microseconds
+ */
+public class LatencyHistogram
+{
+    private static final int FIRST_BUCKET_SHIFT = 6;
+    private static final int BUCKETS_COUNT = 16;
+
+    private String name;
+    private long[] buckets = new long[BUCKETS_COUNT];
+    private long count;
+    private long total;
+    private long max;
+
+    public LatencyHistogram(String name)
+    {
+        this.name = name;
+    }
+
+    public void record(long nanos)
+    {
+        long micros = Math.max(nanos / 1000, 0);
+        int bucket = 64 - Long.numberOfLeadingZeros(micros >> FIRST_BUCKET_SHIFT);
+        buckets[Math.min(bucket, BUCKETS_COUNT - 1)]++;
+        count++;
+        total += micros;
+        max = Math.max(max, micros);
+    }
+
+    public long getCount()
+    {
+        return count;
+    }
+
+    public void reset()
+    {
+        buckets = new long[BUCKETS_COUNT];
+        count = 0;
+        total = 0;
+        max = 0;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder str = new StringBuilder();
+        str.append(name).append(": ").append(count).append(" samples");
+        if (count == 0)
+            return str.toString();
+        str.append(", mean ").append(formatMicros(total / count)).append(", max ").append(formatMicros(max));
+        for (int i = 0; i < BUCKETS_COUNT; i++)
+        {
+            if (buckets[i] == 0)
+                continue;
+            str.append("\n  ");
+            if (i == BUCKETS_COUNT - 1)
+                str.append(">= ").append(formatMicros(1L << (FIRST_BUCKET_SHIFT + i - 1)));
+            else
+                str.append("< ").append(formatMicros(1L << (FIRST_BUCKET_SHIFT + i)));
+            str.append(": ").append(buckets[i]);
+        }
+        return str.toString();
+    }
+
+    private static String formatMicros(long micros)
+    {
+        if (micros < 1000)
+            return micros + " us";
+        return String.format("%.1f ms", micros / 1000.0);
+    }
+}
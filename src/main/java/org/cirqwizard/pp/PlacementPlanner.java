@@ -0,0 +1,152 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.cirqwizard.pp;
+
+import org.cirqwizard.generation.optimizer.TimeEstimator;
+import org.cirqwizard.generation.toolpath.PPPoint;
+import org.cirqwizard.geom.Point;
+import org.cirqwizard.settings.ApplicationConstants;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sequences placement of components picked from one feeder row.
+ * Pickup location advances by the pitch with every component, so the n-th component placed is the one whose target
+ * is cheapest to reach from the n-th pickup and to return from to the next one.
+ * Head is rotated at the rotation feed once it arrives, so a move takes as long as travel and rotation together.
+ */
+public class PlacementPlanner
+{
+    private static final double PICKUP_PAUSE = 0.5;
+    private static final double PLACEMENT_PAUSE = 0.1;
+    private static final int MAX_PASSES = 50;
+
+    private List<PPPoint> components;
+    private Point pickup;
+    private int pitch;
+    private int angleOffset;
+    private double rotationSpeed;
+    private double pickupDuration;
+    private double placementDuration;
+
+    /**
+     * @param pickup location of the first pickup, in the same coordinates as components
+     * @param angleOffset difference between head angle and component angle
+     */
+    public PlacementPlanner(List<PPPoint> components, Point pickup, int pitch, int angleOffset, int rotationFeed,
+                            int pickupHeight, int moveHeight)
+    {
+        this.components = components;
+        this.pickup = pickup;
+        this.pitch = pitch;
+        this.angleOffset = angleOffset;
+        // Head angle is sent divided by 100, feed is per minute
+        rotationSpeed = (double) rotationFeed * 100 / 60;
+        pickupDuration = TimeEstimator.calculateZRapidDuration(moveHeight - pickupHeight) * 2 + PICKUP_PAUSE;
+        placementDuration = TimeEstimator.calculateZRapidDuration(moveHeight - pickupHeight + 3 * ApplicationConstants.RESOLUTION) * 2 +
+                PLACEMENT_PAUSE;
+    }
+
+    public List<PPPoint> plan()
+    {
+        int n = components.size();
+        int[] slots = new int[n];
+        boolean[] assigned = new boolean[n];
+        for (int i = 0; i < n; i++)
+        {
+            int best = -1;
+            double bestDuration = Double.MAX_VALUE;
+            for (int c = 0; c < n; c++)
+            {
+                if (assigned[c])
+                    continue;
+                double duration = getSlotDuration(i, c);
+                if (duration < bestDuration)
+                {
+                    best = c;
+                    bestDuration = duration;
+                }
+            }
+            slots[i] = best;
+            assigned[best] = true;
+        }
+
+        boolean improved = true;
+        for (int pass = 0; pass < MAX_PASSES && improved; pass++)
+        {
+            improved = false;
+            for (int i = 0; i < n; i++)
+            {
+                for (int j = i + 1; j < n; j++)
+                {
+                    double delta = getSlotDuration(i, slots[j]) + getSlotDuration(j, slots[i]) -
+                            getSlotDuration(i, slots[i]) - getSlotDuration(j, slots[j]);
+                    if (delta < -1e-9)
+                    {
+                        int c = slots[i];
+                        slots[i] = slots[j];
+                        slots[j] = c;
+                        improved = true;
+                    }
+                }
+            }
+        }
+
+        List<PPPoint> sequence = new ArrayList<>(n);
+        for (int c : slots)
+            sequence.add(components.get(c));
+        return sequence;
+    }
+
+    /**
+     * @return estimated time to pick and place components in the given order, in seconds
+     */
+    public double estimateDuration(List<PPPoint> sequence)
+    {
+        double duration = 0;
+        for (int i = 0; i < sequence.size(); i++)
+        {
+            PPPoint p = sequence.get(i);
+            duration += getMoveDuration(getPickup(i), 0, p.getPoint(), getHeadAngle(p));
+            if (i < sequence.size() - 1)
+                duration += getMoveDuration(p.getPoint(), getHeadAngle(p), getPickup(i + 1), 0);
+        }
+        return duration + (pickupDuration + placementDuration) * sequence.size();
+    }
+
+    private double getSlotDuration(int slot, int component)
+    {
+        PPPoint p = components.get(component);
+        double duration = getMoveDuration(getPickup(slot), 0, p.getPoint(), getHeadAngle(p));
+        if (slot < components.size() - 1)
+            duration += getMoveDuration(p.getPoint(), getHeadAngle(p), getPickup(slot + 1), 0);
+        return duration;
+    }
+
+    private double getMoveDuration(Point from, int fromAngle, Point to, int toAngle)
+    {
+        return TimeEstimator.calculateRapidDuration(from, to) + Math.abs(toAngle - fromAngle) / rotationSpeed;
+    }
+
+    private Point getPickup(int slot)
+    {
+        return new Point(pickup.getX() + pitch * slot, pickup.getY());
+    }
+
+    private int getHeadAngle(PPPoint p)
+    {
+        return p.getAngle() + angleOffset;
+    }
+}
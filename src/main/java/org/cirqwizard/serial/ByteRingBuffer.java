@@ -0,0 +1,68 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cirqwizard.serial;
+
+
+/**
+ * Lock-free byte queue for exactly one producer thread and one consumer thread.
+ */
+public class ByteRingBuffer
+{
+    private byte[] buffer;
+    private int mask;
+    private volatile long head;     // Next position to be written, only modified by producer
+    private volatile long tail;     // Next position to be read, only modified by consumer
+
+    /**
+     *
+     * @param capacity buffer capacity, rounded up to the power of two
+     */
+    public ByteRingBuffer(int capacity)
+    {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        buffer = new byte[size];
+        mask = size - 1;
+    }
+
+    public int write(byte[] data, int offset, int length)
+    {
+        long h = head;
+        int count = (int) Math.min(length, buffer.length - (h - tail));
+        for (int i = 0; i < count; i++)
+            buffer[(int) (h + i) & mask] = data[offset + i];
+        head = h + count;
+        return count;
+    }
+
+    public int read()
+    {
+        long t = tail;
+        if (t == head)
+            return -1;
+        int b = buffer[(int) t & mask] & 0xFF;
+        tail = t + 1;
+        return b;
+    }
+
+    public boolean isEmpty()
+    {
+        return tail == head;
+    }
+
+    public void clear()
+    {
+        tail = head;
+    }
+}
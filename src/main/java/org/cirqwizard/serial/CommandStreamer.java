@@ -0,0 +1,160 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cirqwizard.serial;
+
+import org.cirqwizard.logging.LatencyHistogram;
+import org.cirqwizard.logging.LoggerFactory;
+
+import java.util.ArrayDeque;
+
+
+/**
+ * Keeps as many commands in flight as fit into controller's receive buffer.
+ * Acknowledgements come in order, so each one is matched to the oldest pending command.
+ */
+public class CommandStreamer
+{
+    private static final int LATENCY_LOGGING_INTERVAL = 1000;
+
+    public interface Channel
+    {
+        public void writeLine(String line) throws SerialException;
+        // Returns next complete line received from the controller or null if nothing arrived within timeout
+        public String readLine(long timeout) throws SerialException, InterruptedException;
+    }
+
+    private Channel channel;
+    private ArrayDeque<PendingCommand> pendingCommands = new ArrayDeque<>();
+    private int bufferedCharacters;
+    private LatencyHistogram latencies = new LatencyHistogram("Command latency");
+
+    public CommandStreamer(Channel channel)
+    {
+        this.channel = channel;
+    }
+
+    public boolean isIdle()
+    {
+        return pendingCommands.isEmpty();
+    }
+
+    public void reset()
+    {
+        pendingCommands.clear();
+        bufferedCharacters = 0;
+    }
+
+    public void stream(String command, int bufferSize, long timeout, StringBuilder response, boolean suppressExceptions)
+            throws SerialException, ExecutionException, InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + timeout;
+        int length = command.length() + 1;
+        // A failed response of an earlier command is reported only after this one is sent,
+        // so that the caller never has to guess whether the current line reached the controller
+        Exception deferredError = null;
+        while (!pendingCommands.isEmpty() && bufferedCharacters + length > bufferSize)
+        {
+            String line = receiveLine(deadline);
+            try
+            {
+                processResponse(line);
+            }
+            catch (SerialException | ExecutionException e)
+            {
+                if (deferredError == null)
+                    deferredError = e;
+            }
+        }
+
+        channel.writeLine(command);
+        LoggerFactory.getSerialLogger().fine(command + "\n");
+        pendingCommands.add(new PendingCommand(length, System.nanoTime(), response, suppressExceptions));
+        bufferedCharacters += length;
+
+        if (deferredError instanceof SerialException)
+            throw (SerialException) deferredError;
+        if (deferredError instanceof ExecutionException)
+            throw (ExecutionException) deferredError;
+    }
+
+    public void flush(long timeout) throws SerialException, ExecutionException, InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (!pendingCommands.isEmpty())
+            processResponse(receiveLine(deadline));
+    }
+
+    private String receiveLine(long deadline) throws SerialException, InterruptedException
+    {
+        long remaining = deadline - System.currentTimeMillis();
+        String line = remaining > 0 ? channel.readLine(remaining) : null;
+        if (line == null)
+        {
+            reset();
+            throw new SerialException("Timeout.");
+        }
+        return line;
+    }
+
+    private void processResponse(String line) throws SerialException, ExecutionException
+    {
+        PendingCommand command = pendingCommands.poll();
+        bufferedCharacters -= command.length;
+        latencies.record(System.nanoTime() - command.sentTime);
+        if (latencies.getCount() >= LATENCY_LOGGING_INTERVAL)
+            logLatencies();
+        line += "\n";
+        if (command.response != null)
+            command.response.append(line);
+        LoggerFactory.getSerialLogger().fine(line);
+        checkResponse(line, command.suppressExceptions);
+    }
+
+    public void logLatencies()
+    {
+        if (latencies.getCount() == 0)
+            return;
+        LoggerFactory.getSerialLogger().info(latencies.toString());
+        latencies.reset();
+    }
+
+    public static void checkResponse(String str, boolean suppressExceptions) throws SerialException, ExecutionException
+    {
+        if (str.startsWith("ok"))
+            return;
+        if (str.startsWith("nack") && !suppressExceptions)
+            throw new SerialException("Negative acknowledgement received: " + str);
+        if (str.startsWith("error") && !suppressExceptions)
+            throw new ExecutionException("Execution error received from controller: " + str);
+        if (!suppressExceptions)
+            throw new SerialException("Unexpected confirmation received from controller: " + str);
+    }
+
+    private static class PendingCommand
+    {
+        private int length;
+        private long sentTime;
+        private StringBuilder response;
+        private boolean suppressExceptions;
+
+        public PendingCommand(int length, long sentTime, StringBuilder response, boolean suppressExceptions)
+        {
+            this.length = length;
+            this.sentTime = sentTime;
+            this.response = response;
+            this.suppressExceptions = suppressExceptions;
+        }
+    }
+}
@@ -28,5 +28,8 @@ public interface SerialInterface
     public void close() throws SerialException;
     public void send(String str, long timeout) throws SerialException, ExecutionException, InterruptedException;
     public void send(String str, long timeout, StringBuilder response, boolean suppressExceptions) throws SerialException, ExecutionException, InterruptedException;
+    public void stream(String str, int bufferSize, long timeout, StringBuilder response, boolean suppressExceptions) throws SerialException, ExecutionException, InterruptedException;
+    public void flush(long timeout) throws SerialException, ExecutionException, InterruptedException;
+    public void resetStreaming();
     public String getPortName();
 }
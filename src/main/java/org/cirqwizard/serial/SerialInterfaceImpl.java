@@ -17,18 +17,22 @@ package org.cirqwizard.serial;
 
 import jssc.SerialPort;
 import jssc.SerialPortException;
-import jssc.SerialPortTimeoutException;
 import org.cirqwizard.logging.LoggerFactory;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
 
 
-public class SerialInterfaceImpl implements SerialInterface
+public class SerialInterfaceImpl implements SerialInterface, CommandStreamer.Channel
 {
     private SerialPort port;
     private int baudrate;
     private String portName;
     private int timeout = -1;
+    private SerialReader reader;
+    private CommandStreamer streamer = new CommandStreamer(this);
+    private List<DataReceivedListener> listeners = new ArrayList<>();
 
     public SerialInterfaceImpl(String commPortName, int baudrate) throws SerialException
     {
@@ -52,6 +56,21 @@ public class SerialInterfaceImpl implements SerialInterface
         port = new SerialPort(portName);
         port.openPort();
         port.setParams(baudrate, SerialPort.DATABITS_8, SerialPort.STOPBITS_1, parity);
+        reader = new SerialReader(port);
+        listeners.forEach(reader::addDataReceivedListener);
+        port.addEventListener(reader, SerialPort.MASK_RXCHAR);
+    }
+
+    public void addDataReceivedListener(DataReceivedListener listener)
+    {
+        listeners.add(listener);
+        reader.addDataReceivedListener(listener);
+    }
+
+    public void removeDataReceivedListener(DataReceivedListener listener)
+    {
+        listeners.remove(listener);
+        reader.removeDataReceivedListener(listener);
     }
 
     public void setBootloaderMode(boolean bootloader) throws SerialException
@@ -94,16 +113,14 @@ public class SerialInterfaceImpl implements SerialInterface
 
     public int readByte() throws IOException
     {
-        byte[] b;
         try
         {
-            if (timeout > 0)
-                b = port.readBytes(1, timeout);
-            else
-                b = port.readBytes(1);
-            return b[0];
+            int b = reader.read(timeout);
+            if (b < 0)
+                throw new IOException("Timeout.");
+            return b;
         }
-        catch (SerialPortException | SerialPortTimeoutException e)
+        catch (InterruptedException e)
         {
             throw new IOException(e);
         }
@@ -111,6 +128,7 @@ public class SerialInterfaceImpl implements SerialInterface
 
     public void close() throws SerialException
     {
+        streamer.logLatencies();
         try
         {
             port.closePort();
@@ -123,48 +141,11 @@ public class SerialInterfaceImpl implements SerialInterface
 
     private void sendCommand(String command, long timeout, StringBuilder response, boolean suppressExceptions) throws SerialException, ExecutionException, InterruptedException
     {
-        timeout += System.currentTimeMillis();
-
-        try
-        {
-            port.readBytes();
-            port.writeString(command);
-            port.writeString("\n");
-            LoggerFactory.getSerialLogger().fine(command + "\n");
-
-            StringBuffer buffer = new StringBuffer();
-            while (System.currentTimeMillis() < timeout)
-            {
-                String s = port.readString();
-                if (s == null)
-                {
-                    Thread.sleep(10);
-                    continue;
-                }
-                buffer.append(s);
-                String str = buffer.toString();
-                if (str.indexOf('\n') >= 0)
-                {
-                    if (response != null)
-                        response.append(str);
-                    LoggerFactory.getSerialLogger().fine(str);
-                    if (str.startsWith("ok"))
-                        return;
-                    if (str.startsWith("nack") && !suppressExceptions)
-                        throw new SerialException("Negative acknowledgement received: " + str);
-                    if (str.startsWith("error") && !suppressExceptions)
-                        throw new ExecutionException("Execution error received from controller: " + str);
-                    if (!suppressExceptions)
-                        throw new SerialException("Unexpected confirmation received from controller: " + str);
-                    return;
-                }
-            }
-        }
-        catch (SerialPortException e)
-        {
-            throw new SerialException(e);
-        }
-        throw new SerialException("Timeout.");
+        long deadline = System.currentTimeMillis() + timeout;
+        reader.clear();
+        streamer.reset();
+        streamer.stream(command, 0, timeout, response, suppressExceptions);
+        streamer.flush(Math.max(deadline - System.currentTimeMillis(), 0));
     }
 
     public void send(String str, long timeout) throws SerialException, ExecutionException, InterruptedException
@@ -176,9 +157,9 @@ public class SerialInterfaceImpl implements SerialInterface
     {
         try
         {
-            LineNumberReader reader = new LineNumberReader(new StringReader(str));
+            LineNumberReader lineReader = new LineNumberReader(new StringReader(str));
             String line;
-            while ((line = reader.readLine()) != null)
+            while ((line = lineReader.readLine()) != null)
             {
                 try
                 {
@@ -199,6 +180,46 @@ public class SerialInterfaceImpl implements SerialInterface
 
     }
 
+    @Override
+    public void stream(String str, int bufferSize, long timeout, StringBuilder response, boolean suppressExceptions) throws SerialException, ExecutionException, InterruptedException
+    {
+        if (streamer.isIdle())
+            reader.clear();
+        streamer.stream(str, bufferSize, timeout, response, suppressExceptions);
+    }
+
+    @Override
+    public void flush(long timeout) throws SerialException, ExecutionException, InterruptedException
+    {
+        streamer.flush(timeout);
+    }
+
+    @Override
+    public void resetStreaming()
+    {
+        streamer.reset();
+        reader.clear();
+    }
+
+    @Override
+    public void writeLine(String line) throws SerialException
+    {
+        try
+        {
+            port.writeString(line + "\n");
+        }
+        catch (SerialPortException e)
+        {
+            throw new SerialException(e);
+        }
+    }
+
+    @Override
+    public String readLine(long timeout) throws SerialException, InterruptedException
+    {
+        return reader.readLine(timeout);
+    }
+
     public String getPortName()
     {
         return portName;
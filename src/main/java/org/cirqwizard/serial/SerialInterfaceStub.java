@@ -68,6 +68,22 @@ public class SerialInterfaceStub implements SerialInterface
         }
     }
 
+    @Override
+    public void stream(String str, int bufferSize, long timeout, StringBuilder response, boolean suppressExceptions) throws SerialException, ExecutionException, InterruptedException
+    {
+        send(str, timeout, response, suppressExceptions);
+    }
+
+    @Override
+    public void flush(long timeout) throws SerialException, ExecutionException, InterruptedException
+    {
+    }
+
+    @Override
+    public void resetStreaming()
+    {
+    }
+
     @Override
     public String getPortName()
     {
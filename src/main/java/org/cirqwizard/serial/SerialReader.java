@@ -0,0 +1,163 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cirqwizard.serial;
+
+import jssc.SerialPort;
+import jssc.SerialPortEvent;
+import jssc.SerialPortEventListener;
+import jssc.SerialPortException;
+import org.cirqwizard.logging.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * Receives data on serial port event thread and hands it over to a single reading thread through a ring buffer.
+ * Reading thread is parked while there is no data, so responses are delivered as soon as they come off the wire.
+ */
+public class SerialReader implements SerialPortEventListener
+{
+    private static final int BUFFER_SIZE = 65536;
+
+    private SerialPort port;
+    private ByteRingBuffer buffer = new ByteRingBuffer(BUFFER_SIZE);
+    private volatile Thread waiter;
+    private StringBuilder line = new StringBuilder();
+    private List<DataReceivedListener> listeners = new CopyOnWriteArrayList<>();
+
+    public SerialReader(SerialPort port)
+    {
+        this.port = port;
+    }
+
+    public void addDataReceivedListener(DataReceivedListener listener)
+    {
+        listeners.add(listener);
+    }
+
+    public void removeDataReceivedListener(DataReceivedListener listener)
+    {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void serialEvent(SerialPortEvent event)
+    {
+        if (!event.isRXCHAR() || event.getEventValue() <= 0)
+            return;
+
+        try
+        {
+            byte[] data = port.readBytes(event.getEventValue());
+            if (data == null)
+                return;
+            int written = buffer.write(data, 0, data.length);
+            Thread w = waiter;
+            if (w != null)
+                LockSupport.unpark(w);
+            if (written < data.length)
+                LoggerFactory.getSerialLogger().warning("Receive buffer overflow, " + (data.length - written) + " bytes dropped");
+
+            if (!listeners.isEmpty())
+            {
+                String str = new String(data, StandardCharsets.ISO_8859_1);
+                for (DataReceivedListener listener : listeners)
+                    listener.dataReceived(str);
+            }
+        }
+        catch (SerialPortException e)
+        {
+            LoggerFactory.logException("Error reading from serial port", e);
+        }
+    }
+
+    /**
+     *
+     * @param timeout timeout in milliseconds, negative value means waiting forever
+     * @return next received byte or -1 if nothing was received within timeout
+     */
+    public int read(long timeout) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        int b;
+        while ((b = buffer.read()) < 0)
+        {
+            if (!await(deadline, timeout < 0))
+                return -1;
+        }
+        return b;
+    }
+
+    /**
+     *
+     * @param timeout timeout in milliseconds
+     * @return next received line without line terminator or null if no complete line was received within timeout
+     */
+    public String readLine(long timeout) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        while (true)
+        {
+            int b;
+            while ((b = buffer.read()) >= 0)
+            {
+                if (b == '\n')
+                {
+                    String str = line.toString();
+                    line.setLength(0);
+                    return str;
+                }
+                line.append((char) b);
+            }
+            if (!await(deadline, false))
+                return null;
+        }
+    }
+
+    public void clear()
+    {
+        buffer.clear();
+        line.setLength(0);
+    }
+
+    private boolean await(long deadline, boolean forever) throws InterruptedException
+    {
+        long nanos = deadline - System.nanoTime();
+        if (!forever && nanos <= 0)
+            return false;
+        waiter = Thread.currentThread();
+        try
+        {
+            if (buffer.isEmpty())
+            {
+                if (forever)
+                    LockSupport.park(this);
+                else
+                    LockSupport.parkNanos(this, nanos);
+            }
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            return true;
+        }
+        finally
+        {
+            waiter = null;
+        }
+    }
+}
@@ -28,6 +28,9 @@ public class ApplicationSettings extends SettingsGroup
     @PersistentPreference
     private UserPreference<Integer> processingThreads = new UserPreference<>("Processing threads", Runtime.getRuntime().availableProcessors(), "", PreferenceType.INTEGER);
 
+    @PersistentPreference
+    private UserPreference<Integer> controllerBufferSize = new UserPreference<>("Controller receive buffer (0 - no streaming)", 0, "bytes", PreferenceType.INTEGER);
+
     @Override
     public String getName()
     {
@@ -69,4 +72,14 @@ public class ApplicationSettings extends SettingsGroup
     {
         this.processingThreads = processingThreads;
     }
+
+    public UserPreference<Integer> getControllerBufferSize()
+    {
+        return controllerBufferSize;
+    }
+
+    public void setControllerBufferSize(UserPreference<Integer> controllerBufferSize)
+    {
+        this.controllerBufferSize = controllerBufferSize;
+    }
 }
@@ -24,6 +24,10 @@ public class DrillingSettings extends SettingsGroup
     @PreferenceGroup(name = "Tool")
     private UserPreference<Integer> speed = new UserPreference<>("Speed", 1390, "µs", PreferenceType.INTEGER);
 
+    @PersistentPreference
+    @PreferenceGroup(name = "Tool")
+    private UserPreference<Integer> diameterTolerance = new UserPreference<>("Diameter tolerance", 0, "mm");
+
     @PersistentPreference
     @PreferenceGroup(name = "Heights")
     private UserPreference<Integer> clearance = new UserPreference<>("Clearance", 5_000, "mm");
@@ -72,6 +76,16 @@ public class DrillingSettings extends SettingsGroup
         this.speed = speed;
     }
 
+    public UserPreference<Integer> getDiameterTolerance()
+    {
+        return diameterTolerance;
+    }
+
+    public void setDiameterTolerance(UserPreference<Integer> diameterTolerance)
+    {
+        this.diameterTolerance = diameterTolerance;
+    }
+
     public UserPreference<Integer> getClearance()
     {
         return clearance;
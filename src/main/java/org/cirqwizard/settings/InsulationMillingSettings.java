@@ -31,6 +31,11 @@ public class InsulationMillingSettings extends SettingsGroup
     @PersistentPreference
     @PreferenceGroup(name = "Heights")
     private UserPreference<Integer> workingHeight = new UserPreference<>("Working height", -50, "mm");
+
+    @PersistentPreference
+    @PreferenceGroup(name = "Generation")
+    private UserPreference<Boolean> analyticContours = new UserPreference<>("Analytic contours", false, "");
+
     @Override
     public String getName()
     {
@@ -82,4 +87,14 @@ public class InsulationMillingSettings extends SettingsGroup
     {
         this.toolTable = toolTable;
     }
+
+    public UserPreference<Boolean> getAnalyticContours()
+    {
+        return analyticContours;
+    }
+
+    public void setAnalyticContours(UserPreference<Boolean> analyticContours)
+    {
+        this.analyticContours = analyticContours;
+    }
 }
@@ -0,0 +1,51 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package org.cirqwizard.generation.optimizer;
+
+import javafx.beans.property.SimpleBooleanProperty;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.cirqwizard.test.generation.OptimizerTest.createChains;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Lives in the optimizer's package since optimize() reports progress through Platform.runLater
+public class OptimizerIslandsTest
+{
+    @Test
+    public void testBestSolutionImproves()
+    {
+        List<Chain> chains = createChains(500, 7);
+        Environment environment = new Environment(chains);
+        Optimizer optimizer = new Optimizer(chains, 1, 1, 1, 1, 1, 0, new SimpleBooleanProperty());
+        optimizer.breed(0);
+        double previous = environment.calculateFitness(optimizer.getBestSolution().getGenes());
+        for (int i = 1; i <= 300; i++)
+        {
+            optimizer.breed(i);
+            double fitness = environment.calculateFitness(optimizer.getBestSolution().getGenes());
+            assertTrue(fitness <= previous);
+            previous = fitness;
+        }
+        int[] genes = optimizer.getBestSolution().getGenes().clone();
+        Arrays.sort(genes);
+        for (int i = 0; i < genes.length; i++)
+            assertEquals(i, genes[i]);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cirqwizard.test.generation;
+
+import javafx.beans.property.SimpleBooleanProperty;
+import org.cirqwizard.generation.AnalyticToolpathGenerator;
+import org.cirqwizard.generation.ToolpathGenerator;
+import org.cirqwizard.generation.toolpath.CuttingToolpath;
+import org.cirqwizard.generation.toolpath.Toolpath;
+import org.cirqwizard.geom.Point;
+import org.cirqwizard.gerber.GerberPrimitive;
+import org.cirqwizard.gerber.LinearShape;
+import org.cirqwizard.gerber.appertures.CircularAperture;
+import org.cirqwizard.test.gerber.GerberSamples;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AnalyticToolpathGeneratorTest
+{
+    private static final int TOOL_DIAMETER = 300;
+
+    private void compareEngines(String gerber) throws Exception
+    {
+        ToolpathGeneratorTest.Panel panel = ToolpathGeneratorTest.createPanel(gerber);
+
+        ToolpathGenerator rasterGenerator = new ToolpathGenerator()
+        {
+            @Override
+            protected void setProgress(double progress) {}
+        };
+        rasterGenerator.init(panel.width, panel.height, TOOL_DIAMETER / 2, TOOL_DIAMETER, panel.primitives, new SimpleBooleanProperty(false));
+        List<Toolpath> rasterToolpaths = rasterGenerator.generate();
+
+        ToolpathGenerator analyticGenerator = new AnalyticToolpathGenerator()
+        {
+            @Override
+            protected void setProgress(double progress) {}
+        };
+        analyticGenerator.init(panel.width, panel.height, TOOL_DIAMETER / 2, TOOL_DIAMETER, panel.primitives, new SimpleBooleanProperty(false));
+        List<Toolpath> analyticToolpaths = analyticGenerator.generate();
+
+        assertTrue(analyticToolpaths.size() > 0);
+        double rasterLength = ToolpathGeneratorTest.getLength(rasterToolpaths);
+        assertEquals(rasterLength, ToolpathGeneratorTest.getLength(analyticToolpaths), rasterLength * 0.05);
+    }
+
+    @Test
+    public void testContoursAreClippedToPanel()
+    {
+        List<GerberPrimitive> primitives = new ArrayList<>();
+        primitives.add(new LinearShape(-2000, 5000, 5000, 5000, new CircularAperture(500), GerberPrimitive.Polarity.DARK));
+        ToolpathGenerator generator = new AnalyticToolpathGenerator()
+        {
+            @Override
+            protected void setProgress(double progress) {}
+        };
+        generator.init(10000, 10000, TOOL_DIAMETER / 2, TOOL_DIAMETER, primitives, new SimpleBooleanProperty(false));
+        List<Toolpath> toolpaths = generator.generate();
+
+        // Both sides of the track run up to the panel's edge, the edge itself is not milled
+        int radius = 250 + TOOL_DIAMETER / 2;
+        assertEquals(2 * 5000 + Math.PI * radius, ToolpathGeneratorTest.getLength(toolpaths), 50);
+        for (Toolpath t : toolpaths)
+        {
+            CuttingToolpath toolpath = (CuttingToolpath) t;
+            for (Point p : new Point[] {toolpath.getCurve().getFrom(), toolpath.getCurve().getTo()})
+                assertTrue(p.getX() >= 0 && p.getY() >= 0);
+        }
+    }
+
+    @Test
+    public void testEagleFile() throws Exception
+    {
+        compareEngines(GerberSamples.EAGLE_FILE);
+    }
+
+    @Test
+    public void testKiCADFile() throws Exception
+    {
+        compareEngines(GerberSamples.KICAD_FILE);
+    }
+
+    @Test
+    public void testSprintLayoutFile() throws Exception
+    {
+        compareEngines(GerberSamples.SPRINT_LAYOUT_FILE);
+    }
+
+    @Test
+    public void testEasyPCFile() throws Exception
+    {
+        compareEngines(GerberSamples.EASY_PC_FILE);
+    }
+}
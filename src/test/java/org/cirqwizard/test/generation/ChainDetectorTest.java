@@ -0,0 +1,88 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.cirqwizard.test.generation;
+
+import org.cirqwizard.generation.optimizer.Chain;
+import org.cirqwizard.generation.optimizer.ChainDetector;
+import org.cirqwizard.generation.toolpath.CircularToolpath;
+import org.cirqwizard.generation.toolpath.CuttingToolpath;
+import org.cirqwizard.generation.toolpath.LinearToolpath;
+import org.cirqwizard.generation.toolpath.Toolpath;
+import org.cirqwizard.geom.Arc;
+import org.cirqwizard.geom.Point;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ChainDetectorTest
+{
+    private static void assertContinuous(Chain chain)
+    {
+        Point location = chain.getStart();
+        for (Toolpath t : chain.getSegments())
+        {
+            assertTrue(location.distanceTo(((CuttingToolpath) t).getCurve().getFrom()) < 60);
+            location = ((CuttingToolpath) t).getCurve().getTo();
+        }
+    }
+
+    @Test
+    public void testSegmentsAreOriented()
+    {
+        List<Toolpath> toolpaths = new ArrayList<>();
+        toolpaths.add(new LinearToolpath(300, new Point(1000, 0), new Point(2000, 0)));
+        toolpaths.add(new LinearToolpath(300, new Point(500, 1000), new Point(995, 10)));
+        toolpaths.add(new CircularToolpath(300, new Point(2000, 0), new Point(3000, 0), new Point(2500, 0), 500, true));
+        toolpaths.add(new LinearToolpath(300, new Point(10_000, 0), new Point(11_000, 0)));
+
+        List<Chain> chains = new ChainDetector(toolpaths).detect();
+
+        assertEquals(2, chains.size());
+        assertEquals(3, chains.get(0).getSegments().size());
+        assertContinuous(chains.get(0));
+        assertEquals(new Point(500, 1000), chains.get(0).getStart());
+        assertSame(toolpaths.get(0), chains.get(0).getSegments().get(1));
+        assertEquals(new Point(3000, 0), chains.get(0).getEnd());
+        assertTrue(((Arc) ((CuttingToolpath) chains.get(0).getSegments().get(2)).getCurve()).isClockwise());
+        assertSame(toolpaths.get(3), chains.get(1).getSegments().get(0));
+    }
+
+    @Test
+    public void testLongContour()
+    {
+        // Closed zigzag contour far longer than recursion could handle, given in shuffled order
+        int teeth = 100_000;
+        List<Point> points = new ArrayList<>();
+        for (int i = 0; i <= teeth * 2; i++)
+            points.add(new Point(i * 100, (i % 2) * 1000));
+        points.add(new Point(teeth * 200, -1000));
+        points.add(new Point(0, -1000));
+        List<Toolpath> toolpaths = new ArrayList<>();
+        for (int i = 0; i < points.size(); i++)
+            toolpaths.add(new LinearToolpath(300, points.get(i), points.get((i + 1) % points.size())));
+        Collections.shuffle(toolpaths, new Random(1));
+
+        List<Chain> chains = new ChainDetector(toolpaths).detect();
+
+        assertEquals(1, chains.size());
+        assertEquals(toolpaths.size(), chains.get(0).getSegments().size());
+        assertContinuous(chains.get(0));
+        assertEquals(chains.get(0).getStart(), chains.get(0).getEnd());
+    }
+}
@@ -0,0 +1,65 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.cirqwizard.test.generation;
+
+import org.cirqwizard.generation.CircleIndex;
+import org.cirqwizard.geom.Circle;
+import org.cirqwizard.geom.Point;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class CircleIndexTest
+{
+    private static List<String> describe(List<Circle> circles)
+    {
+        List<String> result = new ArrayList<>();
+        for (Circle circle : circles)
+            result.add(circle.getCenter() + " " + circle.getRadius());
+        return result;
+    }
+
+    @Test
+    public void testWindowQueries()
+    {
+        Random random = new Random(3);
+        List<Circle> circles = new ArrayList<>();
+        for (int i = 0; i < 5000; i++)
+            circles.add(new Circle(new Point(random.nextInt(100_000), random.nextInt(100_000)), 100 + random.nextInt(2000)));
+        CircleIndex index = new CircleIndex(circles);
+        int tolerance = 10;
+
+        for (int i = 0; i < 200; i++)
+        {
+            int windowX = random.nextInt(95_000);
+            int windowY = random.nextInt(95_000);
+            CircleIndex window = index.getWindow(windowX, windowY, 5000, 5000);
+            int x = random.nextInt(5000);
+            int y = random.nextInt(5000);
+
+            List<Circle> expected = new ArrayList<>();
+            for (Circle circle : circles)
+            {
+                Point center = circle.getCenter().subtract(new Point(windowX, windowY));
+                if (Math.abs(center.getX() - x) <= circle.getRadius() + tolerance && Math.abs(center.getY() - y) <= circle.getRadius() + tolerance)
+                    expected.add(new Circle(center, circle.getRadius()));
+            }
+            assertEquals(describe(expected), describe(window.query(x, y, tolerance)));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.cirqwizard.test.generation;
+
+import org.cirqwizard.generation.DispensingToolpathGenerator;
+import org.cirqwizard.generation.optimizer.Chain;
+import org.cirqwizard.generation.optimizer.DispensingPathOptimizer;
+import org.cirqwizard.generation.toolpath.CuttingToolpath;
+import org.cirqwizard.generation.toolpath.Toolpath;
+import org.cirqwizard.geom.Curve;
+import org.cirqwizard.geom.Point;
+import org.cirqwizard.gerber.Flash;
+import org.cirqwizard.gerber.GerberPrimitive;
+import org.cirqwizard.gerber.appertures.RectangularAperture;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DispensingPathOptimizerTest
+{
+    private static double getTravel(List<Chain> pads)
+    {
+        Point location = new Point(0, 0);
+        double travel = 0;
+        for (Chain pad : pads)
+        {
+            for (Toolpath t : pad.getSegments())
+            {
+                Curve curve = ((CuttingToolpath) t).getCurve();
+                travel += location.distanceTo(curve.getFrom());
+                location = curve.getTo();
+            }
+        }
+        return travel;
+    }
+
+    private static Set<Set<Point>> getPasses(List<Chain> pads)
+    {
+        Set<Set<Point>> passes = new HashSet<>();
+        for (Chain pad : pads)
+            for (Toolpath t : pad.getSegments())
+                passes.add(new HashSet<>(Arrays.asList(((CuttingToolpath) t).getCurve().getFrom(), ((CuttingToolpath) t).getCurve().getTo())));
+        return passes;
+    }
+
+    @Test
+    public void testPassesAlternate()
+    {
+        List<GerberPrimitive> primitives = new ArrayList<>();
+        primitives.add(new Flash(5000, 5000, new RectangularAperture(2000, 1500), GerberPrimitive.Polarity.DARK));
+        List<Chain> pads = new DispensingToolpathGenerator(primitives).generate(250);
+        assertEquals(1, pads.size());
+        List<Toolpath> passes = pads.get(0).getSegments();
+        assertEquals(3, passes.size());
+        for (int i = 1; i < passes.size(); i++)
+        {
+            Curve previous = ((CuttingToolpath) passes.get(i - 1)).getCurve();
+            Curve current = ((CuttingToolpath) passes.get(i)).getCurve();
+            assertEquals(previous.getTo().getX(), current.getFrom().getX());
+        }
+    }
+
+    @Test
+    public void testPadsOrder()
+    {
+        Random random = new Random(1);
+        List<GerberPrimitive> primitives = new ArrayList<>();
+        for (int i = 0; i < 2000; i++)
+            primitives.add(new Flash(random.nextInt(100_000), random.nextInt(100_000),
+                    new RectangularAperture(500 + random.nextInt(2000), 500 + random.nextInt(2000)), GerberPrimitive.Polarity.DARK));
+        List<Chain> pads = new DispensingToolpathGenerator(primitives).generate(250);
+
+        List<Chain> optimized = new DispensingPathOptimizer(pads).optimize();
+
+        assertEquals(pads.size(), optimized.size());
+        assertEquals(getPasses(pads), getPasses(optimized));
+        assertTrue(getTravel(optimized) < getTravel(pads) / 10);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cirqwizard.test.generation;
+
+import org.cirqwizard.generation.optimizer.DrillJob;
+import org.cirqwizard.generation.optimizer.DrillJobPlanner;
+import org.cirqwizard.generation.optimizer.DrillPathOptimizer;
+import org.cirqwizard.generation.optimizer.TimeEstimator;
+import org.cirqwizard.generation.optimizer.TourConstructor;
+import org.cirqwizard.generation.toolpath.DrillPoint;
+import org.cirqwizard.geom.Point;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DrillPathOptimizerTest
+{
+    private static double getLength(List<DrillPoint> points, int[] order)
+    {
+        Point location = new Point(0, 0);
+        double length = 0;
+        for (int i : order)
+        {
+            length += location.distanceTo(points.get(i).getPoint());
+            location = points.get(i).getPoint();
+        }
+        return length;
+    }
+
+    @Test
+    public void testDrillingOrder()
+    {
+        Random random = new Random(1);
+        List<DrillPoint> points = new ArrayList<>();
+        for (int i = 0; i < 3000; i++)
+            points.add(new DrillPoint(new Point(random.nextInt(150_000), random.nextInt(100_000)), 300));
+
+        int[] fileOrder = new int[points.size()];
+        int[] xs = new int[points.size()];
+        int[] ys = new int[points.size()];
+        for (int i = 0; i < fileOrder.length; i++)
+        {
+            fileOrder[i] = i;
+            xs[i] = points.get(i).getPoint().getX();
+            ys[i] = points.get(i).getPoint().getY();
+        }
+        double nearestNeighbourLength = getLength(points, new TourConstructor(xs, ys).createNearestNeighbourTour());
+
+        int[] order = new DrillPathOptimizer(points).optimize();
+
+        int[] sorted = order.clone();
+        Arrays.sort(sorted);
+        assertTrue(Arrays.equals(fileOrder, sorted));
+        double length = getLength(points, order);
+        assertTrue(length < nearestNeighbourLength);
+        assertTrue(length < getLength(points, fileOrder) / 10);
+    }
+
+    @Test
+    public void testSingleHit()
+    {
+        List<DrillPoint> points = new ArrayList<>();
+        points.add(new DrillPoint(new Point(1000, 1000), 800));
+        assertEquals(0, new DrillPathOptimizer(points).optimize()[0]);
+    }
+
+    @Test
+    public void testDiametersAreGrouped()
+    {
+        List<DrillPoint> points = new ArrayList<>();
+        int[] diameters = {600, 700, 700, 800, 1000, 1100, 3000};
+        for (int i = 0; i < diameters.length; i++)
+            points.add(new DrillPoint(new Point(i * 1000, 0), diameters[i]));
+
+        List<DrillJob> jobs = new DrillJobPlanner(points, 200).plan();
+        Map<Integer, Integer> toolsCount = new TreeMap<>();
+        for (DrillJob job : jobs)
+            toolsCount.put(job.getToolDiameter(), job.getOrder().length);
+        Map<Integer, Integer> expected = new TreeMap<>();
+        expected.put(700, 4);
+        expected.put(1000, 2);
+        expected.put(3000, 1);
+        assertEquals(expected, toolsCount);
+        for (DrillJob job : jobs)
+            for (DrillPoint p : job.getDrillPoints(points))
+                assertTrue(Math.abs(p.getToolDiameter() - job.getToolDiameter()) <= 200);
+
+        assertEquals(6, new DrillJobPlanner(points, 0).plan().size());
+    }
+
+    @Test
+    public void testPanelPlan()
+    {
+        Random random = new Random(2);
+        int[] diameters = {300, 600, 700, 800, 1000, 1100};
+        List<DrillPoint> points = new ArrayList<>();
+        for (int i = 0; i < 2000; i++)
+            points.add(new DrillPoint(new Point(random.nextInt(150_000), random.nextInt(100_000)), diameters[random.nextInt(diameters.length)]));
+
+        // As drilled before: a tool per diameter in ascending order, hits in file order
+        List<DrillPoint> fileOrder = points.stream().
+                sorted(Comparator.comparingInt(DrillPoint::getToolDiameter)).
+                collect(Collectors.toList());
+        double fileOrderDuration = TimeEstimator.calculateDrillingDuration(fileOrder, 200.0 / 60, 5, 2, -2);
+
+        List<DrillJob> jobs = new DrillJobPlanner(points, 100).plan();
+
+        List<DrillPoint> planned = new ArrayList<>();
+        jobs.forEach(job -> planned.addAll(job.getDrillPoints(points)));
+        assertEquals(new HashSet<>(points), new HashSet<>(planned));
+        assertEquals(points.size(), planned.size());
+        assertEquals(4, jobs.size());
+        double duration = TimeEstimator.calculateDrillingDuration(planned, 200.0 / 60, 5, 2, -2);
+        assertTrue(duration < fileOrderDuration);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cirqwizard.test.generation;
+
+import org.cirqwizard.generation.optimizer.*;
+import org.cirqwizard.generation.toolpath.CircularToolpath;
+import org.cirqwizard.generation.toolpath.LinearToolpath;
+import org.cirqwizard.generation.toolpath.Toolpath;
+import org.cirqwizard.geom.Arc;
+import org.cirqwizard.geom.Point;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class LocalSearchOptimizerTest
+{
+    private static double getLength(List<Chain> chains)
+    {
+        Point location = new Point(0, 0);
+        double length = 0;
+        for (Chain chain : chains)
+        {
+            length += location.distanceTo(chain.getStart());
+            location = chain.getEnd();
+        }
+        return length;
+    }
+
+    private static double getDuration(List<Chain> chains)
+    {
+        List<Toolpath> toolpaths = new ArrayList<>();
+        for (Chain chain : chains)
+            toolpaths.addAll(chain.getSegments());
+        return TimeEstimator.calculateTotalDuration(toolpaths, 10, 5, 10, 1, 0.5, false, 0);
+    }
+
+    @Test
+    public void testKdTree()
+    {
+        Random random = new Random(1);
+        int[] xs = new int[1000];
+        int[] ys = new int[1000];
+        for (int i = 0; i < xs.length; i++)
+        {
+            xs[i] = random.nextInt(10000) - 5000;
+            ys[i] = random.nextInt(10000) - 5000;
+        }
+        KdTree tree = new KdTree(xs, ys);
+        for (int i = 0; i < 100; i++)
+        {
+            int x = random.nextInt(12000) - 6000;
+            int y = random.nextInt(12000) - 6000;
+            Integer[] indices = new Integer[xs.length];
+            for (int j = 0; j < indices.length; j++)
+                indices[j] = j;
+            Arrays.sort(indices, Comparator.comparingLong(j -> (long) (xs[j] - x) * (xs[j] - x) + (long) (ys[j] - y) * (ys[j] - y)));
+            int[] nearest = tree.nearest(x, y, 8, indices[0]);
+            for (int j = 0; j < nearest.length; j++)
+            {
+                long expected = (long) (xs[indices[j + 1]] - x) * (xs[indices[j + 1]] - x) + (long) (ys[indices[j + 1]] - y) * (ys[indices[j + 1]] - y);
+                long actual = (long) (xs[nearest[j]] - x) * (xs[nearest[j]] - x) + (long) (ys[nearest[j]] - y) * (ys[nearest[j]] - y);
+                assertEquals(expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testChainReversal()
+    {
+        List<Toolpath> segments = new ArrayList<>();
+        segments.add(new LinearToolpath(300, new Point(0, 0), new Point(1000, 0)));
+        segments.add(new CircularToolpath(300, new Point(1000, 0), new Point(2000, 0), new Point(1500, 0), 500, true));
+        segments.get(1).setEnabled(false);
+        Chain reversed = new Chain(segments).reverse();
+
+        assertEquals(new Point(2000, 0), reversed.getStart());
+        assertEquals(new Point(0, 0), reversed.getEnd());
+        Arc arc = (Arc) ((CircularToolpath) reversed.getSegments().get(0)).getCurve();
+        assertEquals(new Point(1000, 0), arc.getTo());
+        assertFalse(arc.isClockwise());
+        assertFalse(reversed.getSegments().get(0).isEnabled());
+    }
+
+    @Test
+    public void testCrossingIsRemoved()
+    {
+        List<Chain> chains = new ArrayList<>();
+        for (int i = 0; i < 4; i++)
+        {
+            List<Toolpath> segments = new ArrayList<>();
+            segments.add(new LinearToolpath(300, new Point(i * 1000, 0), new Point(i * 1000 + 500, 0)));
+            chains.add(new Chain(segments));
+        }
+        List<Chain> result = new LocalSearchOptimizer(chains).optimize(new int[] {0, 2, 1, 3});
+        assertEquals(Arrays.asList(chains.get(0), chains.get(1), chains.get(2), chains.get(3)), result);
+    }
+
+    @Test
+    public void testRefinementOfRandomOrder()
+    {
+        List<Chain> chains = OptimizerTest.createChains(2000, 4);
+        List<Integer> list = new ArrayList<>();
+        for (int i = 0; i < chains.size(); i++)
+            list.add(i);
+        Collections.shuffle(list, new Random(4));
+        int[] genes = list.stream().mapToInt(Integer::intValue).toArray();
+        List<Chain> initial = new ArrayList<>();
+        for (int g : genes)
+            initial.add(chains.get(g));
+
+        List<Chain> result = new LocalSearchOptimizer(chains).optimize(genes);
+
+        assertEquals(chains.size(), result.size());
+        Set<Set<Point>> ends = new HashSet<>();
+        for (Chain chain : result)
+            ends.add(new HashSet<>(Arrays.asList(chain.getStart(), chain.getEnd())));
+        Set<Set<Point>> expectedEnds = new HashSet<>();
+        for (Chain chain : chains)
+            expectedEnds.add(new HashSet<>(Arrays.asList(chain.getStart(), chain.getEnd())));
+        assertEquals(expectedEnds, ends);
+        assertTrue(getLength(result) < getLength(initial) / 5);
+        assertTrue(getDuration(result) < getDuration(initial));
+    }
+}
@@ -0,0 +1,127 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cirqwizard.test.generation;
+
+import org.cirqwizard.generation.optimizer.Chain;
+import org.cirqwizard.generation.optimizer.Environment;
+import org.cirqwizard.generation.optimizer.Generation;
+import org.cirqwizard.generation.optimizer.Phenotype;
+import org.cirqwizard.generation.toolpath.LinearToolpath;
+import org.cirqwizard.generation.toolpath.Toolpath;
+import org.cirqwizard.geom.Point;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OptimizerTest
+{
+    private static final int POPULATION_SIZE = 350;
+
+    public static List<Chain> createChains(int count, long seed)
+    {
+        Random random = new Random(seed);
+        List<Chain> chains = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+        {
+            Point from = new Point(random.nextInt(100_000), random.nextInt(100_000));
+            Point to = from.add(new Point(random.nextInt(5000) - 2500, random.nextInt(5000) - 2500));
+            List<Toolpath> segments = new ArrayList<>();
+            segments.add(new LinearToolpath(300, from, to));
+            chains.add(new Chain(segments));
+        }
+        return chains;
+    }
+
+    private static double fitness(List<Chain> chains, int[] genes)
+    {
+        Point location = new Point(0, 0);
+        double fitness = 0;
+        for (int g : genes)
+        {
+            fitness += location.distanceTo(chains.get(g).getStart());
+            location = chains.get(g).getEnd();
+        }
+        return fitness;
+    }
+
+    private void checkFitness(int chainsCount)
+    {
+        List<Chain> chains = createChains(chainsCount, 3);
+        Environment environment = new Environment(chains);
+        List<Integer> list = new ArrayList<>();
+        for (int i = 0; i < chainsCount; i++)
+            list.add(i);
+        Collections.shuffle(list, new Random(3));
+        int[] genes = list.stream().mapToInt(Integer::intValue).toArray();
+        assertEquals(fitness(chains, genes), environment.calculateFitness(genes), fitness(chains, genes) * 1e-6);
+    }
+
+    @Test
+    public void testFitnessEvaluation()
+    {
+        checkFitness(2000);
+        checkFitness(10_000);
+    }
+
+    // Optimizer's population is seeded with constructive tours which breeding may not beat, so breeding is checked on a random one
+    @Test
+    public void testBreedingImprovesRandomPopulation()
+    {
+        List<Chain> chains = createChains(500, 7);
+        Environment environment = new Environment(chains);
+        Random random = new Random(7);
+        Generation current = new Generation(chains.size(), POPULATION_SIZE);
+        current.populate(random);
+        Generation next = new Generation(chains.size(), POPULATION_SIZE);
+        boolean[] copied = new boolean[chains.size()];
+        double initial = current.getBestFitness(environment).calculateFitness(environment);
+        for (int i = 0; i < 100; i++)
+        {
+            for (int j = 0; j < next.size(); j++)
+            {
+                Phenotype child = next.get(j);
+                child.crossOver(current.tournamentWinner(environment, 7, random), current.tournamentWinner(environment, 7, random), random, copied);
+                child.calculateFitness(environment);
+            }
+            Generation generation = current;
+            current = next;
+            next = generation;
+        }
+        assertTrue(current.getBestFitness(environment).calculateFitness(environment) < initial * 0.8);
+    }
+
+    @Test
+    public void testBredChildrenArePermutations()
+    {
+        Random random = new Random(2);
+        Generation parents = new Generation(300, 20);
+        parents.populate(random);
+        Generation children = new Generation(300, 20);
+        boolean[] copied = new boolean[300];
+        for (int i = 0; i < children.size(); i++)
+        {
+            Phenotype child = children.get(i);
+            child.crossOver(parents.get(random.nextInt(parents.size())), parents.get(random.nextInt(parents.size())), random, copied);
+            child.mutate(random);
+            int[] genes = child.getGenes().clone();
+            Arrays.sort(genes);
+            for (int j = 0; j < genes.length; j++)
+                assertEquals(j, genes[j]);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cirqwizard.test.generation;
+
+import org.cirqwizard.generation.PrimitiveIndex;
+import org.cirqwizard.generation.RasterWindow;
+import org.cirqwizard.geom.Point;
+import org.cirqwizard.gerber.Flash;
+import org.cirqwizard.gerber.GerberParser;
+import org.cirqwizard.gerber.GerberPrimitive;
+import org.cirqwizard.gerber.LinearShape;
+import org.cirqwizard.gerber.appertures.CircularAperture;
+import org.cirqwizard.gerber.appertures.RectangularAperture;
+import org.cirqwizard.test.gerber.GerberSamples;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PrimitiveIndexTest
+{
+    private List<GerberPrimitive> createPrimitives(int count, int size)
+    {
+        Random random = new Random(42);
+        List<GerberPrimitive> primitives = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+        {
+            int x = random.nextInt(size);
+            int y = random.nextInt(size);
+            GerberPrimitive.Polarity polarity = random.nextInt(10) == 0 ? GerberPrimitive.Polarity.CLEAR : GerberPrimitive.Polarity.DARK;
+            if (random.nextBoolean())
+                primitives.add(new Flash(x, y, new RectangularAperture(100 + random.nextInt(1000), 100 + random.nextInt(1000)), polarity));
+            else
+                primitives.add(new LinearShape(x, y, x + random.nextInt(5000) - 2500, y + random.nextInt(5000) - 2500,
+                        new CircularAperture(100 + random.nextInt(500)), polarity));
+        }
+        return primitives;
+    }
+
+    @Test
+    public void testQueryFindsAllIntersectingPrimitives()
+    {
+        List<GerberPrimitive> primitives = createPrimitives(2000, 100000);
+        PrimitiveIndex index = new PrimitiveIndex(primitives);
+        int inflation = 300;
+        Random random = new Random(1);
+        for (int i = 0; i < 100; i++)
+        {
+            int x = random.nextInt(100000);
+            int y = random.nextInt(100000);
+            int width = random.nextInt(10000);
+            int height = random.nextInt(10000);
+            List<GerberPrimitive> candidates = index.query(x, y, width, height, inflation);
+
+            int lastIndex = -1;
+            for (GerberPrimitive p : candidates)
+            {
+                int primitiveIndex = primitives.indexOf(p);
+                assertTrue(primitiveIndex > lastIndex);
+                lastIndex = primitiveIndex;
+            }
+
+            for (GerberPrimitive p : primitives)
+                if (p.getArea(inflation).intersects(x, y, width, height))
+                    assertTrue(candidates.contains(p));
+        }
+    }
+
+    @Test
+    public void testIndexedRenderingMatchesFullRendering() throws Exception
+    {
+        List<GerberPrimitive> primitives = new GerberParser(new StringReader(GerberSamples.KICAD_FILE)).parse();
+        int minX = primitives.stream().mapToInt(p -> p.getMin().getX()).min().getAsInt();
+        int minY = primitives.stream().mapToInt(p -> p.getMin().getY()).min().getAsInt();
+        for (GerberPrimitive p : primitives)
+            p.move(new Point(-minX, -minY));
+        PrimitiveIndex index = new PrimitiveIndex(primitives);
+
+        int inflation = 150;
+        int windowSize = 3000;
+        for (int x = 0; x < 30000; x += windowSize)
+        {
+            for (int y = 0; y < 30000; y += windowSize)
+            {
+                RasterWindow full = new RasterWindow(new Point(x, y), windowSize, windowSize);
+                full.render(primitives, inflation);
+                RasterWindow indexed = new RasterWindow(new Point(x, y), windowSize, windowSize);
+                indexed.render(index, inflation);
+                assertArrayEquals(getPixels(full.getBufferedImage()), getPixels(indexed.getBufferedImage()));
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyIndex()
+    {
+        assertEquals(0, new PrimitiveIndex(new ArrayList<>()).query(0, 0, 1000, 1000, 100).size());
+    }
+
+    private byte[] getPixels(BufferedImage image)
+    {
+        return ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cirqwizard.test.generation;
+
+import org.cirqwizard.generation.PackedBitmap;
+import org.cirqwizard.generation.RasterWindow;
+import org.cirqwizard.generation.SimpleEdgeDetector;
+import org.cirqwizard.geom.Point;
+import org.cirqwizard.gerber.GerberParser;
+import org.cirqwizard.gerber.GerberPrimitive;
+import org.cirqwizard.test.gerber.GerberSamples;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class SimpleEdgeDetectorTest
+{
+    // Byte per pixel implementation the packed one is compared against
+    private byte[] detectEdges(BufferedImage image)
+    {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        byte[] sourceData = (byte[]) image.getData().getDataElements(0, 0, width, height, null);
+        byte[] output = new byte[sourceData.length];
+        for (int y = 1; y < height - 1; y++)
+        {
+            for (int x = 1; x < width - 1; x++)
+            {
+                int index = y * width + x;
+                if (sourceData[index] == 0 &&
+                        (sourceData[index - 1] != 0 || sourceData[index + 1] != 0 || sourceData[index - width] != 0 || sourceData[index + width] != 0))
+                    output[index] = 1;
+            }
+        }
+        return output;
+    }
+
+    private BufferedImage renderWindow(int width, int height)  throws Exception
+    {
+        List<GerberPrimitive> primitives = new GerberParser(new StringReader(GerberSamples.EAGLE_FILE)).parse();
+        int minX = primitives.stream().mapToInt(p -> p.getMin().getX()).min().getAsInt();
+        int minY = primitives.stream().mapToInt(p -> p.getMin().getY()).min().getAsInt();
+        for (GerberPrimitive p : primitives)
+            p.move(new Point(-minX, -minY));
+        RasterWindow window = new RasterWindow(new Point(0, 0), width, height);
+        window.render(primitives, 150);
+        return window.getBufferedImage();
+    }
+
+    private void compare(BufferedImage image)
+    {
+        byte[] expected = detectEdges(image);
+        SimpleEdgeDetector detector = new SimpleEdgeDetector(image);
+        detector.process();
+        PackedBitmap actual = detector.getOutput();
+        for (int y = 0; y < image.getHeight(); y++)
+            for (int x = 0; x < image.getWidth(); x++)
+                assertEquals("Pixel " + x + ", " + y, expected[y * image.getWidth() + x] != 0, actual.get(x, y));
+    }
+
+    @Test
+    public void testOddSizedWindow() throws Exception
+    {
+        compare(renderWindow(1237, 411));
+    }
+
+    @Test
+    public void testFullWindow() throws Exception
+    {
+        compare(renderWindow(5010, 5010));
+    }
+}
@@ -0,0 +1,92 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.cirqwizard.test.generation;
+
+import org.cirqwizard.generation.optimizer.TimeEstimator;
+import org.cirqwizard.generation.toolpath.CircularToolpath;
+import org.cirqwizard.generation.toolpath.LinearToolpath;
+import org.cirqwizard.generation.toolpath.Toolpath;
+import org.cirqwizard.geom.Point;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimeEstimatorTest
+{
+    private static double getFeedDuration(List<Toolpath> toolpaths)
+    {
+        return TimeEstimator.calculateTotalDuration(toolpaths, 5, 1, 5, 1, 0.5, true, 0) -
+                TimeEstimator.calculateTotalDuration(toolpaths, 5, 1, 5, 1, 0.5, false, 0);
+    }
+
+    @Test
+    public void testCollinearSegmentsAreNotSlowedDown()
+    {
+        List<Toolpath> segments = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+            segments.add(new LinearToolpath(300, new Point(i * 500, 0), new Point((i + 1) * 500, 0)));
+        double single = getFeedDuration(Collections.singletonList(new LinearToolpath(300, new Point(0, 0), new Point(50_000, 0))));
+        assertEquals(single, getFeedDuration(segments), 1e-6);
+    }
+
+    @Test
+    public void testCornersSlowDown()
+    {
+        List<Toolpath> square = new ArrayList<>();
+        square.add(new LinearToolpath(300, new Point(0, 0), new Point(10_000, 0)));
+        square.add(new LinearToolpath(300, new Point(10_000, 0), new Point(10_000, 10_000)));
+        square.add(new LinearToolpath(300, new Point(10_000, 10_000), new Point(0, 10_000)));
+        square.add(new LinearToolpath(300, new Point(0, 10_000), new Point(0, 0)));
+        double duration = getFeedDuration(square);
+
+        double straight = getFeedDuration(Collections.singletonList(new LinearToolpath(300, new Point(0, 0), new Point(40_000, 0))));
+        double stopToStop = 4 * getFeedDuration(Collections.singletonList(new LinearToolpath(300, new Point(0, 0), new Point(10_000, 0))));
+        assertTrue(duration > straight);
+        assertTrue(duration < stopToStop);
+
+        // Reversal is a full stop
+        List<Toolpath> reversal = new ArrayList<>();
+        reversal.add(new LinearToolpath(300, new Point(0, 0), new Point(10_000, 0)));
+        reversal.add(new LinearToolpath(300, new Point(10_000, 0), new Point(0, 0)));
+        assertEquals(stopToStop / 2, getFeedDuration(reversal), 1e-6);
+    }
+
+    @Test
+    public void testTangentArcIsSmooth()
+    {
+        List<Toolpath> toolpaths = new ArrayList<>();
+        toolpaths.add(new LinearToolpath(300, new Point(0, 0), new Point(10_000, 0)));
+        toolpaths.add(new CircularToolpath(300, new Point(10_000, 0), new Point(10_000, 20_000), new Point(10_000, 10_000), 10_000, false));
+        toolpaths.add(new LinearToolpath(300, new Point(10_000, 20_000), new Point(0, 20_000)));
+        double length = 20 + Math.PI * 10;
+        double duration = getFeedDuration(toolpaths);
+        assertTrue(duration < getFeedDuration(Collections.singletonList(new LinearToolpath(300, new Point(0, 0), new Point((int) (length * 1000), 0)))) + 1e-3);
+        assertTrue(duration > length / 5);
+    }
+
+    @Test
+    public void testDiagonalRapid()
+    {
+        double diagonal = TimeEstimator.calculateRapidDuration(new Point(0, 0), new Point(100_000, 100_000));
+        double alongX = TimeEstimator.calculateRapidDuration(new Point(0, 0), new Point(100_000, 0));
+        double alongY = TimeEstimator.calculateRapidDuration(new Point(0, 0), new Point(0, 100_000));
+        assertTrue(diagonal >= Math.max(alongX, alongY));
+        assertEquals(alongY, TimeEstimator.calculateRapidDuration(new Point(0, 0), new Point(0, -100_000)), 1e-9);
+    }
+}
@@ -0,0 +1,193 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cirqwizard.test.generation;
+
+import javafx.beans.property.SimpleBooleanProperty;
+import org.cirqwizard.generation.ToolpathGenerator;
+import org.cirqwizard.generation.ToolpathMerger;
+import org.cirqwizard.generation.WindowPlanner;
+import org.cirqwizard.generation.toolpath.CircularToolpath;
+import org.cirqwizard.generation.toolpath.CuttingToolpath;
+import org.cirqwizard.generation.toolpath.Toolpath;
+import org.cirqwizard.geom.Arc;
+import org.cirqwizard.geom.Point;
+import org.cirqwizard.gerber.GerberParser;
+import org.cirqwizard.gerber.GerberPrimitive;
+import org.cirqwizard.test.gerber.GerberSamples;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ToolpathGeneratorTest
+{
+    private static final int MARGIN = 2000;
+    private static final int TILES = 2;
+    private static final int TOOL_DIAMETER = 300;
+    private static final int BOARDS_GAP = 10000;
+    private static final int WINDOW_SIZE = 5000;
+    private static final int WINDOWS_OVERLAP = 5;
+
+    static class Panel
+    {
+        List<GerberPrimitive> primitives = new ArrayList<>();
+        int width;
+        int height;
+    }
+
+    static Panel createPanel(String gerber) throws Exception
+    {
+        List<GerberPrimitive> board = new GerberParser(new StringReader(gerber)).parse();
+        int minX = board.stream().mapToInt(p -> p.getMin().getX()).min().getAsInt();
+        int minY = board.stream().mapToInt(p -> p.getMin().getY()).min().getAsInt();
+        int maxX = board.stream().mapToInt(p -> p.getMax().getX()).max().getAsInt();
+        int maxY = board.stream().mapToInt(p -> p.getMax().getY()).max().getAsInt();
+        int boardWidth = maxX - minX + MARGIN;
+        int boardHeight = maxY - minY + MARGIN;
+
+        Panel panel = new Panel();
+        panel.width = boardWidth * TILES + MARGIN;
+        panel.height = boardHeight * TILES + MARGIN;
+        for (int i = 0; i < TILES; i++)
+        {
+            for (int j = 0; j < TILES; j++)
+            {
+                for (GerberPrimitive p : board)
+                {
+                    GerberPrimitive clone = (GerberPrimitive) p.clone();
+                    clone.move(new Point(MARGIN - minX + i * boardWidth, MARGIN - minY + j * boardHeight));
+                    panel.primitives.add(clone);
+                }
+            }
+        }
+        return panel;
+    }
+
+    // Boards of different density placed two per row with wide gaps between them, as on a real panel
+    private static Panel createMultiBoardPanel(String... gerbers) throws Exception
+    {
+        Panel panel = new Panel();
+        int x = MARGIN;
+        int y = MARGIN;
+        int rowHeight = 0;
+        for (int i = 0; i < gerbers.length; i++)
+        {
+            List<GerberPrimitive> board = new GerberParser(new StringReader(gerbers[i])).parse();
+            int minX = board.stream().mapToInt(p -> p.getMin().getX()).min().getAsInt();
+            int minY = board.stream().mapToInt(p -> p.getMin().getY()).min().getAsInt();
+            int maxX = board.stream().mapToInt(p -> p.getMax().getX()).max().getAsInt();
+            int maxY = board.stream().mapToInt(p -> p.getMax().getY()).max().getAsInt();
+            for (GerberPrimitive p : board)
+                p.move(new Point(x - minX, y - minY));
+            panel.primitives.addAll(board);
+            panel.width = Math.max(panel.width, x + maxX - minX + BOARDS_GAP);
+            panel.height = Math.max(panel.height, y + maxY - minY + BOARDS_GAP);
+            rowHeight = Math.max(rowHeight, maxY - minY);
+            x += maxX - minX + BOARDS_GAP;
+            if (i % 2 == 1)
+            {
+                x = MARGIN;
+                y += rowHeight + BOARDS_GAP;
+                rowHeight = 0;
+            }
+        }
+        return panel;
+    }
+
+    static double getLength(List<Toolpath> toolpaths)
+    {
+        double length = 0;
+        for (Toolpath t : toolpaths)
+        {
+            CuttingToolpath toolpath = (CuttingToolpath) t;
+            if (toolpath instanceof CircularToolpath)
+            {
+                Arc arc = (Arc) toolpath.getCurve();
+                length += arc.getAngle() * arc.getRadius();
+            }
+            else
+                length += toolpath.getCurve().getFrom().distanceTo(toolpath.getCurve().getTo());
+        }
+        return length;
+    }
+
+    // Windows as ToolpathGenerator planned them before: a regular grid over the whole panel
+    private static List<WindowPlanner.Window> planUniform(int width, int height)
+    {
+        List<WindowPlanner.Window> windows = new ArrayList<>();
+        for (int x = 0; x < width; x += WINDOW_SIZE)
+        {
+            for (int y = 0; y < height; y += WINDOW_SIZE)
+            {
+                int windowX = x > WINDOWS_OVERLAP ? x - WINDOWS_OVERLAP : x;
+                int windowY = y > WINDOWS_OVERLAP ? y - WINDOWS_OVERLAP : y;
+                windows.add(new WindowPlanner.Window(windowX, windowY, Math.min(WINDOW_SIZE + 2 * WINDOWS_OVERLAP, width - windowX),
+                        Math.min(WINDOW_SIZE + 2 * WINDOWS_OVERLAP, height - windowY), 0));
+            }
+        }
+        return windows;
+    }
+
+    @Test
+    public void testMultiBoardPanelWindows() throws Exception
+    {
+        Panel panel = createMultiBoardPanel(GerberSamples.SPRINT_LAYOUT_FILE, GerberSamples.EASY_PC_FILE);
+
+        ToolpathGenerator uniformGenerator = new ToolpathGenerator()
+        {
+            @Override
+            protected void setProgress(double progress) {}
+
+            @Override
+            protected List<WindowPlanner.Window> planWindows(WindowPlanner planner)
+            {
+                return planUniform(panel.width, panel.height);
+            }
+        };
+        uniformGenerator.init(panel.width, panel.height, TOOL_DIAMETER / 2, TOOL_DIAMETER, panel.primitives, new SimpleBooleanProperty(false));
+        List<Toolpath> uniformToolpaths = uniformGenerator.generate();
+
+        ToolpathGenerator adaptiveGenerator = new ToolpathGenerator()
+        {
+            @Override
+            protected void setProgress(double progress) {}
+        };
+        adaptiveGenerator.init(panel.width, panel.height, TOOL_DIAMETER / 2, TOOL_DIAMETER, panel.primitives, new SimpleBooleanProperty(false));
+        List<Toolpath> adaptiveToolpaths = adaptiveGenerator.generate();
+
+        double uniformLength = getLength(uniformToolpaths);
+        assertEquals(uniformLength, getLength(adaptiveToolpaths), uniformLength * 0.05);
+    }
+
+    @Test
+    public void testSeamsAreStitched() throws Exception
+    {
+        Panel panel = createPanel(GerberSamples.KICAD_FILE);
+        ToolpathGenerator generator = new ToolpathGenerator()
+        {
+            @Override
+            protected void setProgress(double progress) {}
+        };
+        generator.init(panel.width, panel.height, TOOL_DIAMETER / 2, TOOL_DIAMETER, panel.primitives, new SimpleBooleanProperty(false));
+        List<Toolpath> toolpaths = generator.generate();
+
+        // Merging windows' toolpaths again over the whole panel finds nothing left to join
+        List<Toolpath> merged = new ToolpathMerger(new ArrayList<>(toolpaths), TOOL_DIAMETER / 4).merge();
+        assertEquals(toolpaths.size(), merged.size());
+    }
+}
@@ -0,0 +1,145 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.cirqwizard.test.generation;
+
+import org.cirqwizard.generation.ToolpathMerger;
+import org.cirqwizard.generation.toolpath.CircularToolpath;
+import org.cirqwizard.generation.toolpath.CuttingToolpath;
+import org.cirqwizard.generation.toolpath.LinearToolpath;
+import org.cirqwizard.generation.toolpath.Toolpath;
+import org.cirqwizard.geom.Arc;
+import org.cirqwizard.geom.Curve;
+import org.cirqwizard.geom.Point;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ToolpathMergerTest
+{
+    private static Curve getCurve(Toolpath toolpath)
+    {
+        return ((CuttingToolpath) toolpath).getCurve();
+    }
+
+    @Test
+    public void testSplitLineIsMerged()
+    {
+        List<Toolpath> toolpaths = new ArrayList<>();
+        toolpaths.add(new LinearToolpath(300, new Point(1000, 0), new Point(2000, 0)));
+        toolpaths.add(new LinearToolpath(300, new Point(3000, 5), new Point(2002, 0)));
+        toolpaths.add(new LinearToolpath(300, new Point(0, 0), new Point(999, 1)));
+        toolpaths.add(new LinearToolpath(300, new Point(3000, 5), new Point(3000, 2000)));
+
+        List<Toolpath> result = new ToolpathMerger(toolpaths, 10).merge();
+
+        assertEquals(2, result.size());
+        assertSame(toolpaths.get(0), result.get(0));
+        assertEquals(new Point(0, 0), getCurve(result.get(0)).getFrom());
+        assertEquals(new Point(3000, 5), getCurve(result.get(0)).getTo());
+        assertSame(toolpaths.get(3), result.get(1));
+    }
+
+    @Test
+    public void testDuplicatesAndOverlapsAreRemoved()
+    {
+        List<Toolpath> toolpaths = new ArrayList<>();
+        toolpaths.add(new LinearToolpath(300, new Point(0, 0), new Point(1000, 0)));
+        toolpaths.add(new LinearToolpath(300, new Point(1000, 0), new Point(0, 0)));
+        toolpaths.add(new LinearToolpath(300, new Point(1000, 0), new Point(500, 0)));
+        toolpaths.add(new LinearToolpath(300, new Point(1000, 0), new Point(1003, 0)));
+
+        List<Toolpath> result = new ToolpathMerger(toolpaths, 10).merge();
+
+        assertEquals(1, result.size());
+        assertSame(toolpaths.get(0), result.get(0));
+        assertEquals(new Point(1000, 0), getCurve(result.get(0)).getTo());
+    }
+
+    @Test
+    public void testPolygonIsNotCollapsed()
+    {
+        List<Toolpath> toolpaths = new ArrayList<>();
+        int count = 180;
+        for (int i = 0; i < count; i++)
+        {
+            double a1 = Math.PI * 2 * i / count;
+            double a2 = Math.PI * 2 * (i + 1) / count;
+            toolpaths.add(new LinearToolpath(300, new Point((int) Math.round(Math.cos(a1) * 100_000), (int) Math.round(Math.sin(a1) * 100_000)),
+                    new Point((int) Math.round(Math.cos(a2) * 100_000), (int) Math.round(Math.sin(a2) * 100_000))));
+        }
+
+        List<Toolpath> result = new ToolpathMerger(toolpaths, 10).merge();
+
+        // Every merged segment still spans less than the deviation threshold, and the outline stays closed
+        assertTrue(result.size() > 60);
+        assertTrue(result.size() < count);
+        Point location = getCurve(result.get(0)).getFrom();
+        for (Toolpath t : result)
+        {
+            assertEquals(location, getCurve(t).getFrom());
+            location = getCurve(t).getTo();
+        }
+        assertEquals(getCurve(result.get(0)).getFrom(), location);
+    }
+
+    @Test
+    public void testSplitArcsAreMerged()
+    {
+        Point center = new Point(0, 0);
+        List<Toolpath> toolpaths = new ArrayList<>();
+        toolpaths.add(new CircularToolpath(300, new Point(1000, 0), new Point(0, 1000), center, 1000, false));
+        toolpaths.add(new CircularToolpath(300, new Point(-1000, 0), new Point(0, 1000), center, 1000, true));
+        toolpaths.add(new CircularToolpath(300, new Point(-1000, 0), new Point(0, -1000), center, 1000, false));
+        toolpaths.add(new CircularToolpath(300, new Point(0, -1000), new Point(1000, 0), center, 1000, false));
+        toolpaths.add(new CircularToolpath(300, new Point(5000, 0), new Point(3000, 2000), new Point(3000, 0), 2000, false));
+        toolpaths.add(new CircularToolpath(300, new Point(3000, 2000), new Point(1000, 0), new Point(3000, 0), 2000, false));
+
+        List<Toolpath> result = new ToolpathMerger(toolpaths, 10).merge();
+
+        assertEquals(2, result.size());
+        Arc circle = (Arc) getCurve(result.get(0));
+        assertEquals(circle.getFrom(), circle.getTo());
+        Arc arc = (Arc) getCurve(result.get(1));
+        assertEquals(new Point(5000, 0), arc.getFrom());
+        assertEquals(new Point(1000, 0), arc.getTo());
+        assertFalse(arc.isClockwise());
+    }
+
+    @Test
+    public void testMergeOfTraces()
+    {
+        Random random = new Random(1);
+        List<Toolpath> toolpaths = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++)
+        {
+            int x = random.nextInt(200_000);
+            int y = random.nextInt(200_000);
+            boolean horizontal = random.nextBoolean();
+            for (int j = 0; j < 10; j++)
+            {
+                Point from = horizontal ? new Point(x + j * 100, y) : new Point(x, y + j * 100);
+                Point to = horizontal ? new Point(x + j * 100 + 100, y + random.nextInt(3)) : new Point(x + random.nextInt(3), y + j * 100 + 100);
+                toolpaths.add(random.nextBoolean() ? new LinearToolpath(300, from, to) : new LinearToolpath(300, to, from));
+            }
+        }
+
+        List<Toolpath> result = new ToolpathMerger(toolpaths, 10).merge();
+
+        assertTrue(result.size() < toolpaths.size() / 5);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cirqwizard.test.generation;
+
+import org.cirqwizard.generation.toolpath.*;
+import org.cirqwizard.geom.Point;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ToolpathsCacheStoreTest
+{
+    private static ToolpathsCacheKey createKey(int layerId)
+    {
+        return new ToolpathsCacheKey(layerId, 300, 0, 0, false, true, 0, 0);
+    }
+
+    private static List<Toolpath> createToolpaths(int count)
+    {
+        List<Toolpath> toolpaths = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            toolpaths.add(new LinearToolpath(300, new Point(i * 100, 0), new Point(i * 100, 1000)));
+        return toolpaths;
+    }
+
+    @Test
+    public void testInMemoryCacheIsAuthoritative() throws Exception
+    {
+        File file = File.createTempFile("toolpaths", ".tmp");
+        file.delete();
+        file.deleteOnExit();
+
+        ToolpathsCacheStore store = new ToolpathsCacheStore();
+        ToolpathsCache cache = store.getCache(file.getAbsolutePath());
+        cache.setToolpaths(createKey(0), createToolpaths(10));
+        assertSame(cache, store.getCache(file.getAbsolutePath()));
+        assertFalse(file.exists());
+
+        store.save(file.getAbsolutePath(), null);
+        store.flush();
+        ToolpathsCache loaded = new ToolpathsCacheStore().getCache(file.getAbsolutePath());
+        assertEquals(10, loaded.getToolpaths(createKey(0)).size());
+    }
+
+    @Test
+    public void testSavesAreCoalesced() throws Exception
+    {
+        File file = File.createTempFile("toolpaths", ".tmp");
+        file.delete();
+        file.deleteOnExit();
+
+        ToolpathsCacheStore store = new ToolpathsCacheStore();
+        ToolpathsCache cache = store.getCache(file.getAbsolutePath());
+        AtomicInteger saves = new AtomicInteger();
+        // Keeps the writer busy while the following saves are requested
+        synchronized (cache)
+        {
+            store.save(file.getAbsolutePath(), saves::incrementAndGet);
+            Thread.sleep(100);
+            for (int i = 0; i < 10; i++)
+            {
+                cache.setToolpaths(createKey(i), createToolpaths(i + 1));
+                store.save(file.getAbsolutePath(), saves::incrementAndGet);
+            }
+        }
+        store.flush();
+
+        assertEquals(2, saves.get());
+        ToolpathsCache loaded = new ToolpathsCacheStore().getCache(file.getAbsolutePath());
+        for (int i = 0; i < 10; i++)
+            assertEquals(i + 1, loaded.getToolpaths(createKey(i)).size());
+    }
+
+    @Test
+    public void testPreviousFileIsEvictedAfterSave() throws Exception
+    {
+        File first = File.createTempFile("toolpaths", ".tmp");
+        first.delete();
+        first.deleteOnExit();
+        File second = File.createTempFile("toolpaths", ".tmp");
+        second.delete();
+        second.deleteOnExit();
+
+        ToolpathsCacheStore store = new ToolpathsCacheStore();
+        ToolpathsCache cache = store.getCache(first.getAbsolutePath());
+        cache.setToolpaths(createKey(0), createToolpaths(10));
+        store.save(first.getAbsolutePath(), null);
+        store.getCache(second.getAbsolutePath());
+        store.flush();
+
+        ToolpathsCache reloaded = store.getCache(first.getAbsolutePath());
+        assertNotSame(cache, reloaded);
+        assertEquals(10, reloaded.getToolpaths(createKey(0)).size());
+    }
+}
@@ -0,0 +1,183 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cirqwizard.test.generation;
+
+import org.cirqwizard.generation.toolpath.*;
+import org.cirqwizard.geom.Arc;
+import org.cirqwizard.geom.Point;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ToolpathsPersistorTest
+{
+    private static final ToolpathsCacheKey PANEL_KEY = new ToolpathsCacheKey(0, 300, 1, 50, false, true, 0, 0);
+    private static final BoardToolpathsCacheKey BOARD_KEY = new BoardToolpathsCacheKey("0123abcd", 90, PANEL_KEY);
+
+    private static List<Toolpath> createToolpaths(int shift)
+    {
+        List<Toolpath> toolpaths = new ArrayList<>();
+        toolpaths.add(new LinearToolpath(300, new Point(shift, 0), new Point(shift + 1000, -500)));
+        CircularToolpath arc = new CircularToolpath(300, new Point(shift + 1000, 0), new Point(shift, 1000), new Point(shift, 0), 1000, true);
+        arc.setEnabled(false);
+        toolpaths.add(arc);
+        return toolpaths;
+    }
+
+    private static void assertToolpathsEqual(List<Toolpath> expected, List<Toolpath> actual)
+    {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++)
+        {
+            CuttingToolpath e = (CuttingToolpath) expected.get(i);
+            CuttingToolpath a = (CuttingToolpath) actual.get(i);
+            assertEquals(e.getClass(), a.getClass());
+            assertEquals(e.isEnabled(), a.isEnabled());
+            assertEquals(e.getToolDiameter(), a.getToolDiameter());
+            assertEquals(e.getCurve().getFrom(), a.getCurve().getFrom());
+            assertEquals(e.getCurve().getTo(), a.getCurve().getTo());
+            if (e instanceof CircularToolpath)
+            {
+                Arc ea = (Arc) e.getCurve();
+                Arc aa = (Arc) a.getCurve();
+                assertEquals(ea.getCenter(), aa.getCenter());
+                assertEquals(ea.getRadius(), aa.getRadius());
+                assertEquals(ea.isClockwise(), aa.isClockwise());
+            }
+        }
+    }
+
+    private static File createTempFile() throws IOException
+    {
+        File file = File.createTempFile("toolpaths", ".tmp");
+        file.deleteOnExit();
+        return file;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception
+    {
+        File file = createTempFile();
+        ToolpathsCache cache = new ToolpathsCache();
+        cache.setToolpaths(PANEL_KEY, createToolpaths(0));
+        cache.setBoardToolpaths(BOARD_KEY, createToolpaths(5000));
+        ToolpathsPersistor.saveToFile(cache, file.getAbsolutePath());
+
+        ToolpathsCache loaded = ToolpathsPersistor.loadFromFile(file.getAbsolutePath());
+        assertToolpathsEqual(createToolpaths(0), loaded.getToolpaths(PANEL_KEY));
+        assertToolpathsEqual(createToolpaths(5000), loaded.getBoardToolpaths(BOARD_KEY));
+        assertNull(loaded.getToolpaths(new ToolpathsCacheKey(1, 300, 1, 50, false, true, 0, 0)));
+    }
+
+    @Test
+    public void testIncrementalSave() throws Exception
+    {
+        File file = createTempFile();
+        ToolpathsCache cache = new ToolpathsCache();
+        cache.setToolpaths(PANEL_KEY, createToolpaths(0));
+        cache.setBoardToolpaths(BOARD_KEY, createToolpaths(5000));
+        ToolpathsPersistor.saveToFile(cache, file.getAbsolutePath());
+
+        ToolpathsCache loaded = ToolpathsPersistor.loadFromFile(file.getAbsolutePath());
+        long initialLength = file.length();
+        loaded.setToolpaths(PANEL_KEY, createToolpaths(100));
+        ToolpathsPersistor.saveToFile(loaded, file.getAbsolutePath());
+        assertTrue(file.length() > initialLength);
+
+        // Board section has not been decoded by the updated cache and must be read from its original place
+        ToolpathsCache reloaded = ToolpathsPersistor.loadFromFile(file.getAbsolutePath());
+        assertToolpathsEqual(createToolpaths(100), reloaded.getToolpaths(PANEL_KEY));
+        assertToolpathsEqual(createToolpaths(5000), reloaded.getBoardToolpaths(BOARD_KEY));
+    }
+
+    @Test
+    public void testClearPanelToolpaths() throws Exception
+    {
+        File file = createTempFile();
+        ToolpathsCache cache = new ToolpathsCache();
+        cache.setToolpaths(PANEL_KEY, createToolpaths(0));
+        cache.setBoardToolpaths(BOARD_KEY, createToolpaths(5000));
+        ToolpathsPersistor.saveToFile(cache, file.getAbsolutePath());
+
+        ToolpathsCache loaded = ToolpathsPersistor.loadFromFile(file.getAbsolutePath());
+        loaded.clearPanelToolpaths();
+        ToolpathsPersistor.saveToFile(loaded, file.getAbsolutePath());
+
+        ToolpathsCache reloaded = ToolpathsPersistor.loadFromFile(file.getAbsolutePath());
+        assertNull(reloaded.getToolpaths(PANEL_KEY));
+        assertToolpathsEqual(createToolpaths(5000), reloaded.getBoardToolpaths(BOARD_KEY));
+    }
+
+    @Test
+    public void testRetainBoardToolpaths() throws Exception
+    {
+        File file = createTempFile();
+        ToolpathsCache cache = new ToolpathsCache();
+        cache.setToolpaths(PANEL_KEY, createToolpaths(0));
+        cache.setBoardToolpaths(BOARD_KEY, createToolpaths(5000));
+        ToolpathsPersistor.saveToFile(cache, file.getAbsolutePath());
+
+        ToolpathsCache loaded = ToolpathsPersistor.loadFromFile(file.getAbsolutePath());
+        loaded.retainBoardToolpaths(Collections.emptyList());
+        ToolpathsPersistor.saveToFile(loaded, file.getAbsolutePath());
+
+        ToolpathsCache reloaded = ToolpathsPersistor.loadFromFile(file.getAbsolutePath());
+        assertToolpathsEqual(createToolpaths(0), reloaded.getToolpaths(PANEL_KEY));
+        assertNull(reloaded.getBoardToolpaths(BOARD_KEY));
+    }
+
+    @Test
+    public void testCompaction() throws Exception
+    {
+        File file = createTempFile();
+        ToolpathsCache cache = new ToolpathsCache();
+        cache.setBoardToolpaths(BOARD_KEY, createToolpaths(5000));
+        ToolpathsPersistor.saveToFile(cache, file.getAbsolutePath());
+
+        for (int i = 0; i < 20; i++)
+        {
+            List<Toolpath> toolpaths = new ArrayList<>();
+            for (int j = 0; j < 100; j++)
+                toolpaths.addAll(createToolpaths(i * j));
+            cache.setToolpaths(PANEL_KEY, toolpaths);
+            ToolpathsPersistor.saveToFile(cache, file.getAbsolutePath());
+        }
+        assertTrue(file.length() < 3 * 200 * 35 + 64 * 1024);
+
+        ToolpathsCache reloaded = ToolpathsPersistor.loadFromFile(file.getAbsolutePath());
+        assertEquals(200, reloaded.getToolpaths(PANEL_KEY).size());
+        assertToolpathsEqual(createToolpaths(5000), reloaded.getBoardToolpaths(BOARD_KEY));
+    }
+
+    @Test(expected = ToolpathPersistingException.class)
+    public void testUnsupportedFormat() throws Exception
+    {
+        File file = createTempFile();
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file)))
+        {
+            out.writeObject(Arrays.asList(1, 2, 3));
+        }
+        ToolpathsPersistor.loadFromFile(file.getAbsolutePath());
+    }
+}
@@ -0,0 +1,105 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cirqwizard.test.generation;
+
+import org.cirqwizard.generation.optimizer.*;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TourConstructorTest
+{
+    private static void assertPermutation(int[] tour, int size)
+    {
+        int[] sorted = tour.clone();
+        Arrays.sort(sorted);
+        assertEquals(size, sorted.length);
+        for (int i = 0; i < sorted.length; i++)
+            assertEquals(i, sorted[i]);
+    }
+
+    @Test
+    public void testKdTreeRemoval()
+    {
+        int[] xs = {0, 10, 20, 30, 40};
+        int[] ys = {0, 0, 0, 0, 0};
+        KdTree tree = new KdTree(xs, ys);
+        tree.remove(2);
+        tree.remove(1);
+        assertArrayEquals(new int[] {3, 4}, tree.nearest(22, 0, 2, -1));
+        tree.remove(0);
+        tree.remove(3);
+        tree.remove(4);
+        assertEquals(0, tree.nearest(22, 0, 2, -1).length);
+    }
+
+    @Test
+    public void testTours()
+    {
+        List<Chain> chains = OptimizerTest.createChains(5000, 5);
+        Environment environment = new Environment(chains);
+        Generation generation = new Generation(chains.size(), 1);
+        generation.populate(new Random(5));
+        double randomLength = environment.calculateFitness(generation.get(0).getGenes());
+
+        TourConstructor constructor = new TourConstructor(environment);
+        List<int[]> tours = constructor.createTours();
+
+        for (int[] tour : tours)
+        {
+            assertPermutation(tour, chains.size());
+            assertTrue(environment.calculateFitness(tour) < randomLength / 10);
+        }
+    }
+
+    @Test
+    public void testHilbertTour()
+    {
+        // Points of a regular grid fall into distinct cells of Hilbert curve, so the tour never skips a grid step
+        int size = 8;
+        int[] xs = new int[size * size];
+        int[] ys = new int[size * size];
+        for (int i = 0; i < xs.length; i++)
+        {
+            xs[i] = (i % size) * 1000;
+            ys[i] = (i / size) * 1000;
+        }
+        int[] tour = new TourConstructor(xs, ys).createHilbertTour();
+        assertPermutation(tour, xs.length);
+        for (int i = 1; i < tour.length; i++)
+            assertEquals(1000, Math.abs(xs[tour[i]] - xs[tour[i - 1]]) + Math.abs(ys[tour[i]] - ys[tour[i - 1]]));
+    }
+
+    @Test
+    public void testSeededPopulation()
+    {
+        List<Chain> chains = OptimizerTest.createChains(500, 6);
+        Environment environment = new Environment(chains);
+        List<int[]> tours = new TourConstructor(environment).createTours();
+        Generation generation = new Generation(chains.size(), 350);
+        generation.populate(tours, 0.1, new Random(6));
+        for (int i = 0; i < generation.size(); i++)
+            assertPermutation(generation.get(i).getGenes(), chains.size());
+        assertArrayEquals(tours.get(0), generation.get(0).getGenes());
+        double shortestTour = Double.MAX_VALUE;
+        for (int[] tour : tours)
+            shortestTour = Math.min(shortestTour, environment.calculateFitness(tour));
+        assertEquals(shortestTour, generation.getBestFitness(environment).calculateFitness(environment), 0.001);
+    }
+}
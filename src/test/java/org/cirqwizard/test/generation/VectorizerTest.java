@@ -0,0 +1,77 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.cirqwizard.test.generation;
+
+import org.cirqwizard.generation.CircleIndex;
+import org.cirqwizard.generation.PackedBitmap;
+import org.cirqwizard.generation.Vectorizer;
+import org.cirqwizard.geom.Arc;
+import org.cirqwizard.geom.Circle;
+import org.cirqwizard.geom.Curve;
+import org.cirqwizard.geom.Line;
+import org.cirqwizard.geom.Point;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class VectorizerTest
+{
+    @Test
+    public void testLine()
+    {
+        PackedBitmap bitmap = new PackedBitmap(2000, 100);
+        for (int x = 100; x < 1900; x++)
+            bitmap.set(x, 50 + x / 600);
+
+        List<Curve> curves = new Vectorizer(bitmap, new CircleIndex(new ArrayList<>()), 100, 50).trace();
+
+        assertEquals(1, curves.size());
+        assertTrue(curves.get(0) instanceof Line);
+        assertEquals(new Point(100, 50), curves.get(0).getFrom());
+        assertEquals(new Point(1899, 53), curves.get(0).getTo());
+        assertTrue(bitmap.isEmpty());
+    }
+
+    @Test
+    public void testArcOfKnownCircle()
+    {
+        PackedBitmap bitmap = new PackedBitmap(2000, 2000);
+        Point center = new Point(1000, 1000);
+        int radius = 600;
+        // Quarter of the circle, pixels connected in 8-neighbourhood
+        for (int x = 0; x <= radius; x++)
+        {
+            int y = (int) Math.round(Math.sqrt((double) radius * radius - (double) x * x));
+            int nextY = x == radius ? 0 : (int) Math.round(Math.sqrt((double) radius * radius - (double) (x + 1) * (x + 1)));
+            for (int i = y; i >= Math.max(nextY, y - Math.max(1, y - nextY) + 1); i--)
+                bitmap.set(center.getX() + x, center.getY() + i);
+        }
+        List<Circle> circles = new ArrayList<>();
+        circles.add(new Circle(new Point(300, 300), 200));
+        circles.add(new Circle(center, radius));
+
+        List<Curve> curves = new Vectorizer(bitmap, new CircleIndex(circles), center.getX(), center.getY() + radius).trace();
+
+        assertEquals(1, curves.size());
+        assertTrue(curves.get(0) instanceof Arc);
+        Arc arc = (Arc) curves.get(0);
+        assertEquals(center, arc.getCenter());
+        assertEquals(radius, arc.getRadius());
+        assertTrue(arc.isClockwise());
+        assertEquals(new Point(center.getX() + radius, center.getY()), arc.getTo());
+    }
+}
@@ -0,0 +1,119 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cirqwizard.test.generation;
+
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.SimpleBooleanProperty;
+import org.cirqwizard.generation.WindowScheduler;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WindowSchedulerTest
+{
+    @Test
+    public void testBudgetLimitsConcurrency()
+    {
+        WindowScheduler scheduler = new WindowScheduler(8, 10 * 1024, new SimpleBooleanProperty(false));
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger completed = new AtomicInteger();
+        for (int i = 0; i < 20; i++)
+        {
+            scheduler.submit(4 * 1024, () ->
+            {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try
+                {
+                    Thread.sleep(10);
+                }
+                catch (InterruptedException e) {}
+                running.decrementAndGet();
+                completed.incrementAndGet();
+            });
+        }
+        scheduler.await();
+
+        assertEquals(20, completed.get());
+        assertTrue(maxRunning.get() <= 2);
+    }
+
+    @Test
+    public void testOversizedWindowIsProcessed()
+    {
+        WindowScheduler scheduler = new WindowScheduler(2, 1024, new SimpleBooleanProperty(false));
+        AtomicInteger completed = new AtomicInteger();
+        scheduler.submit(WindowScheduler.estimatePackedWindow(5010, 5010), completed::incrementAndGet);
+        scheduler.submit(WindowScheduler.estimatePackedWindow(5010, 5010), completed::incrementAndGet);
+        scheduler.await();
+
+        assertEquals(2, completed.get());
+    }
+
+    @Test
+    public void testOutOfMemoryReducesBudget()
+    {
+        WindowScheduler scheduler = new WindowScheduler(4, 64 * 1024, new SimpleBooleanProperty(false));
+        AtomicInteger attempts = new AtomicInteger();
+        scheduler.submit(1024, () ->
+        {
+            if (attempts.incrementAndGet() == 1)
+                throw new OutOfMemoryError();
+        });
+        scheduler.await();
+
+        assertEquals(2, attempts.get());
+        assertEquals(32, scheduler.getBudget());
+    }
+
+    @Test
+    public void testBudgetRecovers()
+    {
+        WindowScheduler scheduler = new WindowScheduler(1, 64 * 1024, new SimpleBooleanProperty(false));
+        AtomicInteger attempts = new AtomicInteger();
+        scheduler.submit(1024, () ->
+        {
+            if (attempts.incrementAndGet() == 1)
+                throw new OutOfMemoryError();
+        });
+        for (int i = 0; i < 20; i++)
+            scheduler.submit(1024, attempts::incrementAndGet);
+        scheduler.await();
+
+        assertEquals(22, attempts.get());
+        assertEquals(64, scheduler.getBudget());
+    }
+
+    @Test
+    public void testCancellationStopsWaiting()
+    {
+        BooleanProperty cancelled = new SimpleBooleanProperty(false);
+        WindowScheduler scheduler = new WindowScheduler(2, 4 * 1024, cancelled);
+        AtomicInteger completed = new AtomicInteger();
+        scheduler.submit(4 * 1024, () ->
+        {
+            cancelled.set(true);
+            completed.incrementAndGet();
+        });
+        for (int i = 0; i < 10; i++)
+            scheduler.submit(4 * 1024, completed::incrementAndGet);
+        scheduler.await();
+
+        assertEquals(1, completed.get());
+    }
+}
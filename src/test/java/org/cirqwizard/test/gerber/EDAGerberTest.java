@@ -36,36 +36,7 @@ public class EDAGerberTest
     @Test
     public void testEagleFile() throws IOException
     {
-        String fileContent = "G75*\n" +
-                "G70*\n" +
-                "%OFA0B0*%\n" +
-                "%FSLAX24Y24*%\n" +
-                "%IPPOS*%\n" +
-                "%LPD*%\n" +
-                "%AMOC8*\n" +
-                "5,1,8,0,0,1.08239X$1,22.5*\n" +
-                "%\n" +
-                "%ADD10C,0.0000*%\n" +
-                "%ADD11R,0.0591X0.0197*%\n" +
-                "%ADD16C,0.0740*%\n" +
-                "%ADD22C,0.0236*%\n" +
-                "D10*\n" +
-                "X000100Y000100D02*\n" +
-                "X000100Y012305D01*\n" +
-                "X012108Y012305D01*\n" +
-                "D11*\n" +
-                "X006181Y005549D03*\n" +
-                "X006181Y006179D03*\n" +
-                "D16*\n" +
-                "X003624Y010901D03*\n" +
-                "X002624Y010901D03*\n" +
-                "D22*\n" +
-                "X004594Y008561D02*\n" +
-                "X003214Y008561D01*\n" +
-                "X002874Y008901D01*\n" +
-                "M02*";
-
-        GerberParser parser = new GerberParser(new StringReader(fileContent));
+        GerberParser parser = new GerberParser(new StringReader(GerberSamples.EAGLE_FILE));
         List<GerberPrimitive> elements = parser.parse();
 
         assertEquals(8, elements.size());
@@ -226,30 +197,7 @@ public class EDAGerberTest
     @Test
     public void testKiCAD() throws IOException
     {
-        String fileContent = "G04 (created by PCBNEW (2013-07-07 BZR 4022)-stable) date 23/01/2014 11:32:09*\n" +
-                "%MOIN*%\n" +
-                "G04 Gerber Fmt 3.4, Leading zero omitted, Abs format*\n" +
-                "%FSLAX34Y34*%\n" +
-                "G01*\n" +
-                "G70*\n" +
-                "G90*\n" +
-                "G04 APERTURE LIST*\n" +
-                "%ADD12C,0.055*%\n" +
-                "%ADD13R,0.144X0.08*%\n" +
-                "%ADD39C,0.012*%\n" +
-                "G04 APERTURE END LIST*\n" +
-                "G54D12*\n" +
-                "X29724Y-52649D03*\n" +
-                "G54D13*\n" +
-                "X34842Y-57796D03*\n" +
-                "G54D39*\n" +
-                "X30905Y-49428D02*\n" +
-                "X30905Y-49094D01*\n" +
-                "X31023Y-47755D02*\n" +
-                "X30433Y-47755D01*\n" +
-                "M02*";
-
-        GerberParser parser = new GerberParser(new StringReader(fileContent));
+        GerberParser parser = new GerberParser(new StringReader(GerberSamples.KICAD_FILE));
         List<GerberPrimitive> elements = parser.parse();
 
         assertEquals(4, elements.size());
@@ -290,34 +238,7 @@ public class EDAGerberTest
     @Test
     public void testSprintLayoutFile() throws IOException
     {
-        String fileContent = "%FSLAX32Y32*%\n" +
-                "%MOMM*%\n" +
-                "%LNKUPFERSEITE2*%\n" +
-                "G71*\n" +
-                "G01*\n" +
-                "%ADD10C, 0.25*%\n" +
-                "%ADD11C, 1.80*%\n" +
-                "%ADD12C, 2.00*%\n" +
-                "%LPD*%\n" +
-                "G36*\n" +
-                "X654Y852D02*\n" +
-                "X654Y822D01*\n" +
-                "X534Y822D01*\n" +
-                "X534Y852D01*\n" +
-                "X654Y852D01*\n" +
-                "G37*\n" +
-                "G54D10*\n" +
-                "X1474Y1163D02*\n" +
-                "X1474Y1263D01*\n" +
-                "G54D11*\n" +
-                "D03*\n" +
-                "X1103Y438D02*\n" +
-                "G54D12*\n" +
-                "D03*\n" +
-                "X2126Y1233D02*\n" +
-                "M02*\n";
-
-        GerberParser parser = new GerberParser(new StringReader(fileContent));
+        GerberParser parser = new GerberParser(new StringReader(GerberSamples.SPRINT_LAYOUT_FILE));
         List<GerberPrimitive> elements = parser.parse();
 
         assertEquals(4, elements.size());
@@ -466,41 +387,7 @@ public class EDAGerberTest
     @Test
     public void testEasyPCFile() throws IOException
     {
-        String fileContent = "%FSLAX23Y23*%\n" +
-                "%MOIN*%\n" +
-                "G04 EasyPC Gerber Version 17.0 Build 3379 *\n" +
-                "%ADD102R,0.06000X0.06000*%\n" +
-                "%ADD27C,0.00800*%\n" +
-                "%ADD17R,0.07800X0.02200*%\n" +
-                "%ADD114R,0.12598X0.03937*%\n" +
-                "%ADD115R,0.06890X0.05906*%\n" +
-                "%ADD103R,0.07090X0.06300*%\n" +
-                "%ADD113C,0.01654*%\n" +
-                "%ADD112C,0.05906*%\n" +
-                "%ADD116C,0.06299*%\n" +
-                "D113*\n" +
-                "X203Y186D02*\n" +
-                "G75*\n" +
-                "G02X224Y224I81J-22D01*\n" +
-                "G01*\n" +
-                "X181*\n" +
-                "G75*\n" +
-                "G02X203Y186I-59J-59*\n" +
-                "G01*\n" +
-                "G36*\n" +
-                "G75*\n" +
-                "G02X224Y224I81J-22*\n" +
-                "G01*\n" +
-                "X181*\n" +
-                "G75*\n" +
-                "G02X203Y186I-59J-59*\n" +
-                "G01*\n" +
-                "G37*\n" +
-                "Y654D02*\n" +
-                "X254Y602D01*\n" +
-                "M02*\n";
-
-        GerberParser parser = new GerberParser(new StringReader(fileContent));
+        GerberParser parser = new GerberParser(new StringReader(GerberSamples.EASY_PC_FILE));
         List<GerberPrimitive> elements = parser.parse();
 
         assertEquals(5, elements.size());
@@ -0,0 +1,50 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package org.cirqwizard.test.pp;
+
+import org.cirqwizard.generation.toolpath.PPPoint;
+import org.cirqwizard.geom.Point;
+import org.cirqwizard.pp.ComponentId;
+import org.cirqwizard.pp.PlacementPlanner;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PlacementPlannerTest
+{
+    @Test
+    public void testPlacementSequence()
+    {
+        Random random = new Random(1);
+        ComponentId id = new ComponentId("0603", "10k");
+        List<PPPoint> components = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+            components.add(new PPPoint(id, new Point(random.nextInt(100_000), random.nextInt(80_000)),
+                    random.nextInt(4) * 90_000, "R" + (i + 1)));
+
+        PlacementPlanner planner = new PlacementPlanner(components, new Point(-20_000, 40_000), 4_000, -90_000, 100_000,
+                -14_200, 800);
+        List<PPPoint> sequence = planner.plan();
+
+        assertEquals(components.size(), sequence.size());
+        assertEquals(new HashSet<>(components), new HashSet<>(sequence));
+        assertTrue(planner.estimateDuration(sequence) < planner.estimateDuration(components));
+    }
+}
@@ -0,0 +1,150 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cirqwizard.test.serial;
+
+import org.cirqwizard.serial.ExecutionException;
+import org.cirqwizard.serial.SerialException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CommandStreamerTest
+{
+    private static final int BUFFER_SIZE = 128;
+    private static final long TIMEOUT = 5000;
+    private static final int COMMANDS_COUNT = 200;
+
+    private String command(int i)
+    {
+        return "G1X" + (i * 10) + "Y" + (i * 20) + "F300";
+    }
+
+    @Test
+    public void testCommandsAreStreamed() throws Exception
+    {
+        StringBuilder response = new StringBuilder();
+        LoopbackSerialInterface stopAndWait = new LoopbackSerialInterface(BUFFER_SIZE, 2, 1);
+        for (int i = 0; i < COMMANDS_COUNT; i++)
+            stopAndWait.send(command(i), TIMEOUT, response, false);
+        stopAndWait.close();
+        assertEquals(1, stopAndWait.getMaxCommandsInFlight());
+
+        // Commands are written faster than the first response can make a round trip, so the buffer fills up
+        LoopbackSerialInterface streaming = new LoopbackSerialInterface(BUFFER_SIZE, 2, 1);
+        for (int i = 0; i < COMMANDS_COUNT; i++)
+            streaming.stream(command(i), BUFFER_SIZE, TIMEOUT, response, false);
+        streaming.flush(TIMEOUT);
+        streaming.close();
+
+        assertEquals(0, streaming.getOverflowCount());
+        assertTrue(streaming.getMaxCommandsInFlight() >= BUFFER_SIZE / (command(COMMANDS_COUNT).length() + 1));
+        assertEquals(COMMANDS_COUNT * 2, response.toString().split("\n").length);
+    }
+
+    @Test
+    public void testBufferIsNotOverflown() throws Exception
+    {
+        LoopbackSerialInterface serial = new LoopbackSerialInterface(BUFFER_SIZE, 1, 1);
+        for (int i = 0; i < COMMANDS_COUNT; i++)
+            serial.stream(command(i), BUFFER_SIZE, TIMEOUT, null, false);
+        serial.flush(TIMEOUT);
+        serial.close();
+        assertEquals(0, serial.getOverflowCount());
+    }
+
+    @Test
+    public void testNackIsReported() throws Exception
+    {
+        LoopbackSerialInterface serial = new LoopbackSerialInterface(BUFFER_SIZE / 2, 1, 1);
+        try
+        {
+            for (int i = 0; i < COMMANDS_COUNT; i++)
+                serial.stream(command(i), BUFFER_SIZE, TIMEOUT, null, false);
+            serial.flush(TIMEOUT);
+            fail("Buffer overflow was not reported");
+        }
+        catch (SerialException e)
+        {
+            assertTrue(e.getMessage().startsWith("Negative acknowledgement received"));
+        }
+        finally
+        {
+            serial.close();
+        }
+    }
+
+    @Test
+    public void testExecutionErrorIsReported() throws Exception
+    {
+        LoopbackSerialInterface serial = new LoopbackSerialInterface(BUFFER_SIZE, 1, 0)
+        {
+            @Override
+            protected String execute(String command)
+            {
+                return command.startsWith("M5") ? "error: spindle" : "ok";
+            }
+        };
+        StringBuilder response = new StringBuilder();
+        try
+        {
+            serial.stream(command(1), BUFFER_SIZE, TIMEOUT, response, false);
+            serial.stream("M5", BUFFER_SIZE, TIMEOUT, response, false);
+            serial.stream(command(2), BUFFER_SIZE, TIMEOUT, response, false);
+            serial.flush(TIMEOUT);
+            fail("Execution error was not reported");
+        }
+        catch (ExecutionException e)
+        {
+            assertEquals("ok\nerror: spindle\n", response.toString());
+        }
+
+        serial.stream("M5", BUFFER_SIZE, TIMEOUT, response, true);
+        serial.flush(TIMEOUT);
+        serial.close();
+    }
+
+    @Test
+    public void testLineIsSentBeforeDeferredErrorIsReported() throws Exception
+    {
+        LoopbackSerialInterface serial = new LoopbackSerialInterface(BUFFER_SIZE, 1, 0)
+        {
+            @Override
+            protected String execute(String command)
+            {
+                return command.startsWith("M5") ? "error: spindle" : "ok";
+            }
+        };
+        StringBuilder response = new StringBuilder();
+        serial.stream("M5", 1, TIMEOUT, response, false);
+        try
+        {
+            serial.stream(command(1), 1, TIMEOUT, response, false);
+            fail("Execution error was not reported");
+        }
+        catch (ExecutionException e)
+        {
+            assertEquals("error: spindle\n", response.toString());
+        }
+        serial.flush(TIMEOUT);
+        assertEquals("error: spindle\nok\n", response.toString());
+
+        serial.stream("M5", 1, TIMEOUT, response, false);
+        serial.resetStreaming();
+        serial.stream(command(2), BUFFER_SIZE, TIMEOUT, null, false);
+        serial.close();
+    }
+}
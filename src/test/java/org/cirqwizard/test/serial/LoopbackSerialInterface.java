@@ -0,0 +1,237 @@
+/*
+This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License version 3 as published by
+    the Free Software Foundation.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cirqwizard.test.serial;
+
+import org.cirqwizard.serial.CommandStreamer;
+import org.cirqwizard.serial.ExecutionException;
+import org.cirqwizard.serial.SerialException;
+import org.cirqwizard.serial.SerialInterface;
+
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.StringReader;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Simulated controller with limited receive buffer, wire latency and per-command execution time.
+ * Commands which do not fit into the receive buffer are answered with nack.
+ */
+public class LoopbackSerialInterface implements SerialInterface, CommandStreamer.Channel
+{
+    private int bufferSize;
+    private long latency;
+    private long executionTime;
+
+    private CommandStreamer streamer = new CommandStreamer(this);
+    private ScheduledExecutorService wire;
+    private Thread controllerThread;
+    private BlockingQueue<ReceivedCommand> receivedCommands = new LinkedBlockingQueue<>();
+    private BlockingQueue<String> responses = new LinkedBlockingQueue<>();
+    private AtomicInteger bufferedCharacters = new AtomicInteger();
+    private AtomicInteger overflowCount = new AtomicInteger();
+    private AtomicInteger commandsInFlight = new AtomicInteger();
+    private AtomicInteger maxCommandsInFlight = new AtomicInteger();
+
+    /**
+     *
+     * @param bufferSize controller's receive buffer size in characters
+     * @param latency one way transmission delay in milliseconds
+     * @param executionTime time it takes the controller to execute a command in milliseconds
+     */
+    public LoopbackSerialInterface(int bufferSize, long latency, long executionTime)
+    {
+        this.bufferSize = bufferSize;
+        this.latency = latency;
+        this.executionTime = executionTime;
+
+        wire = Executors.newSingleThreadScheduledExecutor(r ->
+        {
+            Thread t = new Thread(r, "Loopback wire");
+            t.setDaemon(true);
+            return t;
+        });
+        controllerThread = new Thread(this::runController, "Loopback controller");
+        controllerThread.setDaemon(true);
+        controllerThread.start();
+    }
+
+    private void runController()
+    {
+        try
+        {
+            while (true)
+            {
+                ReceivedCommand command = receivedCommands.take();
+                String response;
+                if (command.overflow)
+                    response = "nack rx buffer overflow";
+                else
+                {
+                    if (executionTime > 0)
+                        Thread.sleep(executionTime);
+                    bufferedCharacters.addAndGet(-command.length);
+                    response = execute(command.command);
+                }
+                wire.schedule(() -> responses.add(response), latency, TimeUnit.MILLISECONDS);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            // Interface closed
+        }
+    }
+
+    protected String execute(String command)
+    {
+        return "ok";
+    }
+
+    private void receive(String line)
+    {
+        int length = line.length() + 1;
+        if (bufferedCharacters.addAndGet(length) > bufferSize)
+        {
+            bufferedCharacters.addAndGet(-length);
+            overflowCount.incrementAndGet();
+            receivedCommands.add(new ReceivedCommand(line, length, true));
+        }
+        else
+            receivedCommands.add(new ReceivedCommand(line, length, false));
+    }
+
+    public int getOverflowCount()
+    {
+        return overflowCount.get();
+    }
+
+    /**
+     * @return the largest number of commands written but not yet answered
+     */
+    public int getMaxCommandsInFlight()
+    {
+        return maxCommandsInFlight.get();
+    }
+
+    @Override
+    public void writeLine(String line) throws SerialException
+    {
+        maxCommandsInFlight.accumulateAndGet(commandsInFlight.incrementAndGet(), Math::max);
+        wire.schedule(() -> receive(line), latency, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String readLine(long timeout) throws SerialException, InterruptedException
+    {
+        String response = responses.poll(timeout, TimeUnit.MILLISECONDS);
+        if (response != null)
+            commandsInFlight.decrementAndGet();
+        return response;
+    }
+
+    @Override
+    public void setBootloaderMode(boolean bootloader) throws SerialException
+    {
+    }
+
+    @Override
+    public void write(int b) throws IOException
+    {
+    }
+
+    @Override
+    public void write(byte[] b) throws IOException
+    {
+    }
+
+    @Override
+    public int readByte() throws IOException
+    {
+        return -1;
+    }
+
+    @Override
+    public void close() throws SerialException
+    {
+        streamer.logLatencies();
+        controllerThread.interrupt();
+        wire.shutdownNow();
+    }
+
+    @Override
+    public void send(String str, long timeout) throws SerialException, ExecutionException, InterruptedException
+    {
+        send(str, timeout, null, false);
+    }
+
+    @Override
+    public void send(String str, long timeout, StringBuilder response, boolean suppressExceptions) throws SerialException, ExecutionException, InterruptedException
+    {
+        streamer.reset();
+        try
+        {
+            LineNumberReader reader = new LineNumberReader(new StringReader(str));
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                streamer.stream(line, 0, timeout, response, suppressExceptions);
+                streamer.flush(timeout);
+            }
+        }
+        catch (IOException e)
+        {
+            // It's not going to happen
+        }
+    }
+
+    @Override
+    public void stream(String str, int bufferSize, long timeout, StringBuilder response, boolean suppressExceptions) throws SerialException, ExecutionException, InterruptedException
+    {
+        streamer.stream(str, bufferSize, timeout, response, suppressExceptions);
+    }
+
+    @Override
+    public void flush(long timeout) throws SerialException, ExecutionException, InterruptedException
+    {
+        streamer.flush(timeout);
+    }
+
+    @Override
+    public void resetStreaming()
+    {
+        streamer.reset();
+    }
+
+    @Override
+    public String getPortName()
+    {
+        return "loopback";
+    }
+
+    private static class ReceivedCommand
+    {
+        private String command;
+        private int length;
+        private boolean overflow;
+
+        public ReceivedCommand(String command, int length, boolean overflow)
+        {
+            this.command = command;
+            this.length = length;
+            this.overflow = overflow;
+        }
+    }
+}